@@ -6,4 +6,17 @@ public interface SemanticIndexer {
 
     void runDefaultExportJob() throws IndexingFailedExecption;
 
+    /**
+     * Only reads the source documents modified since the last successful crawl, and deletes the destination
+     * documents that are no longer in the source. Runs a full export when there was no successful crawl yet.
+     */
+    void runIncrementalExportJob() throws IndexingFailedExecption;
+
+    /**
+     * Continues the crawl that stopped before it finished from its last checkpoint, keeping its crawl id. Only crawls
+     * that walk the source with a cursor save checkpoints; when the source is read with /export or /stream, this
+     * fails and a new crawl has to be started.
+     */
+    void resumeExportJob() throws IndexingFailedExecption;
+
 }
@@ -1,5 +1,6 @@
 package com.krickert.search.indexer;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.krickert.search.indexer.config.IndexerConfiguration;
 import com.krickert.search.indexer.config.IndexerConfigurationProperties;
 import com.krickert.search.indexer.dto.IndexingStatus;
@@ -9,23 +10,45 @@ import com.krickert.search.indexer.solr.vector.event.SolrChunkDocumentPublisher;
 import com.krickert.search.indexer.solr.vector.event.SolrSourceDocumentPublisher;
 import com.krickert.search.indexer.solr.vector.event.SubscriptionManager;
 import com.krickert.search.indexer.solr.JsonToSolrDocParser;
+import com.krickert.search.indexer.solr.client.CommitPolicy;
+import com.krickert.search.indexer.solr.client.DeletedDocumentSweeper;
 import com.krickert.search.indexer.solr.client.SolrAdminActions;
+import com.krickert.search.indexer.solr.client.UnchangedDocumentFilter;
+import com.krickert.search.indexer.solr.httpclient.select.CursorPagePrefetcher;
 import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectClient;
 import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import com.krickert.search.indexer.solr.httpclient.select.SolrExportClient;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartition;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartitioner;
 import com.krickert.search.indexer.solr.vector.SolrDestinationCollectionValidationService;
+import com.krickert.search.indexer.state.CrawlCheckpoint;
+import com.krickert.search.indexer.state.CrawlCheckpointer;
+import com.krickert.search.indexer.state.CrawlStateStore;
 import com.krickert.search.indexer.tracker.IndexingTracker;
+import io.micronaut.core.util.CollectionUtils;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.krickert.search.indexer.tracker.IndexingTracker.TaskType.MAIN;
@@ -45,6 +68,16 @@ public class SolrSemanticIndexer implements SemanticIndexer {
     private final SolrSourceDocumentPublisher solrSourceDocumentPublisher;
     private final SolrChunkDocumentPublisher solrChunkDocumentPublisher;
     private final IndexerConfigurationProperties indexerConfigurationProperties;
+    private final SourcePartitioner sourcePartitioner;
+    private final SolrExportClient solrExportClient;
+    private final CrawlStateStore crawlStateStore;
+    private final DeletedDocumentSweeper deletedDocumentSweeper;
+    private final UnchangedDocumentFilter unchangedDocumentFilter;
+    private final SubscriptionManager subscriptionManager;
+    private final CommitPolicy commitPolicy;
+    private final Object publishLock = new Object();
+    private final ExecutorService prefetchExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("solr-source-prefetch-%d").setDaemon(true).build());
 
     @Inject
     public SolrSemanticIndexer(HttpSolrSelectClient httpSolrSelectClient,
@@ -56,24 +89,86 @@ public class SolrSemanticIndexer implements SemanticIndexer {
                                IndexingTracker indexingTracker,
                                SolrSourceDocumentPublisher solrSourceDocumentPublisher,
                                SolrChunkDocumentPublisher solrChunkDocumentPublisher,
-                               SubscriptionManager subscriptionManager, IndexerConfigurationProperties indexerConfigurationProperties) {
+                               SubscriptionManager subscriptionManager, IndexerConfigurationProperties indexerConfigurationProperties,
+                               SourcePartitioner sourcePartitioner,
+                               SolrExportClient solrExportClient,
+                               CrawlStateStore crawlStateStore,
+                               DeletedDocumentSweeper deletedDocumentSweeper,
+                               UnchangedDocumentFilter unchangedDocumentFilter,
+                               CommitPolicy commitPolicy) {
         log.info("creating SemanticIndexer");
         checkNotNull(solrClientService);
-        checkNotNull(subscriptionManager);
         this.httpSolrSelectClient = checkNotNull(httpSolrSelectClient);
         this.jsonToSolrDoc = checkNotNull(jsonToSolrDoc);
         this.defaultIndexerConfiguration = checkNotNull(defaultIndexerConfiguration);
         this.solrDestinationCollectionValidationService = checkNotNull(solrDestinationCollectionValidationService);
         this.solrAdminActions = checkNotNull(solrAdminActions);
         this.indexingTracker = checkNotNull(indexingTracker);
+        this.subscriptionManager = checkNotNull(subscriptionManager);
         log.info("finished creating SemanticIndexer");
         this.solrSourceDocumentPublisher = solrSourceDocumentPublisher;
         this.solrChunkDocumentPublisher = solrChunkDocumentPublisher;
         this.indexerConfigurationProperties = indexerConfigurationProperties;
+        this.sourcePartitioner = checkNotNull(sourcePartitioner);
+        this.solrExportClient = checkNotNull(solrExportClient);
+        this.crawlStateStore = checkNotNull(crawlStateStore);
+        this.deletedDocumentSweeper = checkNotNull(deletedDocumentSweeper);
+        this.unchangedDocumentFilter = checkNotNull(unchangedDocumentFilter);
+        this.commitPolicy = checkNotNull(commitPolicy);
     }
 
     @Override
     public void runDefaultExportJob() throws IndexingFailedExecption {
+        runExportJob(null, null);
+    }
+
+    @Override
+    public void resumeExportJob() throws IndexingFailedExecption {
+        String solrSourceCollection = defaultIndexerConfiguration.getSourceSolrConfiguration().getCollection();
+        if (solrExportClient.isExportMode()) {
+            // a checkpoint of an earlier cursor walk would not match the partitions the export reads
+            throw new IndexingFailedExecption("Crawls of " + solrSourceCollection + " read with /export or /stream save no checkpoints and cannot be resumed. Start a new crawl instead.");
+        }
+        CrawlCheckpoint checkpoint = crawlStateStore.getCheckpoint(solrSourceCollection)
+                .orElseThrow(() -> new IndexingFailedExecption("There is no checkpoint of an unfinished crawl of " + solrSourceCollection + " to resume"));
+        log.info("Resuming crawl {} of {} from its last checkpoint", checkpoint.crawlId(), solrSourceCollection);
+        runExportJob(checkpoint.modifiedFilter(), checkpoint);
+    }
+
+    @Override
+    public void runIncrementalExportJob() throws IndexingFailedExecption {
+        String modifiedField = defaultIndexerConfiguration.getSourceSolrConfiguration().getModifiedField();
+        if (modifiedField == null || modifiedField.isBlank()) {
+            throw new IndexingFailedExecption("Incremental crawls need the modified-field of the source solr configuration");
+        }
+        String solrSourceCollection = defaultIndexerConfiguration.getSourceSolrConfiguration().getCollection();
+        Optional<Instant> watermark = crawlStateStore.getWatermark(solrSourceCollection);
+        if (watermark.isEmpty()) {
+            log.info("There is no successful crawl of {} yet. Running a full crawl instead of an incremental one.", solrSourceCollection);
+            runExportJob(null, null);
+            return;
+        }
+        int overlapSeconds = indexerConfigurationProperties.getIncrementalOverlapSeconds() == null ? 60 : indexerConfigurationProperties.getIncrementalOverlapSeconds();
+        Instant since = watermark.get().minus(Duration.ofSeconds(Math.max(0, overlapSeconds)));
+        String modifiedFilter = modifiedField + ":[" + convertToSolrDateString(since.toEpochMilli()) + " TO *]";
+        log.info("Running an incremental crawl of {} for the documents modified since {}", solrSourceCollection, since);
+        runExportJob(modifiedFilter, null);
+    }
+
+    /**
+     * Runs a crawl of the source collection. A full crawl reads every document; an incremental crawl only reads the
+     * documents matching the modified filter and then deletes the destination documents the source no longer has.
+     * The start time of a successful crawl becomes the high-water mark of the next incremental one.
+     * <br>
+     * While it runs, the crawl saves checkpoints. A resumed crawl keeps the crawl id, the start time and the counts
+     * of its checkpoint and continues each partition from the checkpointed cursor.
+     *
+     * @param modifiedFilter the filter query on the modified-field, or null for a full crawl
+     * @param resumeFrom     the checkpoint to continue from, or null to start a new crawl
+     */
+    private void runExportJob(String modifiedFilter, CrawlCheckpoint resumeFrom) throws IndexingFailedExecption {
+        // taken before anything is read, so documents changed while the crawl runs are read again by the next one
+        Instant crawlStart = resumeFrom != null ? resumeFrom.crawlStart() : Instant.now();
         IndexerConfiguration indexerConfiguration = defaultIndexerConfiguration;
         String solr7Host = indexerConfiguration.getSourceSolrConfiguration().getConnection().getUrl();
         String solrSourceCollection = indexerConfiguration.getSourceSolrConfiguration().getCollection();
@@ -82,87 +177,138 @@ public class SolrSemanticIndexer implements SemanticIndexer {
 
         // Validate the destination collection
         solrDestinationCollectionValidationService.validate();
+        if (solrExportClient.getReadMode() == SolrExportClient.ReadMode.EXPORT) {
+            checkSingleCoreSource(solr7Host, solrSourceCollection);
+        }
 
         // Create the crawler ID. This will be saved in the collection and documents that are not matching this crawler ID will be deleted
-        UUID crawlId = UUID.randomUUID();
+        UUID crawlId = resumeFrom != null ? UUID.fromString(resumeFrom.crawlId()) : UUID.randomUUID();
+        if (resumeFrom == null) {
+            // a checkpoint left by an earlier crawl no longer matches what the destination holds
+            crawlStateStore.clearCheckpoint(solrSourceCollection);
+        }
 
-        long totalExpected = httpSolrSelectClient.getTotalNumberOfDocumentsForCollection(solr7Host, solrSourceCollection);
+        List<SourcePartition> sourcePartitions = sourcePartitioner.createPartitions(solr7Host, solrSourceCollection);
+        List<SourcePartition> partitions = sourcePartitions;
+        if (modifiedFilter != null) {
+            partitions = sourcePartitions.stream().map(partition -> partition.withFilter(modifiedFilter)).toList();
+        }
+        long totalExpected = resumeFrom != null ? resumeFrom.totalFound() : countDocuments(solr7Host, solrSourceCollection, partitions);
         assert totalExpected >= 0;
         log.info("We queried host {} with collection {} and it returned {} documents. We will start tracking this crawl", solr7Host, solrSourceCollection, totalExpected);
         indexingTracker.reset();
+        unchangedDocumentFilter.reset();
         indexingTracker.startTracking(crawlId.toString());
         indexingTracker.setTotalDocumentsFound(totalExpected);
-        long numOfPagesExpected = calculateNumOfPages(totalExpected, paginationSize);
-        assert numOfPagesExpected >= 0;
-        for (int currentPage = 0; currentPage < numOfPagesExpected; currentPage++) {
-            processPages(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, currentPage, crawlId);
+        if (resumeFrom != null) {
+            indexingTracker.restoreCounts(resumeFrom.mainProcessed(), resumeFrom.mainFailed(), resumeFrom.vectorProcessed(), resumeFrom.vectorFailed());
         }
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(crawlStateStore, indexingTracker, solrSourceCollection, crawlId.toString(),
+                modifiedFilter, crawlStart, totalExpected, getCheckpointInterval(),
+                CollectionUtils.isNotEmpty(indexerConfiguration.getChunkVectorConfig()), resumeFrom);
+        readPartitions(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, partitions, crawlId, checkpointer);
         log.info("*****PUBLISHING COMPLETE. {} documents were pushed and going to the {} collection", totalExpected, solrDestinationCollection);
 
         waitForIndexingCompletion(MAIN);
-        solrAdminActions.commit(solrDestinationCollection);
+        if (modifiedFilter != null) {
+            // every id the source still has, not only the changed ones
+            deletedDocumentSweeper.sweep(solr7Host, solrSourceCollection, solrDestinationCollection, sourcePartitions);
+        }
+        commitPolicy.commitMainStage();
         indexingTracker.finalizeTracking(IndexingTracker.TaskType.MAIN);
         waitForIndexingCompletion(VECTOR);
         indexingTracker.finalizeTracking(VECTOR);
-        solrAdminActions.commitVectorCollections();
-        if (indexingTracker.getMainTaskStatus().getOverallStatus() == IndexingStatus.OverallStatus.FAILED) {
-            String errorMessage = String.format("Indexing job %s failed.  End status: \n%s", crawlId, indexingTracker.getMainTaskStatus());
+        commitPolicy.commitVectorStage();
+        if (unchangedDocumentFilter.isEnabled()) {
+            // the fingerprints follow the chunks of their documents, after the main stage commit
+            unchangedDocumentFilter.awaitFingerprintWrites();
+            commitPolicy.commitMainStage();
+        }
+        IndexingStatus mainStatus = indexingTracker.getMainTaskStatus();
+        IndexingStatus vectorStatus = indexingTracker.getVectorTaskStatus();
+        if (mainStatus.getOverallStatus() == IndexingStatus.OverallStatus.FAILED
+                || vectorStatus.getOverallStatus() == IndexingStatus.OverallStatus.FAILED) {
+            String errorMessage = String.format("Indexing job %s failed.  End status: \n%s\n%s", crawlId, mainStatus, vectorStatus);
             log.error(errorMessage);
             throw new IndexingFailedExecption(errorMessage);
         }
+        crawlStateStore.clearCheckpoint(solrSourceCollection);
+        if (indexerConfiguration.getSourceSolrConfiguration().getModifiedField() != null) {
+            // the next incremental crawl reads every document changed since the old watermark again, failed ones included
+            if (mainStatus.getTotalDocumentsFailed() > 0 || vectorStatus.getTotalDocumentsFailed() > 0) {
+                log.warn("Crawl {} of {} finished with {} failed documents and {} failed vector documents. The watermark stays where it was.",
+                        crawlId, solrSourceCollection, mainStatus.getTotalDocumentsFailed(), vectorStatus.getTotalDocumentsFailed());
+            } else {
+                crawlStateStore.saveWatermark(solrSourceCollection, crawlStart);
+            }
+        }
         //deleteOrphans(solrDestinationCollection, crawlId);
     }
 
+    private Duration getCheckpointInterval() {
+        Integer checkpointIntervalSeconds = indexerConfigurationProperties.getCheckpointIntervalSeconds();
+        return Duration.ofSeconds(checkpointIntervalSeconds == null ? 300 : checkpointIntervalSeconds);
+    }
+
+    /**
+     * Waits for the tracker to complete the task. The wait ends as soon as the last document is counted; waking up
+     * every loop-check-sleep-time-seconds is only for the progress log and the hang watchdog. The task is marked
+     * as failed when a listener has been working on one document for longer than the hang timeout, or when no
+     * document is active and the counts have not moved for that long.
+     */
     private void waitForIndexingCompletion(IndexingTracker.TaskType taskType) throws IndexingFailedExecption {
-        int maxWarnings = indexerConfigurationProperties.getLoopMaxWarnings() == null ? 3 : indexerConfigurationProperties.getLoopMaxWarnings();
-        int waitTimeInSeconds = indexerConfigurationProperties.getLoopCheckSleepTimeSeconds() == null ? 10 : indexerConfigurationProperties.getLoopCheckSleepTimeSeconds(); // Time to wait between checks for new documents
-        int warningCount = 0;
-        long previousProcessedCount = 0;
-        IndexingStatus taskStatus = getStatusByTaskType(taskType); // Getting the respective task status.
-        long totalExpected = taskStatus.getTotalDocumentsFound();
+        int waitTimeInSeconds = indexerConfigurationProperties.getLoopCheckSleepTimeSeconds() == null ? 10 : indexerConfigurationProperties.getLoopCheckSleepTimeSeconds();
+        Duration hangTimeout = getHangTimeout(waitTimeInSeconds);
+        CompletableFuture<IndexingStatus> completion = indexingTracker.getCompletion(taskType);
+        long previousProcessedCount = -1;
+        Instant lastProgress = Instant.now();
 
         while (true) {
-            // Get the current status
-            long totalProcessed = taskStatus.getTotalDocumentsProcessed();
-            long totalFailed = taskStatus.getTotalDocumentsFailed();
-            long totalProcessedOrFailed = totalProcessed + totalFailed;
-
-            // Check if the total processed or failed documents meets the expected total
-            if (totalProcessedOrFailed >= totalExpected) {
-                log.info("All documents processed for {} task. Marking indexing as complete.", taskType);
-                indexingTracker.finalizeTracking(taskType);
-                break;
-            } else {
-                log.info("***** INDEXING STILL IN PROGRESS for {} task: Expecting {} documents. {}", taskType, totalExpected, taskStatus);
-            }
-
-            // Wait for some time before checking again
             try {
-                Thread.sleep(waitTimeInSeconds * 1000);
+                completion.get(waitTimeInSeconds, TimeUnit.SECONDS);
+                log.info("All documents processed for {} task. Marking indexing as complete.", taskType);
+                return;
+            } catch (TimeoutException e) {
+                // not done yet: report and check for a hang
+            } catch (ExecutionException e) {
+                throw new IndexingFailedExecption("Tracking the " + taskType + " task failed", e.getCause());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new IndexingFailedExecption("Waiting for indexing completion was interrupted", e);
             }
 
-            // Check if the count of processed documents has not increased
-            if (totalProcessedOrFailed == previousProcessedCount) {
-                warningCount++;
-                log.warn("Potential hanging crawl detected for {} task. No progress in last {} seconds. Warning {}/{}", taskType, waitTimeInSeconds, warningCount, maxWarnings);
-
-                // Exit the loop and log an error if max warnings are reached
-                if (warningCount >= maxWarnings) {
-                    log.error("Max warnings reached for {} task. Hanging crawl detected. Exiting wait loop.", taskType);
-                    indexingTracker.markIndexingAsFailed(taskType);
-                    break;
-                }
-            } else {
-                // Reset warning count if progress is made
-                warningCount = 0;
+            long totalProcessedOrFailed = indexingTracker.getDocumentsDone(taskType);
+            if (totalProcessedOrFailed != previousProcessedCount) {
+                previousProcessedCount = totalProcessedOrFailed;
+                lastProgress = Instant.now();
+            }
+            IndexingStatus taskStatus = getStatusByTaskType(taskType);
+            log.info("***** INDEXING STILL IN PROGRESS for {} task: Expecting {} documents. {}", taskType, taskStatus.getTotalDocumentsFound(), taskStatus);
+
+            Duration oldestActive = subscriptionManager.getOldestActiveAge();
+            if (oldestActive.compareTo(hangTimeout) > 0) {
+                log.error("A listener has been working on one document for {} seconds, longer than the hang timeout of {} seconds. Marking the {} task as failed.",
+                        oldestActive.toSeconds(), hangTimeout.toSeconds(), taskType);
+                indexingTracker.markIndexingAsFailed(taskType);
+                return;
             }
+            Duration sinceProgress = Duration.between(lastProgress, Instant.now());
+            if (oldestActive.isZero() && sinceProgress.compareTo(hangTimeout) > 0) {
+                log.error("No document is being worked on and the {} task has not progressed for {} seconds. Documents were lost. Marking the task as failed.",
+                        taskType, sinceProgress.toSeconds());
+                indexingTracker.markIndexingAsFailed(taskType);
+                return;
+            }
+        }
+    }
 
-            // Update the previousProcessedCount
-            previousProcessedCount = totalProcessedOrFailed;
+    private Duration getHangTimeout(int waitTimeInSeconds) {
+        Integer hangTimeoutSeconds = indexerConfigurationProperties.getHangTimeoutSeconds();
+        if (hangTimeoutSeconds != null && hangTimeoutSeconds > 0) {
+            return Duration.ofSeconds(hangTimeoutSeconds);
         }
+        int maxWarnings = indexerConfigurationProperties.getLoopMaxWarnings() == null ? 3 : indexerConfigurationProperties.getLoopMaxWarnings();
+        return Duration.ofSeconds((long) waitTimeInSeconds * maxWarnings);
     }
 
     private IndexingStatus getStatusByTaskType(IndexingTracker.TaskType taskType) {
@@ -186,28 +332,174 @@ public class SolrSemanticIndexer implements SemanticIndexer {
         }
     }
 
-    public void processPages(String solr7Host, String solrSourceCollection, String solrDestinationCollection, Integer paginationSize, int currentPage, UUID crawlId) {
-        String solrDocs = fetchSolrDocuments(solr7Host, solrSourceCollection, paginationSize, currentPage);
-        HttpSolrSelectResponse response = jsonToSolrDoc.parseSolrDocuments(solrDocs);
+    /**
+     * /export only reads the core that receives the request, while the documents are counted over the whole
+     * collection, so a crawl of a collection with more shards would never see the count it waits for.
+     */
+    private void checkSingleCoreSource(String solr7Host, String solrSourceCollection) throws IndexingFailedExecption {
+        List<String> shards;
+        try {
+            shards = httpSolrSelectClient.getShardNames(solr7Host, solrSourceCollection);
+        } catch (RuntimeException e) {
+            // not a SolrCloud collection, so the core is the whole collection
+            return;
+        }
+        if (shards.size() > 1) {
+            throw new IndexingFailedExecption("The export read-mode only reads the core that receives the request, but " + solrSourceCollection
+                    + " has " + shards.size() + " shards. Use the stream read-mode to export every shard.");
+        }
+    }
 
-        if (isEmptyResponse(response)) {
-            log.info("No solr documents in source collection. Breaking.");
+    private long countDocuments(String solr7Host, String solrSourceCollection, List<SourcePartition> partitions) {
+        if (partitions.size() == 1) {
+            return httpSolrSelectClient.getTotalNumberOfDocumentsForPartition(solr7Host, solrSourceCollection, partitions.get(0));
+        }
+        // partitions may be user defined filter slices, so add up what each of them will actually read
+        long total = 0;
+        for (SourcePartition partition : partitions) {
+            total += httpSolrSelectClient.getTotalNumberOfDocumentsForPartition(solr7Host, solrSourceCollection, partition);
+        }
+        return total;
+    }
+
+    /**
+     * Reads every partition of the source collection. Partitions are read at the same time, up to the
+     * read-concurrency of the source solr configuration.
+     */
+    private void readPartitions(String solr7Host, String solrSourceCollection, String solrDestinationCollection, int paginationSize, List<SourcePartition> partitions, UUID crawlId, CrawlCheckpointer checkpointer) throws IndexingFailedExecption {
+        int concurrency = Math.min(sourcePartitioner.getReadConcurrency(), partitions.size());
+        if (concurrency <= 1) {
+            for (SourcePartition partition : partitions) {
+                readPartition(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, partition, crawlId, checkpointer);
+            }
             return;
         }
-        Collection<SolrInputDocument> documents = response.getDocs();
-        if (documents.isEmpty()) {
+        log.info("Reading {} partitions of collection {} with {} threads", partitions.size(), solrSourceCollection, concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("solr-source-reader-%d").build());
+        try {
+            List<Future<?>> futures = new ArrayList<>(partitions.size());
+            for (SourcePartition partition : partitions) {
+                futures.add(executor.submit(() -> readPartition(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, partition, crawlId, checkpointer)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IndexingFailedExecption("Reading the source collection " + solrSourceCollection + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingFailedExecption("Reading the source collection " + solrSourceCollection + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void readPartition(String solr7Host, String solrSourceCollection, String solrDestinationCollection, int paginationSize, SourcePartition partition, UUID crawlId, CrawlCheckpointer checkpointer) {
+        String startCursorMark = checkpointer.getStartCursor(partition.getName(), HttpSolrSelectClient.CURSOR_MARK_START);
+        if (CrawlCheckpoint.DONE.equals(startCursorMark)) {
+            log.info("Partition {} was finished before the checkpoint. Skipping it.", partition.getName());
+            return;
+        }
+        if (solrExportClient.isExportMode()) {
+            // the export stream has no cursor to checkpoint, so export crawls save no checkpoints and cannot be resumed
+            exportPartition(solr7Host, solrSourceCollection, paginationSize, partition, crawlId);
+            checkpointer.partitionDone(partition.getName());
             return;
         }
-        log.info("Exporting {} documents from source collection {} to destination collection {}", documents.size(), solrSourceCollection, solrDestinationCollection);
-        processDocuments(documents, crawlId);
+        log.info("Starting the cursor walk of partition {}", partition.getName());
+        int prefetchDepth = getPrefetchDepth();
+        if (prefetchDepth > 0) {
+            prefetchPartition(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, partition, prefetchDepth, crawlId, startCursorMark, checkpointer);
+        } else {
+            // Walk the source with a cursor rather than start/rows so every page costs the same on the source solr
+            String cursorMark = startCursorMark;
+            while (cursorMark != null) {
+                cursorMark = processPage(solr7Host, solrSourceCollection, solrDestinationCollection, paginationSize, cursorMark, partition, crawlId, checkpointer);
+            }
+        }
+        checkpointer.partitionDone(partition.getName());
+        log.info("Finished the cursor walk of partition {}", partition.getName());
     }
 
-    private long calculateNumOfPages(long totalDocuments, int paginationSize) {
-        return (totalDocuments == -1) ? -1 : (totalDocuments / paginationSize) + 1;
+    /**
+     * Walks the cursor of the partition with the pages fetched and parsed ahead of publishing, so the
+     * source request for the next page runs while the current page is being published.
+     */
+    private void prefetchPartition(String solr7Host, String solrSourceCollection, String solrDestinationCollection, int paginationSize, SourcePartition partition, int prefetchDepth, UUID crawlId,
+                                   String startCursorMark, CrawlCheckpointer checkpointer) {
+        try (CursorPagePrefetcher prefetcher = new CursorPagePrefetcher(httpSolrSelectClient, solr7Host, solrSourceCollection, paginationSize, partition, prefetchDepth, startCursorMark)
+                .start(prefetchExecutor)) {
+            HttpSolrSelectResponse page;
+            String cursorMark = startCursorMark;
+            while ((page = prefetcher.next()) != null) {
+                log.info("Exporting {} documents from source collection {} to destination collection {}", page.getDocs().size(), solrSourceCollection, solrDestinationCollection);
+                Collection<SolrInputDocument> documents = page.getDocs();
+                cursorMark = nextCursorMark(cursorMark, page);
+                checkpointer.publishPage(partition.getName(), documents.size(), cursorMark, () -> processDocuments(documents, crawlId));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Reading partition " + partition.getName() + " was interrupted", e);
+        }
     }
 
-    private String fetchSolrDocuments(String solr7Host, String solrSourceCollection, int paginationSize, int currentPage) {
-        return httpSolrSelectClient.getSolrDocs(solr7Host, solrSourceCollection, paginationSize, currentPage);
+    private int getPrefetchDepth() {
+        Integer prefetchDepth = defaultIndexerConfiguration.getSourceSolrConfiguration().getPrefetchDepth();
+        return prefetchDepth == null || prefetchDepth < 0 ? 0 : prefetchDepth;
+    }
+
+    /**
+     * Streams the partition from the /export handler. Documents are published in batches of the pagination
+     * size while the rest of the response is still arriving.
+     */
+    private void exportPartition(String solr7Host, String solrSourceCollection, int paginationSize, SourcePartition partition, UUID crawlId) {
+        List<SolrInputDocument> batch = new ArrayList<>(paginationSize);
+        solrExportClient.exportDocuments(solr7Host, solrSourceCollection, partition, doc -> {
+            batch.add(doc);
+            if (batch.size() >= paginationSize) {
+                processDocuments(batch, crawlId);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            processDocuments(batch, crawlId);
+        }
+    }
+
+    /**
+     * Fetches and publishes a single page of the cursor walk of a partition.
+     *
+     * @return the cursor of the next page, or null if the walk is complete
+     */
+    public String processPage(String solr7Host, String solrSourceCollection, String solrDestinationCollection, Integer paginationSize, String cursorMark, SourcePartition partition, UUID crawlId,
+                              CrawlCheckpointer checkpointer) {
+        HttpSolrSelectResponse response = fetchSolrDocuments(solr7Host, solrSourceCollection, paginationSize, cursorMark, partition);
+
+        if (isEmptyResponse(response)) {
+            log.info("No solr documents in partition {} of the source collection. Breaking.", partition.getName());
+            return null;
+        }
+        Collection<SolrInputDocument> documents = response.getDocs();
+        String nextCursorMark = nextCursorMark(cursorMark, response);
+        if (!documents.isEmpty()) {
+            log.info("Exporting {} documents from source collection {} to destination collection {}", documents.size(), solrSourceCollection, solrDestinationCollection);
+            checkpointer.publishPage(partition.getName(), documents.size(), nextCursorMark, () -> processDocuments(documents, crawlId));
+        }
+        return nextCursorMark;
+    }
+
+    private static String nextCursorMark(String cursorMark, HttpSolrSelectResponse response) {
+        String nextCursorMark = response.getNextCursorMark();
+        if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+            // solr hands back the same cursor once the end of the result set is reached
+            return null;
+        }
+        return nextCursorMark;
+    }
+
+    private HttpSolrSelectResponse fetchSolrDocuments(String solr7Host, String solrSourceCollection, int paginationSize, String cursorMark, SourcePartition partition) {
+        return httpSolrSelectClient.getSolrDocsResponseWithCursor(solr7Host, solrSourceCollection, paginationSize, cursorMark, partition);
     }
 
     private boolean isEmptyResponse(HttpSolrSelectResponse response) {
@@ -215,21 +507,38 @@ public class SolrSemanticIndexer implements SemanticIndexer {
     }
 
     private void processDocuments(Collection<SolrInputDocument> documents, UUID crawlId) {
+        String crawlDate = convertToSolrDateString(System.currentTimeMillis());
         documents.forEach(doc -> {
-            insertDates(doc);
+            insertDates(doc, crawlDate);
             insertCrawlId(doc, crawlId);
-            solrSourceDocumentPublisher.publishDocument(doc);
-            solrChunkDocumentPublisher.publishDocument(doc);
         });
+        Collection<SolrInputDocument> changedDocuments = documents;
+        if (unchangedDocumentFilter.isEnabled()) {
+            changedDocuments = unchangedDocumentFilter.filterUnchanged(documents, crawlId.toString(), crawlDate);
+            // the unchanged documents are done: their crawl fields were refreshed in place and they are not published
+            int unchangedCount = documents.size() - changedDocuments.size();
+            for (int i = 0; i < unchangedCount; i++) {
+                indexingTracker.documentProcessed();
+                indexingTracker.vectorDocumentProcessed();
+            }
+        }
+        Collection<SolrInputDocument> toPublish = changedDocuments;
+        // the publishers are unicast sinks, which reject emissions from more than one thread at a time
+        synchronized (publishLock) {
+            toPublish.forEach(doc -> {
+                solrSourceDocumentPublisher.publishDocument(doc);
+                solrChunkDocumentPublisher.publishDocument(doc);
+            });
+        }
     }
 
     private static void insertCrawlId(SolrInputDocument doc, UUID crawlId) {
         doc.setField(SchemaConstants.CRAWL_ID, crawlId.toString());
     }
 
-    private static void insertDates(SolrInputDocument doc) {
+    private static void insertDates(SolrInputDocument doc, String crawlDate) {
         checkDateField(doc, "creation_date");
-        doc.addField(SchemaConstants.CRAWL_DATE, convertToSolrDateString(System.currentTimeMillis()));
+        doc.addField(SchemaConstants.CRAWL_DATE, crawlDate);
     }
 
     private static void checkDateField(SolrInputDocument doc, String date) {
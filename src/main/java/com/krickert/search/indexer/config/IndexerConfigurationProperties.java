@@ -23,12 +23,120 @@ public class IndexerConfigurationProperties {
     @JsonProperty("vector-batch-size")
     private Integer vectorBatchSize;
 
+    @JsonProperty("embedding-batch-size")
+    private Integer embeddingBatchSize;
+
+    @JsonProperty("embedding-batch-linger-millis")
+    private Integer embeddingBatchLingerMillis;
+
     @JsonProperty("loop-check-sleep-time-seconds")
     private Integer loopCheckSleepTimeSeconds;
 
     @JsonProperty("loop-max-warnings")
     private Integer loopMaxWarnings;
 
+    @JsonProperty("publisher-queue-capacity")
+    private Integer publisherQueueCapacity;
+
+    @JsonProperty("publisher-overflow-policy")
+    private String publisherOverflowPolicy;
+
+    @JsonProperty("publisher-block-timeout-seconds")
+    private Integer publisherBlockTimeoutSeconds;
+
+    @JsonProperty("async-listeners")
+    private Boolean asyncListeners;
+
+    @JsonProperty("max-in-flight-documents")
+    private Integer maxInFlightDocuments;
+
+    @JsonProperty("listener-execution-mode")
+    private String listenerExecutionMode;
+
+    @JsonProperty("listener-threads")
+    private Integer listenerThreads;
+
+    @JsonProperty("embedding-max-concurrency")
+    private Integer embeddingMaxConcurrency;
+
+    @JsonProperty("chunker-max-concurrency")
+    private Integer chunkerMaxConcurrency;
+
+    @JsonProperty("solr-max-concurrency")
+    private Integer solrMaxConcurrency;
+
+    @JsonProperty("inline-listener-rails")
+    private Integer inlineListenerRails;
+
+    @JsonProperty("inline-listener-prefetch")
+    private Integer inlineListenerPrefetch;
+
+    @JsonProperty("inline-listener-threads")
+    private Integer inlineListenerThreads;
+
+    @JsonProperty("chunk-listener-rails")
+    private Integer chunkListenerRails;
+
+    @JsonProperty("chunk-listener-prefetch")
+    private Integer chunkListenerPrefetch;
+
+    @JsonProperty("chunk-listener-threads")
+    private Integer chunkListenerThreads;
+
+    @JsonProperty("embedding-model-name")
+    private String embeddingModelName;
+
+    @JsonProperty("embedding-cache-enabled")
+    private Boolean embeddingCacheEnabled;
+
+    @JsonProperty("embedding-cache-max-bytes")
+    private Long embeddingCacheMaxBytes;
+
+    @JsonProperty("embedding-cache-off-heap")
+    private Boolean embeddingCacheOffHeap;
+
+    @JsonProperty("embedding-store-dir")
+    private String embeddingStoreDir;
+
+    @JsonProperty("embedding-store-segment-bytes")
+    private Long embeddingStoreSegmentBytes;
+
+    @JsonProperty("state-dir")
+    private String stateDir;
+
+    @JsonProperty("incremental-overlap-seconds")
+    private Integer incrementalOverlapSeconds;
+
+    @JsonProperty("skip-unchanged-documents")
+    private Boolean skipUnchangedDocuments;
+
+    @JsonProperty("checkpoint-interval-seconds")
+    private Integer checkpointIntervalSeconds;
+
+    @JsonProperty("hang-timeout-seconds")
+    private Integer hangTimeoutSeconds;
+
+    @JsonProperty("solr-batch-size")
+    private Integer solrBatchSize;
+
+    @JsonProperty("solr-batch-max-bytes")
+    private Long solrBatchMaxBytes;
+
+    @JsonProperty("solr-batch-linger-millis")
+    private Long solrBatchLingerMillis;
+
+    @JsonProperty("commit-within-millis")
+    private Integer commitWithinMillis;
+
+    @JsonProperty("soft-commit-interval-seconds")
+    private Long softCommitIntervalSeconds;
+
+    @JsonProperty("hard-commit-every-documents")
+    private Long hardCommitEveryDocuments;
+
+    @JsonProperty("source-read-timeout-seconds")
+    private Integer sourceReadTimeoutSeconds;
+
 
     // Getters and Setters
     public String getVectorGrpcChannel() {
@@ -55,6 +163,22 @@ public class IndexerConfigurationProperties {
         this.vectorBatchSize = vectorBatchSize;
     }
 
+    public Integer getEmbeddingBatchSize() {
+        return embeddingBatchSize;
+    }
+
+    public void setEmbeddingBatchSize(Integer embeddingBatchSize) {
+        this.embeddingBatchSize = embeddingBatchSize;
+    }
+
+    public Integer getEmbeddingBatchLingerMillis() {
+        return embeddingBatchLingerMillis;
+    }
+
+    public void setEmbeddingBatchLingerMillis(Integer embeddingBatchLingerMillis) {
+        this.embeddingBatchLingerMillis = embeddingBatchLingerMillis;
+    }
+
     public Integer getLoopCheckSleepTimeSeconds() {
         return loopCheckSleepTimeSeconds;
     }
@@ -71,6 +195,278 @@ public class IndexerConfigurationProperties {
         this.loopMaxWarnings = loopMaxWarnings;
     }
 
+    public Integer getPublisherQueueCapacity() {
+        return publisherQueueCapacity;
+    }
+
+    public void setPublisherQueueCapacity(Integer publisherQueueCapacity) {
+        this.publisherQueueCapacity = publisherQueueCapacity;
+    }
+
+    public String getPublisherOverflowPolicy() {
+        return publisherOverflowPolicy;
+    }
+
+    public void setPublisherOverflowPolicy(String publisherOverflowPolicy) {
+        this.publisherOverflowPolicy = publisherOverflowPolicy;
+    }
+
+    public Integer getPublisherBlockTimeoutSeconds() {
+        return publisherBlockTimeoutSeconds;
+    }
+
+    public void setPublisherBlockTimeoutSeconds(Integer publisherBlockTimeoutSeconds) {
+        this.publisherBlockTimeoutSeconds = publisherBlockTimeoutSeconds;
+    }
+
+    public Boolean getAsyncListeners() {
+        return asyncListeners;
+    }
+
+    public void setAsyncListeners(Boolean asyncListeners) {
+        this.asyncListeners = asyncListeners;
+    }
+
+    public Integer getMaxInFlightDocuments() {
+        return maxInFlightDocuments;
+    }
+
+    public void setMaxInFlightDocuments(Integer maxInFlightDocuments) {
+        this.maxInFlightDocuments = maxInFlightDocuments;
+    }
+
+    public String getListenerExecutionMode() {
+        return listenerExecutionMode;
+    }
+
+    public void setListenerExecutionMode(String listenerExecutionMode) {
+        this.listenerExecutionMode = listenerExecutionMode;
+    }
+
+    public Integer getListenerThreads() {
+        return listenerThreads;
+    }
+
+    public void setListenerThreads(Integer listenerThreads) {
+        this.listenerThreads = listenerThreads;
+    }
+
+    public Integer getEmbeddingMaxConcurrency() {
+        return embeddingMaxConcurrency;
+    }
+
+    public void setEmbeddingMaxConcurrency(Integer embeddingMaxConcurrency) {
+        this.embeddingMaxConcurrency = embeddingMaxConcurrency;
+    }
+
+    public Integer getChunkerMaxConcurrency() {
+        return chunkerMaxConcurrency;
+    }
+
+    public void setChunkerMaxConcurrency(Integer chunkerMaxConcurrency) {
+        this.chunkerMaxConcurrency = chunkerMaxConcurrency;
+    }
+
+    public Integer getSolrMaxConcurrency() {
+        return solrMaxConcurrency;
+    }
+
+    public void setSolrMaxConcurrency(Integer solrMaxConcurrency) {
+        this.solrMaxConcurrency = solrMaxConcurrency;
+    }
+
+    public Integer getInlineListenerRails() {
+        return inlineListenerRails;
+    }
+
+    public void setInlineListenerRails(Integer inlineListenerRails) {
+        this.inlineListenerRails = inlineListenerRails;
+    }
+
+    public Integer getInlineListenerPrefetch() {
+        return inlineListenerPrefetch;
+    }
+
+    public void setInlineListenerPrefetch(Integer inlineListenerPrefetch) {
+        this.inlineListenerPrefetch = inlineListenerPrefetch;
+    }
+
+    public Integer getInlineListenerThreads() {
+        return inlineListenerThreads;
+    }
+
+    public void setInlineListenerThreads(Integer inlineListenerThreads) {
+        this.inlineListenerThreads = inlineListenerThreads;
+    }
+
+    public Integer getChunkListenerRails() {
+        return chunkListenerRails;
+    }
+
+    public void setChunkListenerRails(Integer chunkListenerRails) {
+        this.chunkListenerRails = chunkListenerRails;
+    }
+
+    public Integer getChunkListenerPrefetch() {
+        return chunkListenerPrefetch;
+    }
+
+    public void setChunkListenerPrefetch(Integer chunkListenerPrefetch) {
+        this.chunkListenerPrefetch = chunkListenerPrefetch;
+    }
+
+    public Integer getChunkListenerThreads() {
+        return chunkListenerThreads;
+    }
+
+    public void setChunkListenerThreads(Integer chunkListenerThreads) {
+        this.chunkListenerThreads = chunkListenerThreads;
+    }
+
+    public String getEmbeddingModelName() {
+        return embeddingModelName;
+    }
+
+    public void setEmbeddingModelName(String embeddingModelName) {
+        this.embeddingModelName = embeddingModelName;
+    }
+
+    public Boolean getEmbeddingCacheEnabled() {
+        return embeddingCacheEnabled;
+    }
+
+    public void setEmbeddingCacheEnabled(Boolean embeddingCacheEnabled) {
+        this.embeddingCacheEnabled = embeddingCacheEnabled;
+    }
+
+    public Long getEmbeddingCacheMaxBytes() {
+        return embeddingCacheMaxBytes;
+    }
+
+    public void setEmbeddingCacheMaxBytes(Long embeddingCacheMaxBytes) {
+        this.embeddingCacheMaxBytes = embeddingCacheMaxBytes;
+    }
+
+    public Boolean getEmbeddingCacheOffHeap() {
+        return embeddingCacheOffHeap;
+    }
+
+    public void setEmbeddingCacheOffHeap(Boolean embeddingCacheOffHeap) {
+        this.embeddingCacheOffHeap = embeddingCacheOffHeap;
+    }
+
+    public String getEmbeddingStoreDir() {
+        return embeddingStoreDir;
+    }
+
+    public void setEmbeddingStoreDir(String embeddingStoreDir) {
+        this.embeddingStoreDir = embeddingStoreDir;
+    }
+
+    public Long getEmbeddingStoreSegmentBytes() {
+        return embeddingStoreSegmentBytes;
+    }
+
+    public void setEmbeddingStoreSegmentBytes(Long embeddingStoreSegmentBytes) {
+        this.embeddingStoreSegmentBytes = embeddingStoreSegmentBytes;
+    }
+
+    public String getStateDir() {
+        return stateDir;
+    }
+
+    public void setStateDir(String stateDir) {
+        this.stateDir = stateDir;
+    }
+
+    public Integer getIncrementalOverlapSeconds() {
+        return incrementalOverlapSeconds;
+    }
+
+    public void setIncrementalOverlapSeconds(Integer incrementalOverlapSeconds) {
+        this.incrementalOverlapSeconds = incrementalOverlapSeconds;
+    }
+
+    public Boolean getSkipUnchangedDocuments() {
+        return skipUnchangedDocuments;
+    }
+
+    public void setSkipUnchangedDocuments(Boolean skipUnchangedDocuments) {
+        this.skipUnchangedDocuments = skipUnchangedDocuments;
+    }
+
+    public Integer getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public void setCheckpointIntervalSeconds(Integer checkpointIntervalSeconds) {
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    public Integer getHangTimeoutSeconds() {
+        return hangTimeoutSeconds;
+    }
+
+    public void setHangTimeoutSeconds(Integer hangTimeoutSeconds) {
+        this.hangTimeoutSeconds = hangTimeoutSeconds;
+    }
+
+    public Integer getSolrBatchSize() {
+        return solrBatchSize;
+    }
+
+    public void setSolrBatchSize(Integer solrBatchSize) {
+        this.solrBatchSize = solrBatchSize;
+    }
+
+    public Long getSolrBatchMaxBytes() {
+        return solrBatchMaxBytes;
+    }
+
+    public void setSolrBatchMaxBytes(Long solrBatchMaxBytes) {
+        this.solrBatchMaxBytes = solrBatchMaxBytes;
+    }
+
+    public Long getSolrBatchLingerMillis() {
+        return solrBatchLingerMillis;
+    }
+
+    public void setSolrBatchLingerMillis(Long solrBatchLingerMillis) {
+        this.solrBatchLingerMillis = solrBatchLingerMillis;
+    }
+
+    public Integer getCommitWithinMillis() {
+        return commitWithinMillis;
+    }
+
+    public void setCommitWithinMillis(Integer commitWithinMillis) {
+        this.commitWithinMillis = commitWithinMillis;
+    }
+
+    public Long getSoftCommitIntervalSeconds() {
+        return softCommitIntervalSeconds;
+    }
+
+    public void setSoftCommitIntervalSeconds(Long softCommitIntervalSeconds) {
+        this.softCommitIntervalSeconds = softCommitIntervalSeconds;
+    }
+
+    public Long getHardCommitEveryDocuments() {
+        return hardCommitEveryDocuments;
+    }
+
+    public void setHardCommitEveryDocuments(Long hardCommitEveryDocuments) {
+        this.hardCommitEveryDocuments = hardCommitEveryDocuments;
+    }
+
+    public Integer getSourceReadTimeoutSeconds() {
+        return sourceReadTimeoutSeconds;
+    }
+
+    public void setSourceReadTimeoutSeconds(Integer sourceReadTimeoutSeconds) {
+        this.sourceReadTimeoutSeconds = sourceReadTimeoutSeconds;
+    }
+
     public SourceSeedData getSourceSeedData() {
         return sourceSeedData;
     }
@@ -87,8 +483,44 @@ public class IndexerConfigurationProperties {
                 .add("chunkerGrpcChannel", chunkerGrpcChannel)
                 .add("sourceSeedData", sourceSeedData)
                 .add("vectorBatchSize", vectorBatchSize)
+                .add("embeddingBatchSize", embeddingBatchSize)
+                .add("embeddingBatchLingerMillis", embeddingBatchLingerMillis)
                 .add("loopCheckSleepTimeSeconds", loopCheckSleepTimeSeconds)
                 .add("loopMaxWarnings", loopMaxWarnings)
+                .add("publisherQueueCapacity", publisherQueueCapacity)
+                .add("publisherOverflowPolicy", publisherOverflowPolicy)
+                .add("publisherBlockTimeoutSeconds", publisherBlockTimeoutSeconds)
+                .add("asyncListeners", asyncListeners)
+                .add("maxInFlightDocuments", maxInFlightDocuments)
+                .add("listenerExecutionMode", listenerExecutionMode)
+                .add("listenerThreads", listenerThreads)
+                .add("embeddingMaxConcurrency", embeddingMaxConcurrency)
+                .add("chunkerMaxConcurrency", chunkerMaxConcurrency)
+                .add("solrMaxConcurrency", solrMaxConcurrency)
+                .add("inlineListenerRails", inlineListenerRails)
+                .add("inlineListenerPrefetch", inlineListenerPrefetch)
+                .add("inlineListenerThreads", inlineListenerThreads)
+                .add("chunkListenerRails", chunkListenerRails)
+                .add("chunkListenerPrefetch", chunkListenerPrefetch)
+                .add("chunkListenerThreads", chunkListenerThreads)
+                .add("embeddingModelName", embeddingModelName)
+                .add("embeddingCacheEnabled", embeddingCacheEnabled)
+                .add("embeddingCacheMaxBytes", embeddingCacheMaxBytes)
+                .add("embeddingCacheOffHeap", embeddingCacheOffHeap)
+                .add("embeddingStoreDir", embeddingStoreDir)
+                .add("embeddingStoreSegmentBytes", embeddingStoreSegmentBytes)
+                .add("stateDir", stateDir)
+                .add("incrementalOverlapSeconds", incrementalOverlapSeconds)
+                .add("skipUnchangedDocuments", skipUnchangedDocuments)
+                .add("checkpointIntervalSeconds", checkpointIntervalSeconds)
+                .add("hangTimeoutSeconds", hangTimeoutSeconds)
+                .add("solrBatchSize", solrBatchSize)
+                .add("solrBatchMaxBytes", solrBatchMaxBytes)
+                .add("solrBatchLingerMillis", solrBatchLingerMillis)
+                .add("commitWithinMillis", commitWithinMillis)
+                .add("softCommitIntervalSeconds", softCommitIntervalSeconds)
+                .add("hardCommitEveryDocuments", hardCommitEveryDocuments)
+                .add("sourceReadTimeoutSeconds", sourceReadTimeoutSeconds)
                 .toString();
     }
 
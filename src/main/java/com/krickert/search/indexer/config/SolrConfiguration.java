@@ -33,6 +33,39 @@ public class SolrConfiguration {
     @JsonProperty("start")
     private Long start = 0L;
 
+    @JsonProperty("unique-key")
+    private String uniqueKey = "id";
+
+    @JsonProperty("read-mode")
+    private String readMode;
+
+    @JsonProperty("response-format")
+    private String responseFormat;
+
+    @JsonProperty("fields")
+    private Collection<String> fields = Collections.emptyList();
+
+    @JsonProperty("exclude-fields")
+    private Collection<String> excludeFields = Collections.emptyList();
+
+    @JsonProperty("read-concurrency")
+    private Integer readConcurrency;
+
+    @JsonProperty("prefetch-depth")
+    private Integer prefetchDepth;
+
+    @JsonProperty("modified-field")
+    private String modifiedField;
+
+    @JsonProperty("partition-strategy")
+    private String partitionStrategy;
+
+    @JsonProperty("partition-count")
+    private Integer partitionCount;
+
+    @JsonProperty("partition-filters")
+    private Collection<String> partitionFilters = Collections.emptyList();
+
     @JsonProperty("collectionCreation")
     private SolrCollectionCreationConfig collectionCreation;
 
@@ -82,6 +115,95 @@ public class SolrConfiguration {
     public void setStart(Long start) {
         this.start = start;
     }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public void setUniqueKey(String uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    public String getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(String readMode) {
+        this.readMode = readMode;
+    }
+
+    public String getResponseFormat() {
+        return responseFormat;
+    }
+
+    public void setResponseFormat(String responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    public Collection<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(Collection<String> fields) {
+        this.fields = fields;
+    }
+
+    public Collection<String> getExcludeFields() {
+        return excludeFields;
+    }
+
+    public void setExcludeFields(Collection<String> excludeFields) {
+        this.excludeFields = excludeFields;
+    }
+
+    public Integer getReadConcurrency() {
+        return readConcurrency;
+    }
+
+    public void setReadConcurrency(Integer readConcurrency) {
+        this.readConcurrency = readConcurrency;
+    }
+
+    public Integer getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public void setPrefetchDepth(Integer prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    public String getModifiedField() {
+        return modifiedField;
+    }
+
+    public void setModifiedField(String modifiedField) {
+        this.modifiedField = modifiedField;
+    }
+
+    public String getPartitionStrategy() {
+        return partitionStrategy;
+    }
+
+    public void setPartitionStrategy(String partitionStrategy) {
+        this.partitionStrategy = partitionStrategy;
+    }
+
+    public Integer getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionCount(Integer partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public Collection<String> getPartitionFilters() {
+        return partitionFilters;
+    }
+
+    public void setPartitionFilters(Collection<String> partitionFilters) {
+        this.partitionFilters = partitionFilters;
+    }
+
     public SolrCollectionCreationConfig getCollectionCreation() {
         return collectionCreation;
     }
@@ -106,6 +228,17 @@ public class SolrConfiguration {
                 .add("collection", collection)
                 .add("filters", filters)
                 .add("start", start)
+                .add("uniqueKey", uniqueKey)
+                .add("readMode", readMode)
+                .add("responseFormat", responseFormat)
+                .add("fields", fields)
+                .add("excludeFields", excludeFields)
+                .add("readConcurrency", readConcurrency)
+                .add("prefetchDepth", prefetchDepth)
+                .add("modifiedField", modifiedField)
+                .add("partitionStrategy", partitionStrategy)
+                .add("partitionCount", partitionCount)
+                .add("partitionFilters", partitionFilters)
                 .add("collectionCreation", collectionCreation)
                 .add("connection", connection)
                 .toString();
@@ -191,6 +324,18 @@ public class SolrConfiguration {
         @JsonProperty("pagination-size")
         private Integer paginationSize;
 
+        @JsonProperty("mode")
+        private String mode;
+
+        @JsonProperty("zk-hosts")
+        private Collection<String> zkHosts = Collections.emptyList();
+
+        @JsonProperty("zk-chroot")
+        private String zkChroot;
+
+        @JsonProperty("solr-urls")
+        private Collection<String> solrUrls = Collections.emptyList();
+
         public String getUrl() {
             return url;
         }
@@ -207,18 +352,36 @@ public class SolrConfiguration {
             this.authentication = authentication;
         }
 
+        /**
+         * @deprecated the destination updates are batched by solr-batch-size and capped by solr-max-concurrency;
+         * only kept so existing configurations still load
+         */
+        @Deprecated
         public Integer getQueueSize() {
             return queueSize;
         }
 
+        /**
+         * @deprecated has no effect
+         */
+        @Deprecated
         public void setQueueSize(Integer queueSize) {
             this.queueSize = queueSize;
         }
 
+        /**
+         * @deprecated the destination updates are sent by the destination writer's flush threads, capped by
+         * solr-max-concurrency; only kept so existing configurations still load
+         */
+        @Deprecated
         public Integer getThreadCount() {
             return threadCount;
         }
 
+        /**
+         * @deprecated has no effect
+         */
+        @Deprecated
         public void setThreadCount(Integer threadCount) {
             this.threadCount = threadCount;
         }
@@ -231,6 +394,38 @@ public class SolrConfiguration {
             this.paginationSize = paginationSize;
         }
 
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+
+        public Collection<String> getZkHosts() {
+            return zkHosts;
+        }
+
+        public void setZkHosts(Collection<String> zkHosts) {
+            this.zkHosts = zkHosts;
+        }
+
+        public String getZkChroot() {
+            return zkChroot;
+        }
+
+        public void setZkChroot(String zkChroot) {
+            this.zkChroot = zkChroot;
+        }
+
+        public Collection<String> getSolrUrls() {
+            return solrUrls;
+        }
+
+        public void setSolrUrls(Collection<String> solrUrls) {
+            this.solrUrls = solrUrls;
+        }
+
         @Override
         public String toString() {
             return MoreObjects.toStringHelper(this)
@@ -239,6 +434,10 @@ public class SolrConfiguration {
                     .add("queueSize", queueSize)
                     .add("threadCount", threadCount)
                     .add("paginationSize", paginationSize)
+                    .add("mode", mode)
+                    .add("zkHosts", zkHosts)
+                    .add("zkChroot", zkChroot)
+                    .add("solrUrls", solrUrls)
                     .toString();
         }
 
@@ -39,6 +39,20 @@ public class IndexerController {
         return HttpResponse.ok("Indexing job started");
     }
 
+    @Get("/startIncremental")
+    @Secured(SecurityRule.IS_ANONYMOUS)
+    public HttpResponse<String> startIncrementalIndexing() throws IndexingFailedExecption {
+        semanticIndexer.runIncrementalExportJob();
+        return HttpResponse.ok("Incremental indexing job started");
+    }
+
+    @Get("/resume")
+    @Secured(SecurityRule.IS_ANONYMOUS)
+    public HttpResponse<String> resumeIndexing() throws IndexingFailedExecption {
+        semanticIndexer.resumeExportJob();
+        return HttpResponse.ok("Indexing job resumed");
+    }
+
     @Post("/registerConfig")
     @Secured(SecurityRule.IS_ANONYMOUS)
     public HttpResponse<String> registerConfig(IndexerConfiguration config) {
@@ -83,6 +97,18 @@ public class IndexerController {
         }
     }
 
+    @Get("/metrics")
+    @Secured(SecurityRule.IS_ANONYMOUS)
+    public HttpResponse<Map<String, Object>> getMetrics() {
+        try {
+            return HttpResponse.ok(indexerService.getMetrics());
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "Error retrieving metrics: " + e.getMessage());
+            return HttpResponse.serverError(error);
+        }
+    }
+
     @Get("/health")
     @Secured(SecurityRule.IS_ANONYMOUS)
     public HttpResponse<Map<String, String>> checkHealth() {
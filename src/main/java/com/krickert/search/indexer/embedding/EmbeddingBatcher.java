@@ -0,0 +1,215 @@
+package com.krickert.search.indexer.embedding;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.krickert.search.service.EmbeddingsVectorReply;
+import com.krickert.search.service.EmbeddingsVectorsReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Collects texts from many documents into a single createEmbeddingsVectors request. A batch is sent as soon as it
+ * holds batchSize texts, or lingerMillis after its first text was added, whichever comes first. Every text gets a
+ * future that is completed with its own vector once the batch reply arrives, so callers never have to know which
+ * batch their text ended up in.
+ * <br>
+ * A batch that fills up is sent by the thread that added its last text. A batch that lingers is sent on a
+ * separate flush thread. With a blocking embedder the sending thread waits for the reply; with an
+ * {@link #async async} embedder it only starts the request, and the futures are completed by the gRPC thread
+ * that receives the reply.
+ */
+public class EmbeddingBatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    private final String name;
+    private final Embedder embedder;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final ScheduledExecutorService lingerTimer;
+    private final ExecutorService flushExecutor;
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong textsSent = new AtomicLong();
+
+    private List<PendingText> pending;
+
+    /**
+     * @param name         used in log messages and thread names
+     * @param embedder     sends a createEmbeddingsVectors request for the given texts
+     * @param batchSize    the number of texts that triggers a request
+     * @param lingerMillis how long a batch that is not full waits for more texts
+     */
+    public EmbeddingBatcher(String name, Function<List<String>, EmbeddingsVectorsReply> embedder, int batchSize, long lingerMillis) {
+        this(name, blocking(checkNotNull(embedder)), batchSize, lingerMillis);
+    }
+
+    private EmbeddingBatcher(String name, Embedder embedder, int batchSize, long lingerMillis) {
+        checkArgument(batchSize > 0, "batchSize must be positive");
+        checkArgument(lingerMillis >= 0, "lingerMillis must not be negative");
+        this.name = checkNotNull(name);
+        this.embedder = checkNotNull(embedder);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.pending = new ArrayList<>(batchSize);
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-batch-timer").setDaemon(true).build());
+        this.flushExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat(name + "-batch-flush-%d").setDaemon(true).build());
+        log.info("Created embedding batcher {} with batch size {} and linger of {}ms", name, batchSize, lingerMillis);
+    }
+
+    /**
+     * Creates a batcher whose embedder returns without waiting for the reply, so no thread is held while a
+     * batch is being embedded.
+     */
+    public static EmbeddingBatcher async(String name, Function<List<String>, CompletableFuture<EmbeddingsVectorsReply>> embedder, int batchSize, long lingerMillis) {
+        checkNotNull(embedder);
+        return new EmbeddingBatcher(name, embedder::apply, batchSize, lingerMillis);
+    }
+
+    private static Embedder blocking(Function<List<String>, EmbeddingsVectorsReply> embedder) {
+        return texts -> {
+            try {
+                return CompletableFuture.completedFuture(embedder.apply(texts));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        };
+    }
+
+    /**
+     * Adds the text to the current batch.
+     *
+     * @return the vector of the text, completed once the batch it is in has been embedded
+     */
+    public CompletableFuture<EmbeddingsVectorReply> embed(String text) {
+        PendingText pendingText = new PendingText(checkNotNull(text));
+        List<PendingText> fullBatch = null;
+        synchronized (this) {
+            pending.add(pendingText);
+            if (pending.size() >= batchSize) {
+                fullBatch = takeBatch();
+            } else if (pending.size() == 1) {
+                List<PendingText> lingeringBatch = pending;
+                lingerTimer.schedule(() -> flushLingering(lingeringBatch), lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return pendingText.future;
+    }
+
+    /**
+     * Adds all the texts to the current batch, in order.
+     */
+    public List<CompletableFuture<EmbeddingsVectorReply>> embedAll(List<String> texts) {
+        List<CompletableFuture<EmbeddingsVectorReply>> futures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            futures.add(embed(text));
+        }
+        return futures;
+    }
+
+    private List<PendingText> takeBatch() {
+        List<PendingText> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        return batch;
+    }
+
+    private void flushLingering(List<PendingText> lingeringBatch) {
+        List<PendingText> batch;
+        synchronized (this) {
+            // the batch may have filled up and been sent while the timer was waiting
+            if (pending != lingeringBatch || pending.isEmpty()) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        flushExecutor.execute(() -> send(batch));
+    }
+
+    private void send(List<PendingText> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (PendingText pendingText : batch) {
+            texts.add(pendingText.text);
+        }
+        CompletableFuture<EmbeddingsVectorsReply> reply;
+        try {
+            reply = embedder.embed(texts);
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        reply.whenComplete((embeddings, error) -> {
+            if (error == null && embeddings.getEmbeddingsCount() != batch.size()) {
+                error = new IllegalStateException("Embedding service returned " + embeddings.getEmbeddingsCount() + " vectors for " + batch.size() + " texts");
+            }
+            if (error != null) {
+                log.error("Embedding batch of {} texts for {} failed", batch.size(), name, error);
+                for (PendingText pendingText : batch) {
+                    pendingText.future.completeExceptionally(error);
+                }
+                return;
+            }
+            batchesSent.incrementAndGet();
+            textsSent.addAndGet(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(embeddings.getEmbeddings(i));
+            }
+        });
+    }
+
+    /**
+     * @return the batch settings and how many batches and texts have been sent
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("batchSize", batchSize);
+        metrics.put("lingerMillis", lingerMillis);
+        metrics.put("batchesSent", batchesSent.get());
+        metrics.put("textsSent", textsSent.get());
+        return metrics;
+    }
+
+    /**
+     * Sends whatever is pending and stops the batcher's threads.
+     */
+    @Override
+    public void close() {
+        List<PendingText> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+        lingerTimer.shutdownNow();
+        flushExecutor.shutdown();
+    }
+
+    private interface Embedder {
+        CompletableFuture<EmbeddingsVectorsReply> embed(List<String> texts);
+    }
+
+    private static class PendingText {
+        private final String text;
+        private final CompletableFuture<EmbeddingsVectorReply> future = new CompletableFuture<>();
+
+        private PendingText(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.krickert.search.indexer.embedding;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.service.EmbeddingsVectorReply;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps the vectors of texts that were already embedded, keyed by the embedding model and the SHA-256 of the
+ * normalized text, so repeated titles, boilerplate and chunk overlaps are only sent to the embedding service once.
+ * The cache is bounded by the bytes of the vectors it holds. With off-heap turned on the vectors are kept in direct
+ * buffers, so a large cache does not add to the garbage collector's work.
+ * <br>
+ * Texts that are already being embedded are shared too: a second request for the same text waits on the first one
+ * instead of being sent again.
+ * <br>
+ * Behind the memory cache sits the {@link EmbeddingStore}, when it is turned on: a text missing from memory is looked
+ * up on disk before it is sent to the embedding service, and every vector the service returns is written to disk.
+ * <br>
+ * Vectors are handed out as float[], read from the reply with the primitive protobuf accessor, so no dimension is
+ * ever boxed on the way to solr. A vector served from the on-heap cache is the cached array itself.
+ */
+@Singleton
+public class EmbeddingCache {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    // the key, the cache entry and the array or buffer header
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final boolean enabled;
+    private final String model;
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final Cache<Key, Object> vectors;
+    private final Map<Key, CompletableFuture<float[]>> loading = new ConcurrentHashMap<>();
+    private final EmbeddingStore embeddingStore;
+
+    public EmbeddingCache(IndexerConfigurationProperties properties, EmbeddingStore embeddingStore) {
+        this.embeddingStore = embeddingStore;
+        this.enabled = Boolean.TRUE.equals(properties.getEmbeddingCacheEnabled());
+        this.model = properties.getEmbeddingModelName() != null ? properties.getEmbeddingModelName() : String.valueOf(properties.getVectorGrpcChannel());
+        this.maxBytes = properties.getEmbeddingCacheMaxBytes() == null || properties.getEmbeddingCacheMaxBytes() < 1 ?
+                DEFAULT_MAX_BYTES : properties.getEmbeddingCacheMaxBytes();
+        this.offHeap = Boolean.TRUE.equals(properties.getEmbeddingCacheOffHeap());
+        this.vectors = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Object vector) -> ENTRY_OVERHEAD_BYTES + vectorBytes(vector))
+                .recordStats()
+                .build();
+        if (enabled) {
+            log.info("Caching embeddings of model {} in up to {} bytes {}", model, maxBytes, offHeap ? "off heap" : "on heap");
+        }
+    }
+
+    /**
+     * Returns the cached vector of the text, or embeds it with the embedder and caches the result. The returned
+     * array must not be changed.
+     */
+    public CompletableFuture<float[]> embed(String text, Function<String, CompletableFuture<EmbeddingsVectorReply>> embedder) {
+        if (!enabled && !embeddingStore.isEnabled()) {
+            return embedder.apply(text).thenApply(EmbeddingCache::toArray);
+        }
+        Key key = new Key(model, hash(text));
+        if (enabled) {
+            Object cached = vectors.getIfPresent(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cachedArray(cached));
+            }
+        }
+        CompletableFuture<float[]> newLoad = new CompletableFuture<>();
+        CompletableFuture<float[]> existingLoad = loading.putIfAbsent(key, newLoad);
+        if (existingLoad != null) {
+            return existingLoad;
+        }
+        HashCode storeKey = embeddingStore.isEnabled() ? EmbeddingStore.key(model, key.textHash()) : null;
+        float[] stored = storeKey != null ? embeddingStore.get(storeKey) : null;
+        if (stored != null) {
+            if (enabled) {
+                vectors.put(key, toVector(stored));
+            }
+            loading.remove(key);
+            newLoad.complete(stored);
+            return newLoad;
+        }
+        CompletableFuture<EmbeddingsVectorReply> embedding;
+        try {
+            embedding = embedder.apply(text);
+        } catch (RuntimeException e) {
+            // every caller of the same text waits on this load, so it has to fail instead of staying in loading
+            loading.remove(key);
+            newLoad.completeExceptionally(e);
+            return newLoad;
+        }
+        embedding.whenComplete((reply, error) -> {
+            float[] vector = null;
+            Throwable failure = error;
+            if (failure == null) {
+                try {
+                    vector = toArray(reply);
+                    if (enabled) {
+                        vectors.put(key, toVector(vector));
+                    }
+                    if (storeKey != null) {
+                        embeddingStore.put(storeKey, vector);
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            loading.remove(key);
+            if (failure != null) {
+                newLoad.completeExceptionally(failure);
+            } else {
+                newLoad.complete(vector);
+            }
+        });
+        return newLoad;
+    }
+
+    /**
+     * @return the vector of the reply, read without boxing the dimensions
+     */
+    static float[] toArray(EmbeddingsVectorReply reply) {
+        float[] vector = new float[reply.getEmbeddingsCount()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = reply.getEmbeddings(i);
+        }
+        return vector;
+    }
+
+    /**
+     * @return the cache settings and its hit, miss and eviction counts
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        if (!enabled) {
+            return metrics;
+        }
+        CacheStats stats = vectors.stats();
+        metrics.put("model", model);
+        metrics.put("offHeap", offHeap);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("entries", vectors.size());
+        metrics.put("hits", stats.hitCount());
+        metrics.put("misses", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictions", stats.evictionCount());
+        return metrics;
+    }
+
+    /**
+     * Two texts that only differ in unicode form, surrounding whitespace or runs of whitespace get the same key.
+     */
+    static HashCode hash(String text) {
+        String normalized = CharMatcher.whitespace().trimAndCollapseFrom(Normalizer.normalize(text, Normalizer.Form.NFC), ' ');
+        return Hashing.sha256().hashString(normalized, StandardCharsets.UTF_8);
+    }
+
+    private Object toVector(float[] vector) {
+        if (!offHeap) {
+            return vector;
+        }
+        FloatBuffer buffer = ByteBuffer.allocateDirect(vector.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(vector);
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static float[] cachedArray(Object vector) {
+        if (vector instanceof float[] array) {
+            return array;
+        }
+        FloatBuffer buffer = ((FloatBuffer) vector).duplicate();
+        buffer.rewind();
+        float[] floats = new float[buffer.remaining()];
+        buffer.get(floats);
+        return floats;
+    }
+
+    private static int vectorBytes(Object vector) {
+        if (vector instanceof float[] array) {
+            return array.length * Float.BYTES;
+        }
+        return ((FloatBuffer) vector).capacity() * Float.BYTES;
+    }
+
+    record Key(String model, HashCode textHash) {
+    }
+}
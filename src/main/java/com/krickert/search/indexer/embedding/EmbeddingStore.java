@@ -0,0 +1,303 @@
+package com.krickert.search.indexer.embedding;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps embedded vectors on local disk so they can be reused by later runs. The vectors are appended to segment
+ * files; once a segment reaches the segment size it is sealed and memory-mapped read only, and a new segment is
+ * started. The index from key to file position is kept in memory and rebuilt by scanning the segments when the
+ * indexer starts. A record that was only partly written when the indexer stopped is cut off during that scan.
+ * <br>
+ * Each record is the magic number, the 32 byte SHA-256 key, the number of dimensions and the floats, all little
+ * endian. The key covers the model name as well as the text, so vectors of different models never mix.
+ */
+@Singleton
+public class EmbeddingStore {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStore.class);
+    private static final long DEFAULT_SEGMENT_BYTES = 256L * 1024 * 1024;
+    private static final int MAGIC = 0x454d4231;
+    private static final int KEY_BYTES = 32;
+    private static final int HEADER_BYTES = Integer.BYTES + KEY_BYTES + Integer.BYTES;
+    private static final int OFFSET_BITS = 40;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".vec";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Map<HashCode, Long> index = new ConcurrentHashMap<>();
+    private final List<MappedByteBuffer> sealedSegments = new ArrayList<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    private FileChannel activeSegment;
+    private int activeSegmentId;
+    private long activeSegmentSize;
+    private long sealedBytes;
+
+    public EmbeddingStore(IndexerConfigurationProperties properties) {
+        this.directory = properties.getEmbeddingStoreDir() == null || properties.getEmbeddingStoreDir().isBlank() ?
+                null : Paths.get(properties.getEmbeddingStoreDir());
+        this.segmentBytes = properties.getEmbeddingStoreSegmentBytes() == null || properties.getEmbeddingStoreSegmentBytes() < 1 ?
+                DEFAULT_SEGMENT_BYTES : Math.min(properties.getEmbeddingStoreSegmentBytes(), Integer.MAX_VALUE);
+        if (directory != null) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open the embedding store in " + directory, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @return the key of the text's vector for the model
+     */
+    public static HashCode key(String model, HashCode textHash) {
+        return Hashing.sha256().newHasher()
+                .putString(model, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putBytes(textHash.asBytes())
+                .hash();
+    }
+
+    /**
+     * @return the stored vector, or null when the key has not been stored
+     */
+    public float[] get(HashCode key) {
+        Long location = index.get(key);
+        if (location == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        int segmentId = (int) (location >>> OFFSET_BITS);
+        long offset = location & ((1L << OFFSET_BITS) - 1);
+        try {
+            ByteBuffer dimensionsAndVector = read(segmentId, offset);
+            float[] vector = new float[dimensionsAndVector.getInt()];
+            dimensionsAndVector.asFloatBuffer().get(vector);
+            hits.incrementAndGet();
+            return vector;
+        } catch (IOException e) {
+            log.warn("Could not read the vector at {} of segment {}", offset, segmentId, e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Appends the vector, unless the key is already stored.
+     */
+    public synchronized void put(HashCode key, float[] vector) {
+        if (index.containsKey(key)) {
+            return;
+        }
+        int recordBytes = HEADER_BYTES + vector.length * Float.BYTES;
+        ByteBuffer record = ByteBuffer.allocate(recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(MAGIC).put(key.asBytes()).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.rewind();
+        try {
+            if (activeSegmentSize > 0 && activeSegmentSize + recordBytes > segmentBytes) {
+                sealActiveSegment();
+            }
+            long offset = activeSegmentSize;
+            while (record.hasRemaining()) {
+                activeSegment.write(record, offset + record.position());
+            }
+            activeSegmentSize += recordBytes;
+            index.put(key, location(activeSegmentId, offset));
+            writes.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("Could not write a vector to the embedding store in {}", directory, e);
+        }
+    }
+
+    /**
+     * @return the store's location and size, and how many reads were served from it
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        if (!isEnabled()) {
+            return metrics;
+        }
+        metrics.put("directory", directory.toString());
+        metrics.put("entries", index.size());
+        synchronized (this) {
+            metrics.put("segments", activeSegmentId + 1);
+            metrics.put("bytes", sealedBytes + activeSegmentSize);
+        }
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("writes", writes.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (activeSegment != null) {
+            activeSegment.force(false);
+            activeSegment.close();
+            activeSegment = null;
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (int segmentId = 0; segmentId < segments.size(); segmentId++) {
+            if (!segments.get(segmentId).equals(segmentPath(segmentId))) {
+                throw new IOException("Embedding store segment " + segmentPath(segmentId) + " is missing");
+            }
+        }
+        int lastSegmentId = Math.max(0, segments.size() - 1);
+        for (int segmentId = 0; segmentId < lastSegmentId; segmentId++) {
+            try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                sealedBytes += scan(segmentId, mapped);
+                sealedSegments.add(mapped);
+            }
+        }
+        activeSegmentId = lastSegmentId;
+        activeSegment = FileChannel.open(segmentPath(activeSegmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer active = activeSegment.map(FileChannel.MapMode.READ_ONLY, 0, activeSegment.size());
+        activeSegmentSize = scan(activeSegmentId, active);
+        if (activeSegmentSize < activeSegment.size()) {
+            log.warn("Cutting a partly written record off the end of {}", segmentPath(activeSegmentId));
+            activeSegment.truncate(activeSegmentSize);
+        }
+        log.info("Opened the embedding store in {} with {} vectors in {} segments", directory, index.size(), activeSegmentId + 1);
+    }
+
+    /**
+     * Adds every complete record of the segment to the index.
+     *
+     * @return the size of the complete records
+     */
+    private long scan(int segmentId, ByteBuffer segment) {
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        int position = 0;
+        byte[] key = new byte[KEY_BYTES];
+        while (segment.limit() - position >= HEADER_BYTES) {
+            if (segment.getInt(position) != MAGIC) {
+                break;
+            }
+            int dimensions = segment.getInt(position + Integer.BYTES + KEY_BYTES);
+            long recordBytes = HEADER_BYTES + (long) dimensions * Float.BYTES;
+            if (dimensions < 0 || segment.limit() - position < recordBytes) {
+                break;
+            }
+            segment.position(position + Integer.BYTES);
+            segment.get(key);
+            index.put(HashCode.fromBytes(key.clone()), location(segmentId, position));
+            position += (int) recordBytes;
+        }
+        segment.clear();
+        return position;
+    }
+
+    private synchronized void sealActiveSegment() throws IOException {
+        activeSegment.force(false);
+        sealedSegments.add(activeSegment.map(FileChannel.MapMode.READ_ONLY, 0, activeSegmentSize));
+        activeSegment.close();
+        sealedBytes += activeSegmentSize;
+        activeSegmentId++;
+        activeSegment = FileChannel.open(segmentPath(activeSegmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSegmentSize = 0;
+        log.info("Started embedding store segment {}", segmentPath(activeSegmentId));
+    }
+
+    /**
+     * @return the dimensions and the floats of the record at the offset
+     */
+    private ByteBuffer read(int segmentId, long offset) throws IOException {
+        MappedByteBuffer sealed = null;
+        FileChannel active = null;
+        synchronized (this) {
+            if (segmentId < sealedSegments.size()) {
+                sealed = sealedSegments.get(segmentId);
+            } else {
+                active = activeSegment;
+            }
+        }
+        long dimensionsOffset = offset + Integer.BYTES + KEY_BYTES;
+        if (sealed != null) {
+            ByteBuffer record = sealed.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int dimensions = record.getInt((int) dimensionsOffset);
+            record.position((int) dimensionsOffset).limit((int) dimensionsOffset + Integer.BYTES + dimensions * Float.BYTES);
+            return record.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (active == null) {
+            throw new IOException("The embedding store is closed");
+        }
+        try {
+            ByteBuffer dimensions = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(active, dimensions, dimensionsOffset);
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + dimensions.getInt(0) * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(active, record, dimensionsOffset);
+            record.flip();
+            return record;
+        } catch (ClosedChannelException e) {
+            // the segment was sealed while it was being read, so it can now be read from its mapping
+            synchronized (this) {
+                if (segmentId >= sealedSegments.size()) {
+                    throw e;
+                }
+            }
+            return read(segmentId, offset);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the embedding store segment");
+            }
+        }
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%05d", segmentId) + SEGMENT_SUFFIX);
+    }
+
+    private static long location(int segmentId, long offset) {
+        return ((long) segmentId << OFFSET_BITS) | offset;
+    }
+}
@@ -55,4 +55,34 @@ public class Clients {
                 channel
         );
     }
+
+    @Bean
+    @Named("inlineEmbeddingFutureService")
+    EmbeddingServiceGrpc.EmbeddingServiceFutureStub inlineEmbeddingServiceFutureStub(
+            @GrpcChannel("${indexer.vector-grpc-channel}")
+            ManagedChannel channel) {
+        return EmbeddingServiceGrpc.newFutureStub(
+                channel
+        );
+    }
+
+    @Bean
+    @Named("vectorEmbeddingFutureService")
+    EmbeddingServiceGrpc.EmbeddingServiceFutureStub vectorEmbeddingServiceFutureStub(
+            @GrpcChannel("${indexer.vector-grpc-channel}")
+            ManagedChannel channel) {
+        return EmbeddingServiceGrpc.newFutureStub(
+                channel
+        );
+    }
+
+    @Bean
+    @Named("chunkFutureService")
+    ChunkServiceGrpc.ChunkServiceFutureStub chunkServiceFutureStub(
+            @GrpcChannel("${indexer.chunker-grpc-channel}")
+            ManagedChannel channel) {
+        return ChunkServiceGrpc.newFutureStub(
+                channel
+        );
+    }
 }
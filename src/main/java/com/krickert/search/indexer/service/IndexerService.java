@@ -4,6 +4,17 @@ import com.krickert.search.indexer.IndexingFailedExecption;
 import com.krickert.search.indexer.SemanticIndexer;
 import com.krickert.search.indexer.config.IndexerConfiguration;
 import com.krickert.search.indexer.dto.IndexingStatus;
+import com.krickert.search.indexer.embedding.EmbeddingCache;
+import com.krickert.search.indexer.embedding.EmbeddingStore;
+import com.krickert.search.indexer.solr.client.CommitPolicy;
+import com.krickert.search.indexer.solr.client.DestinationWriter;
+import com.krickert.search.indexer.solr.client.UnchangedDocumentFilter;
+import com.krickert.search.indexer.solr.vector.event.ChunkDocumentListener;
+import com.krickert.search.indexer.solr.vector.event.DownstreamLimiter;
+import com.krickert.search.indexer.solr.vector.event.InlineDocumentListener;
+import com.krickert.search.indexer.solr.vector.event.SolrChunkDocumentPublisher;
+import com.krickert.search.indexer.solr.vector.event.SolrSourceDocumentPublisher;
+import com.krickert.search.indexer.solr.vector.event.SubscriptionManager;
 import com.krickert.search.indexer.tracker.IndexingTracker;
 import io.micronaut.scheduling.annotation.Scheduled;
 import jakarta.inject.Inject;
@@ -11,6 +22,7 @@ import jakarta.inject.Singleton;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
@@ -24,14 +36,47 @@ public class IndexerService {
     private final Map<String, IndexerConfiguration> configurations = new HashMap<>();
     private final Lock startIndexingLock = new ReentrantLock();
     private final IndexingTracker indexingTracker;
+    private final SolrSourceDocumentPublisher solrSourceDocumentPublisher;
+    private final SolrChunkDocumentPublisher solrChunkDocumentPublisher;
+    private final InlineDocumentListener inlineDocumentListener;
+    private final ChunkDocumentListener chunkDocumentListener;
+    private final DownstreamLimiter downstreamLimiter;
+    private final SubscriptionManager subscriptionManager;
+    private final EmbeddingCache embeddingCache;
+    private final EmbeddingStore embeddingStore;
+    private final UnchangedDocumentFilter unchangedDocumentFilter;
+    private final DestinationWriter destinationWriter;
+    private final CommitPolicy commitPolicy;
 
     @Inject
     public IndexerService(SemanticIndexer semanticIndexer,
                           HealthService healthService,
-                          IndexingTracker indexingTracker) {
+                          IndexingTracker indexingTracker,
+                          SolrSourceDocumentPublisher solrSourceDocumentPublisher,
+                          SolrChunkDocumentPublisher solrChunkDocumentPublisher,
+                          InlineDocumentListener inlineDocumentListener,
+                          ChunkDocumentListener chunkDocumentListener,
+                          DownstreamLimiter downstreamLimiter,
+                          SubscriptionManager subscriptionManager,
+                          EmbeddingCache embeddingCache,
+                          EmbeddingStore embeddingStore,
+                          UnchangedDocumentFilter unchangedDocumentFilter,
+                          DestinationWriter destinationWriter,
+                          CommitPolicy commitPolicy) {
         this.semanticIndexer = semanticIndexer;
         this.healthService = healthService;
         this.indexingTracker = indexingTracker;
+        this.solrSourceDocumentPublisher = solrSourceDocumentPublisher;
+        this.solrChunkDocumentPublisher = solrChunkDocumentPublisher;
+        this.inlineDocumentListener = inlineDocumentListener;
+        this.chunkDocumentListener = chunkDocumentListener;
+        this.downstreamLimiter = downstreamLimiter;
+        this.subscriptionManager = subscriptionManager;
+        this.embeddingCache = embeddingCache;
+        this.embeddingStore = embeddingStore;
+        this.unchangedDocumentFilter = unchangedDocumentFilter;
+        this.destinationWriter = destinationWriter;
+        this.commitPolicy = commitPolicy;
     }
 
     public String startIndexing() {
@@ -90,6 +135,26 @@ public class IndexerService {
         return indexingTracker.getHistory(limit);
     }
 
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> publishers = new LinkedHashMap<>();
+        publishers.put("source", solrSourceDocumentPublisher.getMetrics());
+        publishers.put("chunk", solrChunkDocumentPublisher.getMetrics());
+        Map<String, Object> embedding = new LinkedHashMap<>();
+        embedding.put("inline", inlineDocumentListener.getEmbeddingMetrics());
+        embedding.put("chunk", chunkDocumentListener.getEmbeddingMetrics());
+        embedding.put("cache", embeddingCache.getMetrics());
+        embedding.put("store", embeddingStore.getMetrics());
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("publishers", publishers);
+        metrics.put("listeners", subscriptionManager.getMetrics());
+        metrics.put("embedding", embedding);
+        metrics.put("downstream", downstreamLimiter.getMetrics());
+        metrics.put("writer", destinationWriter.getMetrics());
+        metrics.put("commits", commitPolicy.getMetrics());
+        metrics.put("unchangedDocuments", unchangedDocumentFilter.getMetrics());
+        return metrics;
+    }
+
     public void registerConfiguration(IndexerConfiguration config) {
         configurations.put(config.getName(), config);
     }
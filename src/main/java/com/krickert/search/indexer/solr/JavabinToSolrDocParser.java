@@ -0,0 +1,105 @@
+package com.krickert.search.indexer.solr;
+
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.impl.StreamingBinaryResponseParser;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes a wt=javabin /select response with SolrJ's streaming javabin parser. Each document is turned into a
+ * {@link SolrInputDocument} as soon as the codec has read it, and numFound, start, QTime and nextCursorMark are
+ * read in the same pass.
+ */
+@Singleton
+public class JavabinToSolrDocParser {
+    private static final Logger log = LoggerFactory.getLogger(JavabinToSolrDocParser.class);
+
+    private final Set<String> excludedFields;
+
+    @Inject
+    public JavabinToSolrDocParser(IndexerConfiguration indexerConfiguration) {
+        this(indexerConfiguration.getSourceSolrConfiguration().getExcludeFields());
+    }
+
+    public JavabinToSolrDocParser() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param excludeFields fields that are left out of the converted documents. The _version_ field is always left out.
+     */
+    public JavabinToSolrDocParser(Collection<String> excludeFields) {
+        this.excludedFields = new HashSet<>();
+        if (excludeFields != null) {
+            this.excludedFields.addAll(excludeFields);
+        }
+        this.excludedFields.add("_version_");
+        log.info("Created JavabinToSolrDocParser excluding fields {}", excludedFields);
+    }
+
+    public HttpSolrSelectResponse parseSolrResponse(InputStream inputStream) {
+        HttpSolrSelectResponse.Builder builder = new HttpSolrSelectResponse.Builder();
+        List<SolrInputDocument> solrDocuments = new ArrayList<>();
+        StreamingResponseCallback callback = new StreamingResponseCallback() {
+            @Override
+            public void streamSolrDocument(SolrDocument doc) {
+                solrDocuments.add(toSolrInputDocument(doc));
+            }
+
+            @Override
+            public void streamDocListInfo(long numFound, long start, Float maxScore) {
+                builder.numFound(numFound).start(start);
+            }
+        };
+        try {
+            NamedList<Object> response = new StreamingBinaryResponseParser(callback).processResponse(inputStream, null);
+            Object responseHeader = response.get("responseHeader");
+            if (responseHeader instanceof NamedList) {
+                Object qtime = ((NamedList<?>) responseHeader).get("QTime");
+                if (qtime instanceof Number) {
+                    builder.qtime(((Number) qtime).longValue());
+                }
+            }
+            Object nextCursorMark = response.get("nextCursorMark");
+            if (nextCursorMark != null) {
+                builder.nextCursorMark(nextCursorMark.toString());
+            }
+        } catch (Exception e) {
+            log.error("Error parsing javabin Solr response", e);
+            throw new RuntimeException(e);
+        }
+        return builder.docs(solrDocuments).build();
+    }
+
+    private SolrInputDocument toSolrInputDocument(SolrDocument doc) {
+        SolrInputDocument solrDoc = new SolrInputDocument();
+        for (String fieldName : doc.getFieldNames()) {
+            if (excludedFields.contains(fieldName)) {
+                continue;
+            }
+            // multi-valued fields come back as a collection, which addField expands into the field's values
+            solrDoc.addField(fieldName, doc.getFieldValue(fieldName));
+        }
+        if (doc.hasChildDocuments()) {
+            for (SolrDocument child : doc.getChildDocuments()) {
+                solrDoc.addChildDocument(toSolrInputDocument(child));
+            }
+        }
+        return solrDoc;
+    }
+}
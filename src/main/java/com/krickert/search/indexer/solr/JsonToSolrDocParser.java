@@ -6,7 +6,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.krickert.search.indexer.config.IndexerConfiguration;
 import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
@@ -16,15 +18,38 @@ import org.slf4j.LoggerFactory;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Singleton
 public class JsonToSolrDocParser {
     private static final Logger log = LoggerFactory.getLogger(JsonToSolrDocParser.class);
 
+    private final Set<String> excludedFields;
+
+    @Inject
+    public JsonToSolrDocParser(IndexerConfiguration indexerConfiguration) {
+        this(indexerConfiguration.getSourceSolrConfiguration().getExcludeFields());
+    }
+
     public JsonToSolrDocParser() {
-        log.info("Created JsonToSolrDocParser");
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param excludeFields fields that are dropped while parsing. The _version_ field is always dropped.
+     */
+    public JsonToSolrDocParser(Collection<String> excludeFields) {
+        this.excludedFields = new HashSet<>();
+        if (excludeFields != null) {
+            this.excludedFields.addAll(excludeFields);
+        }
+        this.excludedFields.add("_version_");
+        log.info("Created JsonToSolrDocParser excluding fields {}", excludedFields);
     }
 
     ObjectMapper mapper = new ObjectMapper();
@@ -45,7 +70,7 @@ public class JsonToSolrDocParser {
         List<String> jsonDocuments = new ArrayList<>();
         for (Map<String, Object> doc : docs) {
             try {
-                doc.remove("_version_");
+                doc.keySet().removeAll(excludedFields);
                 jsonDocuments.add(mapper.writeValueAsString(doc));
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
@@ -74,11 +99,13 @@ public class JsonToSolrDocParser {
         for (Map<String, Object> doc : docs) {
             SolrInputDocument solrDoc = new SolrInputDocument();
             doc.forEach((k, v) -> {
+                if (excludedFields.contains(k)) {
+                    return;
+                }
                 SolrInputField inputField = new SolrInputField(k);
                 inputField.setValue(v);
                 solrDoc.put(k, inputField);
             });
-            solrDoc.remove("_version_");
             solrDocuments.add(solrDoc);
         }
 
@@ -89,6 +116,9 @@ public class JsonToSolrDocParser {
         // Assuming pageSize is not available in the json response
         Long pageSize = null;
 
+        // Only present when the request was made with a cursorMark
+        String nextCursorMark = map.get("nextCursorMark") == null ? null : map.get("nextCursorMark").toString();
+
         // Build the response object
 
         return new HttpSolrSelectResponse.Builder()
@@ -97,6 +127,7 @@ public class JsonToSolrDocParser {
                 .start(start)
                 .docs(solrDocuments)
                 .pageSize(pageSize)
+                .nextCursorMark(nextCursorMark)
                 .build();
     }
 
@@ -104,6 +135,32 @@ public class JsonToSolrDocParser {
 
     public List<SolrInputDocument> parseSolrDocuments(InputStream inputStream) {
         List<SolrInputDocument> solrDocuments = new ArrayList<>();
+        parseSolrDocuments(inputStream, solrDocuments::add);
+        return solrDocuments;
+    }
+
+    /**
+     * Parses the docs of a /select or /export response as they are read from the stream, and hands each one to the
+     * consumer before the next one is read.
+     *
+     * @return the number of documents that were handed to the consumer
+     */
+    public long parseSolrDocuments(InputStream inputStream, Consumer<SolrInputDocument> consumer) {
+        return parseDocuments(inputStream, consumer, false);
+    }
+
+    /**
+     * Same as {@link #parseSolrDocuments(InputStream, Consumer)} for the result-set of a /stream response, whose
+     * trailing EOF tuple is skipped and whose EXCEPTION tuple fails the parse.
+     *
+     * @return the number of documents that were handed to the consumer
+     */
+    public long parseStreamDocuments(InputStream inputStream, Consumer<SolrInputDocument> consumer) {
+        return parseDocuments(inputStream, consumer, true);
+    }
+
+    private long parseDocuments(InputStream inputStream, Consumer<SolrInputDocument> consumer, boolean streamTuples) {
+        long numberOfDocuments = 0;
         try (JsonParser parser = factory.createParser(inputStream)) {
             String currentField = null;
             while (!parser.isClosed()) {
@@ -115,17 +172,98 @@ public class JsonToSolrDocParser {
                     token = parser.nextToken();
                     while (token != JsonToken.END_ARRAY) {
                         SolrInputDocument solrDoc = parseSolrDocument(parser);
-                        solrDoc.remove("_version_");
-                        solrDocuments.add(solrDoc);
                         token = parser.nextToken();
+                        if (streamTuples && isStreamTuple(solrDoc)) {
+                            continue;
+                        }
+                        consumer.accept(solrDoc);
+                        numberOfDocuments++;
                     }
+                    currentField = null;
                 }
             }
         } catch (Exception e) {
             log.error("Error parsing Solr documents", e);
             throw new RuntimeException(e);
         }
-        return solrDocuments;
+        return numberOfDocuments;
+    }
+
+    /**
+     * Parses a /select response in a single pass over the stream. The docs are built straight from the json
+     * tokens, and numFound, start, QTime and nextCursorMark are read along the way, so the response is never
+     * held as a String or a map tree.
+     */
+    public HttpSolrSelectResponse parseSolrResponse(InputStream inputStream) {
+        HttpSolrSelectResponse.Builder builder = new HttpSolrSelectResponse.Builder();
+        List<SolrInputDocument> solrDocuments = new ArrayList<>();
+        try (JsonParser parser = factory.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("Solr response is not a json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "responseHeader":
+                        parseResponseHeader(parser, builder);
+                        break;
+                    case "response":
+                        parseResponseBody(parser, builder, solrDocuments);
+                        break;
+                    case "nextCursorMark":
+                        builder.nextCursorMark(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error parsing Solr response", e);
+            throw new RuntimeException(e);
+        }
+        return builder.docs(solrDocuments).build();
+    }
+
+    private void parseResponseHeader(JsonParser parser, HttpSolrSelectResponse.Builder builder) throws Exception {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if ("QTime".equals(fieldName)) {
+                builder.qtime(parser.getValueAsLong());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void parseResponseBody(JsonParser parser, HttpSolrSelectResponse.Builder builder, List<SolrInputDocument> solrDocuments) throws Exception {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "numFound":
+                    builder.numFound(parser.getValueAsLong());
+                    break;
+                case "start":
+                    builder.start(parser.getValueAsLong());
+                    break;
+                case "docs":
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        solrDocuments.add(parseSolrDocument(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private static boolean isStreamTuple(SolrInputDocument solrDoc) {
+        if (solrDoc.containsKey("EXCEPTION")) {
+            throw new IllegalStateException("Solr stream failed: " + solrDoc.getFieldValue("EXCEPTION"));
+        }
+        return solrDoc.containsKey("EOF");
     }
 
     private SolrInputDocument parseSolrDocument(JsonParser parser) throws Exception {
@@ -135,10 +273,15 @@ public class JsonToSolrDocParser {
             JsonToken token = parser.currentToken();
             if (token == JsonToken.FIELD_NAME) {
                 fieldName = parser.currentName();
+                if (excludedFields.contains(fieldName)) {
+                    // skip over the value without decoding it
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
             } else if (token == JsonToken.VALUE_STRING) {
                 solrDoc.addField(fieldName, parser.getValueAsString());
             } else if (token == JsonToken.VALUE_NUMBER_INT) {
-                solrDoc.addField(fieldName, parser.getValueAsInt());
+                solrDoc.addField(fieldName, parser.getNumberValue());
             } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
                 solrDoc.addField(fieldName, parser.getValueAsDouble());
             } else if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
@@ -159,7 +302,7 @@ public class JsonToSolrDocParser {
             if (token == JsonToken.VALUE_STRING) {
                 list.add(parser.getValueAsString());
             } else if (token == JsonToken.VALUE_NUMBER_INT) {
-                list.add(parser.getValueAsInt());
+                list.add(parser.getNumberValue());
             } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
                 list.add(parser.getValueAsDouble());
             } else if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
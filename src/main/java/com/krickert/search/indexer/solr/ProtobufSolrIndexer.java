@@ -3,6 +3,7 @@ package com.krickert.search.indexer.solr;
 import com.google.protobuf.Message;
 import com.krickert.search.indexer.config.IndexerConfiguration;
 import com.krickert.search.indexer.enhancers.ProtobufToSolrDocument;
+import com.krickert.search.indexer.solr.client.CommitPolicy;
 import jakarta.inject.Singleton;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -22,24 +23,31 @@ public class ProtobufSolrIndexer {
 
     private final ProtobufToSolrDocument protobufToSolrDocument;
     private final IndexerConfiguration indexerConfiguration;
+    private final CommitPolicy commitPolicy;
 
     public ProtobufSolrIndexer(ProtobufToSolrDocument protobufToSolrDocument,
-                               IndexerConfiguration indexerConfiguration) {
+                               IndexerConfiguration indexerConfiguration,
+                               CommitPolicy commitPolicy) {
         this.protobufToSolrDocument = protobufToSolrDocument;
         this.indexerConfiguration = indexerConfiguration;
+        this.commitPolicy = commitPolicy;
         log.info("ProtobufSolrIndexer creatted.");
     }
 
+    /**
+     * Adds the documents without committing them. They become visible through the commit policy: its commitWithin,
+     * its soft commits and hard commits when they are turned on, or the stage commit of whoever ends the export.
+     */
     public void exportProtobufToSolr(Collection<Message> protos) {
         List<SolrInputDocument> solrDocuments = protos.stream().map(protobufToSolrDocument::convertProtobufToSolrDocument).collect(Collectors.toList());
 
         try (SolrClient solrClient = createSolr9Client()) {
             String collection = indexerConfiguration.getDestinationSolrConfiguration().getCollection();
             try {
-                solrClient.add(collection, solrDocuments);
-                solrClient.commit(collection);
+                solrClient.add(collection, solrDocuments, commitPolicy.getCommitWithinMillis());
+                commitPolicy.documentsWritten(collection, solrDocuments.size());
             } catch (SolrServerException | IOException e) {
-                log.error("Commit solr failed for collection {}", collection, e);
+                log.error("Adding to solr failed for collection {}", collection, e);
             }
         } catch (IOException e) {
             log.error("Couldn't insert {}", protos, e);
@@ -5,4 +5,5 @@ public class SchemaConstants {
     public static final String ID = "id";
     public static final String CRAWL_ID = "crawl_id";
     public static final String CREATION_DATE = "creation_date";
+    public static final String CONTENT_FINGERPRINT = "content_fingerprint_s";
 }
@@ -0,0 +1,218 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.solr.vector.SolrDestinationCollectionValidationService;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.UpdateParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decides when the destination and vector collections are committed, instead of a hard commit after every write.
+ * <ul>
+ *     <li>commitWithin is sent with every update batch, when set, so solr commits on its own schedule.</li>
+ *     <li>The collections written since the last soft commit are soft committed every soft commit interval, so new
+ *     documents become searchable during a long crawl without flushing segments.</li>
+ *     <li>A collection is hard committed without opening a searcher after every hardCommitEveryDocuments documents
+ *     written to it, so its transaction log does not grow for the whole crawl.</li>
+ *     <li>The main collection and every vector collection are hard committed, opening a searcher, at the end of their
+ *     stage, so a finished crawl is durable and searchable whatever the settings.</li>
+ * </ul>
+ * The periodic commits run on a commit thread and only log their failures, as the stage commit covers them. The
+ * destination collection is committed with the inline update client and the vector collections with the vector one,
+ * so cloud mode routes each commit to the leaders of its collection.
+ */
+@Singleton
+public class CommitPolicy {
+    private static final Logger log = LoggerFactory.getLogger(CommitPolicy.class);
+
+    private final SolrClient destinationClient;
+    private final SolrClient vectorClient;
+    private final String destinationCollection;
+    private final List<String> vectorCollections;
+    private final int commitWithinMillis;
+    private final long softCommitIntervalSeconds;
+    private final long hardCommitEveryDocuments;
+    private final ScheduledExecutorService committer;
+    private final Set<String> softCommitPending = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> sinceHardCommit = new ConcurrentHashMap<>();
+    private final AtomicLong softCommits = new AtomicLong();
+    private final AtomicLong hardCommits = new AtomicLong();
+    private final AtomicLong stageCommits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+
+    @Inject
+    public CommitPolicy(@Named("inlineUpdateClient") SolrClient inlineUpdateClient,
+                        @Named("vectorUpdateClient") SolrClient vectorUpdateClient,
+                        IndexerConfiguration indexerConfiguration,
+                        SolrDestinationCollectionValidationService solrDestinationCollectionValidationService) {
+        this(inlineUpdateClient, vectorUpdateClient,
+                indexerConfiguration.getDestinationSolrConfiguration().getCollection(),
+                // inline vector fields have no collection of their own
+                solrDestinationCollectionValidationService.getVectorDestinationCollections().stream()
+                        .filter(Objects::nonNull).distinct().toList(),
+                indexerConfiguration.getIndexerConfigurationProperties());
+    }
+
+    private CommitPolicy(SolrClient destinationClient, SolrClient vectorClient, String destinationCollection,
+                         List<String> vectorCollections, IndexerConfigurationProperties properties) {
+        this(destinationClient, vectorClient, destinationCollection, vectorCollections,
+                properties.getCommitWithinMillis() == null || properties.getCommitWithinMillis() < 1 ?
+                        -1 : properties.getCommitWithinMillis(),
+                properties.getSoftCommitIntervalSeconds() == null || properties.getSoftCommitIntervalSeconds() < 1 ?
+                        0 : properties.getSoftCommitIntervalSeconds(),
+                properties.getHardCommitEveryDocuments() == null || properties.getHardCommitEveryDocuments() < 1 ?
+                        0 : properties.getHardCommitEveryDocuments());
+    }
+
+    /**
+     * @param commitWithinMillis        sent with every update request, or -1 for none
+     * @param softCommitIntervalSeconds the time between soft commits, or 0 for none
+     * @param hardCommitEveryDocuments  the documents written to a collection between hard commits, or 0 for none
+     */
+    CommitPolicy(SolrClient destinationClient, SolrClient vectorClient, String destinationCollection,
+                 List<String> vectorCollections, int commitWithinMillis, long softCommitIntervalSeconds,
+                 long hardCommitEveryDocuments) {
+        this.destinationClient = checkNotNull(destinationClient);
+        this.vectorClient = checkNotNull(vectorClient);
+        this.destinationCollection = checkNotNull(destinationCollection);
+        this.vectorCollections = List.copyOf(vectorCollections);
+        this.commitWithinMillis = commitWithinMillis;
+        this.softCommitIntervalSeconds = softCommitIntervalSeconds;
+        this.hardCommitEveryDocuments = hardCommitEveryDocuments;
+        this.committer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("solr-committer").setDaemon(true).build());
+        if (softCommitIntervalSeconds > 0) {
+            committer.scheduleWithFixedDelay(this::softCommitWritten, softCommitIntervalSeconds, softCommitIntervalSeconds, TimeUnit.SECONDS);
+        }
+        log.info("Commit policy: commitWithin {}ms, soft commits every {}s, hard commits every {} documents, hard commits of {} and {} at the end of their stage",
+                commitWithinMillis, softCommitIntervalSeconds, hardCommitEveryDocuments, destinationCollection, vectorCollections);
+    }
+
+    /**
+     * @return the commitWithin to send with an update request, or -1 for none
+     */
+    public int getCommitWithinMillis() {
+        return commitWithinMillis;
+    }
+
+    /**
+     * Records documents solr accepted for the collection. Starts a hard commit once the collection reached the
+     * document limit since its last one.
+     */
+    public void documentsWritten(String collection, int documents) {
+        if (softCommitIntervalSeconds > 0) {
+            softCommitPending.add(collection);
+        }
+        if (hardCommitEveryDocuments > 0) {
+            AtomicLong written = sinceHardCommit.computeIfAbsent(collection, ignored -> new AtomicLong());
+            // only the thread that takes the count over the limit commits
+            if (written.addAndGet(documents) >= hardCommitEveryDocuments && written.getAndSet(0) >= hardCommitEveryDocuments) {
+                committer.execute(() -> hardCommit(collection));
+            }
+        }
+    }
+
+    /**
+     * Hard commits the destination collection at the end of the main stage.
+     */
+    public void commitMainStage() {
+        stageCommit(destinationCollection);
+    }
+
+    /**
+     * Hard commits every vector collection at the end of the vector stage.
+     */
+    public void commitVectorStage() {
+        vectorCollections.forEach(this::stageCommit);
+    }
+
+    private void stageCommit(String collection) {
+        try {
+            clientFor(collection).commit(collection);
+        } catch (SolrServerException | IOException e) {
+            log.error("Could not commit collection {} due to {}", collection, e.getMessage());
+            throw new RuntimeException(e);
+        }
+        stageCommits.incrementAndGet();
+        softCommitPending.remove(collection);
+        sinceHardCommit.remove(collection);
+        log.info("Committed collection {} at the end of its stage", collection);
+    }
+
+    private void softCommitWritten() {
+        for (String collection : new ArrayList<>(softCommitPending)) {
+            softCommitPending.remove(collection);
+            try {
+                clientFor(collection).commit(collection, true, true, true);
+                softCommits.incrementAndGet();
+            } catch (SolrServerException | IOException | RuntimeException e) {
+                failedCommits.incrementAndGet();
+                log.warn("Could not soft commit collection {} due to {}", collection, e.getMessage());
+            }
+        }
+    }
+
+    private void hardCommit(String collection) {
+        UpdateRequest request = new UpdateRequest();
+        request.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true, false);
+        // flushes the transaction log without the cost of a new searcher; visibility is left to the soft commits
+        request.setParam(UpdateParams.OPEN_SEARCHER, "false");
+        try {
+            request.process(clientFor(collection), collection);
+            hardCommits.incrementAndGet();
+            log.info("Hard committed collection {} after {} documents", collection, hardCommitEveryDocuments);
+        } catch (SolrServerException | IOException | RuntimeException e) {
+            failedCommits.incrementAndGet();
+            log.warn("Could not hard commit collection {} due to {}", collection, e.getMessage());
+        }
+    }
+
+    private SolrClient clientFor(String collection) {
+        return destinationCollection.equals(collection) ? destinationClient : vectorClient;
+    }
+
+    /**
+     * @return the commit settings and how many commits of each kind were made
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("commitWithinMillis", commitWithinMillis);
+        metrics.put("softCommitIntervalSeconds", softCommitIntervalSeconds);
+        metrics.put("hardCommitEveryDocuments", hardCommitEveryDocuments);
+        metrics.put("softCommits", softCommits.get());
+        metrics.put("hardCommits", hardCommits.get());
+        metrics.put("stageCommits", stageCommits.get());
+        metrics.put("failedCommits", failedCommits.get());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void close() {
+        committer.shutdownNow();
+    }
+}
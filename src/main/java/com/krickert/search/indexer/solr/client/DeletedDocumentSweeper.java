@@ -0,0 +1,236 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.VectorConfig;
+import com.krickert.search.indexer.solr.SchemaConstants;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectClient;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartition;
+import io.micronaut.core.util.CollectionUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds the documents of the destination collection that are no longer in the source collection and deletes them,
+ * along with their chunks in the vector collections. Incremental crawls only read what changed, so the crawl_id
+ * sweep of a full crawl would delete everything they did not touch; this sweep compares the ids instead.
+ * <br>
+ * Both collections are walked once with a cursor sorted on the id, and the two sorted id streams are merged, so
+ * neither id list is ever held in memory. The source is read through the same partitions, and so the same filters,
+ * as the crawl, each with its own cursor, and their id streams are merged into one. The ids are read from and
+ * deleted with the destination update clients, so the sweep goes through the cloud client in cloud mode. The
+ * merge relies on both sides sorting their ids as strings, so the sweep is refused when the unique key of the
+ * source is not a string field: a numeric key sorts 9 before 10, and the merge would take live documents for
+ * deleted ones.
+ */
+@Singleton
+public class DeletedDocumentSweeper {
+    private static final Logger log = LoggerFactory.getLogger(DeletedDocumentSweeper.class);
+    private static final int PAGE_SIZE = 10000;
+    private static final int DELETE_BATCH_SIZE = 500;
+    private static final Set<String> STRING_FIELD_CLASSES = Set.of("solr.StrField", "org.apache.solr.schema.StrField");
+
+    private final HttpSolrSelectClient httpSolrSelectClient;
+    private final SolrClient destinationSolrClient;
+    private final SolrClient vectorSolrClient;
+    private final Collection<String> vectorCollections;
+    private final String sourceUniqueKey;
+
+    @Inject
+    public DeletedDocumentSweeper(HttpSolrSelectClient httpSolrSelectClient,
+                                  @Named("inlineUpdateClient") SolrClient destinationSolrClient,
+                                  @Named("vectorUpdateClient") SolrClient vectorSolrClient,
+                                  IndexerConfiguration indexerConfiguration) {
+        this(httpSolrSelectClient, destinationSolrClient, vectorSolrClient,
+                CollectionUtils.isNotEmpty(indexerConfiguration.getChunkVectorConfig()) ?
+                        indexerConfiguration.getChunkVectorConfig().values().stream()
+                                .map(VectorConfig::getDestinationCollection).distinct().collect(Collectors.toList()) :
+                        List.of(),
+                indexerConfiguration.getSourceSolrConfiguration().getUniqueKey());
+    }
+
+    DeletedDocumentSweeper(HttpSolrSelectClient httpSolrSelectClient, SolrClient destinationSolrClient, SolrClient vectorSolrClient,
+                           Collection<String> vectorCollections, String sourceUniqueKey) {
+        this.httpSolrSelectClient = checkNotNull(httpSolrSelectClient);
+        this.destinationSolrClient = checkNotNull(destinationSolrClient);
+        this.vectorSolrClient = checkNotNull(vectorSolrClient);
+        this.vectorCollections = List.copyOf(vectorCollections);
+        this.sourceUniqueKey = checkNotNull(sourceUniqueKey);
+    }
+
+    /**
+     * Deletes the documents of the destination collection whose ids the source collection no longer has.
+     *
+     * @param partitions the partitions the crawl reads, without the filter on the modified-field
+     * @return the number of documents deleted from the destination collection
+     */
+    public long sweep(String sourceHost, String sourceCollection, String destinationCollection, List<SourcePartition> partitions) {
+        String uniqueKeyType = httpSolrSelectClient.getFieldTypeClass(sourceHost, sourceCollection, sourceUniqueKey);
+        if (!STRING_FIELD_CLASSES.contains(uniqueKeyType)) {
+            log.error("The unique key {} of the source collection {} is a {} field, which solr does not sort as a string. Not looking for deleted documents in {}",
+                    sourceUniqueKey, sourceCollection, uniqueKeyType, destinationCollection);
+            return 0;
+        }
+        log.info("Looking for documents of {} that were deleted from the source collection {}", destinationCollection, sourceCollection);
+        List<Iterator<String>> partitionIds = new ArrayList<>(partitions.size());
+        for (SourcePartition partition : partitions) {
+            partitionIds.add(sourceIds(sourceHost, sourceCollection, partition));
+        }
+        // partitions that overlap repeat an id, which the merge skips over
+        Iterator<String> sourceIds = Iterators.mergeSorted(partitionIds, DeletedDocumentSweeper::compareCodePoints);
+        if (!sourceIds.hasNext()) {
+            // more likely a misconfigured or unreachable source than a source that really lost every document
+            log.warn("The source collection {} returned no ids. Not deleting anything from {}", sourceCollection, destinationCollection);
+            return 0;
+        }
+        List<String> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+        long[] deleted = {0};
+        diff(sourceIds, destinationIds(destinationCollection), id -> {
+            batch.add(id);
+            if (batch.size() >= DELETE_BATCH_SIZE) {
+                delete(destinationCollection, batch);
+                deleted[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            delete(destinationCollection, batch);
+            deleted[0] += batch.size();
+        }
+        log.info("Deleted {} documents from {} that are no longer in {}", deleted[0], destinationCollection, sourceCollection);
+        return deleted[0];
+    }
+
+    /**
+     * Merges two id streams sorted the way solr sorts string fields and reports every destination id that is
+     * missing from the source.
+     */
+    static void diff(Iterator<String> sourceIds, Iterator<String> destinationIds, Consumer<String> deleted) {
+        PeekingIterator<String> source = Iterators.peekingIterator(sourceIds);
+        while (destinationIds.hasNext()) {
+            String destinationId = destinationIds.next();
+            while (source.hasNext() && compareCodePoints(source.peek(), destinationId) < 0) {
+                source.next();
+            }
+            if (!source.hasNext() || compareCodePoints(source.peek(), destinationId) != 0) {
+                deleted.accept(destinationId);
+            }
+        }
+    }
+
+    /**
+     * Solr sorts string fields by their UTF-8 bytes, which is code point order rather than the UTF-16 order of
+     * {@link String#compareTo}.
+     */
+    static int compareCodePoints(String left, String right) {
+        int leftIndex = 0;
+        int rightIndex = 0;
+        while (leftIndex < left.length() && rightIndex < right.length()) {
+            int leftCodePoint = left.codePointAt(leftIndex);
+            int rightCodePoint = right.codePointAt(rightIndex);
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+            leftIndex += Character.charCount(leftCodePoint);
+            rightIndex += Character.charCount(rightCodePoint);
+        }
+        return Integer.compare(left.length() - leftIndex, right.length() - rightIndex);
+    }
+
+    private void delete(String destinationCollection, List<String> ids) {
+        try {
+            destinationSolrClient.deleteById(destinationCollection, ids);
+            String parentQuery = ids.stream().map(ClientUtils::escapeQueryChars).collect(Collectors.joining(" OR ", "parent_id:(", ")"));
+            for (String vectorCollection : vectorCollections) {
+                vectorSolrClient.deleteByQuery(vectorCollection, parentQuery);
+            }
+        } catch (SolrServerException | IOException e) {
+            throw new RuntimeException("Could not delete " + ids.size() + " documents from " + destinationCollection, e);
+        }
+    }
+
+    private Iterator<String> sourceIds(String sourceHost, String sourceCollection, SourcePartition partition) {
+        return new AbstractIterator<>() {
+            private String cursorMark = HttpSolrSelectClient.CURSOR_MARK_START;
+            private Iterator<String> page = List.<String>of().iterator();
+
+            @Override
+            protected String computeNext() {
+                while (!page.hasNext()) {
+                    if (cursorMark == null) {
+                        return endOfData();
+                    }
+                    HttpSolrSelectResponse response = httpSolrSelectClient.getIdsWithCursor(sourceHost, sourceCollection, PAGE_SIZE, cursorMark, partition);
+                    List<String> ids = new ArrayList<>(response.getDocs().size());
+                    for (SolrInputDocument doc : response.getDocs()) {
+                        ids.add(doc.getFieldValue(sourceUniqueKey).toString());
+                    }
+                    page = ids.iterator();
+                    String nextCursorMark = response.getNextCursorMark();
+                    cursorMark = nextCursorMark == null || nextCursorMark.equals(cursorMark) ? null : nextCursorMark;
+                }
+                return page.next();
+            }
+        };
+    }
+
+    private Iterator<String> destinationIds(String destinationCollection) {
+        return new AbstractIterator<>() {
+            private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+            private Iterator<String> page = List.<String>of().iterator();
+
+            @Override
+            protected String computeNext() {
+                while (!page.hasNext()) {
+                    if (cursorMark == null) {
+                        return endOfData();
+                    }
+                    SolrQuery query = new SolrQuery("*:*")
+                            .setFields(SchemaConstants.ID)
+                            .setRows(PAGE_SIZE)
+                            .setSort(SchemaConstants.ID, SolrQuery.ORDER.asc);
+                    query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+                    QueryResponse response;
+                    try {
+                        response = destinationSolrClient.query(destinationCollection, query);
+                    } catch (SolrServerException | IOException e) {
+                        throw new RuntimeException("Could not read the ids of " + destinationCollection, e);
+                    }
+                    List<String> ids = new ArrayList<>(response.getResults().size());
+                    for (SolrDocument doc : response.getResults()) {
+                        ids.add(doc.getFieldValue(SchemaConstants.ID).toString());
+                    }
+                    page = ids.iterator();
+                    String nextCursorMark = response.getNextCursorMark();
+                    cursorMark = nextCursorMark == null || nextCursorMark.equals(cursorMark) ? null : nextCursorMark;
+                }
+                return page.next();
+            }
+        };
+    }
+}
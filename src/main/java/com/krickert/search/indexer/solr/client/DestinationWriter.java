@@ -0,0 +1,370 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.solr.vector.DenseVectorValue;
+import com.krickert.search.indexer.solr.vector.event.DownstreamLimiter;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Collects the documents the listeners write into one update request per destination collection. A batch is sent
+ * as soon as it holds batchSize documents or about maxBytes of field values, or lingerMillis after its first
+ * document was added, whichever comes first. The inline listener adds one document at a time and the chunk listener
+ * a few chunks at a time, so without this every update request would only carry a handful of documents.
+ * <br>
+ * Every add returns the future of the batches its documents went into, completed once solr answered the update
+ * request of the batch, so the listeners count a document as processed or failed by the outcome of its own batch.
+ * The listeners count in a callback on that future and never wait on it, as a rail that waits could add at most one
+ * document per linger time and the batches would never grow past the number of rails.
+ * Once the tracker counts every document, every document is in solr, and the commit after the crawl or a
+ * checkpoint covers all of them. Batches are sent on a separate flush thread and never on the thread of the
+ * listener. With the http client a batch is sent asynchronously and the flush thread does not wait for the answer;
+ * the cloud client waits for the shard leaders on the flush thread. Every batch carries the commitWithin of the
+ * {@link CommitPolicy}, which is told about the documents solr accepted.
+ * <br>
+ * The solr permit of the {@link DownstreamLimiter} is taken before a batch is handed to a flush thread and held
+ * until solr answered it. With solr-max-concurrency reached, an add that fills a batch waits for a permit, and so
+ * does the linger timer, so the listeners and through them the readers slow down instead of the batches and flush
+ * threads piling up.
+ */
+@Singleton
+public class DestinationWriter {
+    private static final Logger log = LoggerFactory.getLogger(DestinationWriter.class);
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final long DEFAULT_LINGER_MILLIS = 100;
+    // a rough per-value overhead, for values whose size is not worth working out
+    private static final int VALUE_BYTES = 16;
+
+    private final Sender sender;
+    private final DownstreamLimiter downstreamLimiter;
+    private final int batchSize;
+    private final long maxBytes;
+    private final long lingerMillis;
+    private final ScheduledExecutorService lingerTimer;
+    private final ExecutorService flushExecutor;
+    private final Map<String, Batch> pending = new HashMap<>();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong documentsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong batchesFailed = new AtomicLong();
+    private final AtomicLong documentsFailed = new AtomicLong();
+
+    @Inject
+    public DestinationWriter(@Named("inlineUpdateClient") SolrClient inlineUpdateClient,
+                             @Named("vectorUpdateClient") SolrClient vectorUpdateClient,
+                             IndexerConfiguration indexerConfiguration,
+                             DownstreamLimiter downstreamLimiter,
+                             CommitPolicy commitPolicy) {
+        this(routed(indexerConfiguration.getDestinationSolrConfiguration().getCollection(),
+                        sender(inlineUpdateClient, commitPolicy),
+                        sender(vectorUpdateClient, commitPolicy)),
+                downstreamLimiter, indexerConfiguration.getIndexerConfigurationProperties());
+    }
+
+    private DestinationWriter(Sender sender, DownstreamLimiter downstreamLimiter, IndexerConfigurationProperties properties) {
+        this(sender, downstreamLimiter,
+                properties.getSolrBatchSize() == null || properties.getSolrBatchSize() < 1 ?
+                        DEFAULT_BATCH_SIZE : properties.getSolrBatchSize(),
+                properties.getSolrBatchMaxBytes() == null || properties.getSolrBatchMaxBytes() < 1 ?
+                        DEFAULT_MAX_BYTES : properties.getSolrBatchMaxBytes(),
+                properties.getSolrBatchLingerMillis() == null || properties.getSolrBatchLingerMillis() < 0 ?
+                        DEFAULT_LINGER_MILLIS : properties.getSolrBatchLingerMillis());
+    }
+
+    /**
+     * @param sender       sends an update request with the documents to the collection
+     * @param batchSize    the number of documents that triggers a request
+     * @param maxBytes     the estimated size of the documents that triggers a request
+     * @param lingerMillis how long a batch that is not full waits for more documents
+     */
+    DestinationWriter(Sender sender, int batchSize, long maxBytes, long lingerMillis) {
+        this(sender, new DownstreamLimiter(new IndexerConfigurationProperties()), batchSize, maxBytes, lingerMillis);
+    }
+
+    /**
+     * @param downstreamLimiter caps the batches handed to the flush threads and not yet answered by solr
+     */
+    DestinationWriter(Sender sender, DownstreamLimiter downstreamLimiter, int batchSize, long maxBytes, long lingerMillis) {
+        checkArgument(batchSize > 0, "batchSize must be positive");
+        checkArgument(maxBytes > 0, "maxBytes must be positive");
+        checkArgument(lingerMillis >= 0, "lingerMillis must not be negative");
+        this.sender = checkNotNull(sender);
+        this.downstreamLimiter = checkNotNull(downstreamLimiter);
+        this.batchSize = batchSize;
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("destination-writer-timer").setDaemon(true).build());
+        this.flushExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("destination-writer-flush-%d").setDaemon(true).build());
+        log.info("Created destination writer with batch size {}, max bytes {} and linger of {}ms", batchSize, maxBytes, lingerMillis);
+    }
+
+    /**
+     * Sends the batches of the destination collection with the inline client and those of every other collection,
+     * which are the vector collections, with the vector client.
+     */
+    static Sender routed(String destinationCollection, Sender destination, Sender vectors) {
+        checkNotNull(destinationCollection);
+        checkNotNull(destination);
+        checkNotNull(vectors);
+        return (collection, documents) -> destinationCollection.equals(collection) ?
+                destination.send(collection, documents) : vectors.send(collection, documents);
+    }
+
+    private static Sender sender(SolrClient solrClient, CommitPolicy commitPolicy) {
+        checkNotNull(solrClient);
+        checkNotNull(commitPolicy);
+        int commitWithinMillis = commitPolicy.getCommitWithinMillis();
+        Sender sender = solrClient instanceof Http2SolrClient httpSolrClient ?
+                async(httpSolrClient, commitWithinMillis) : blocking(solrClient, commitWithinMillis);
+        return (collection, documents) -> sender.send(collection, documents)
+                .thenRun(() -> commitPolicy.documentsWritten(collection, documents.size()));
+    }
+
+    private static Sender async(Http2SolrClient solrClient, int commitWithinMillis) {
+        return (collection, documents) -> {
+            UpdateRequest request = new UpdateRequest();
+            request.add(documents);
+            request.setCommitWithin(commitWithinMillis);
+            return solrClient.requestAsync(request, collection).thenApply(ignored -> null);
+        };
+    }
+
+    private static Sender blocking(SolrClient solrClient, int commitWithinMillis) {
+        return (collection, documents) -> {
+            try {
+                solrClient.add(collection, documents, commitWithinMillis);
+                return CompletableFuture.completedFuture(null);
+            } catch (SolrServerException | IOException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        };
+    }
+
+    /**
+     * Adds the document to the current batch of the collection.
+     *
+     * @return completed once the batch the document is in was sent, or failed
+     */
+    public CompletableFuture<Void> add(String collection, SolrInputDocument document) {
+        return addAll(collection, List.of(document));
+    }
+
+    /**
+     * Adds the documents to the current batch of the collection, in order. A batch that fills up is sent and the rest
+     * of the documents go into the next one. Waits for a solr permit for every batch that fills up.
+     *
+     * @return completed once every batch the documents are in was sent, or failed as soon as one of them failed
+     */
+    public CompletableFuture<Void> addAll(String collection, Collection<SolrInputDocument> documents) {
+        checkNotNull(collection);
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> acks = new ArrayList<>(1);
+        List<Batch> fullBatches = new ArrayList<>(1);
+        synchronized (this) {
+            for (SolrInputDocument document : documents) {
+                Batch batch = pending.computeIfAbsent(collection, this::newBatch);
+                batch.add(checkNotNull(document), estimateBytes(document));
+                if (acks.isEmpty() || acks.get(acks.size() - 1) != batch.ack) {
+                    acks.add(batch.ack);
+                }
+                if (batch.documents.size() >= batchSize || batch.bytes >= maxBytes) {
+                    pending.remove(collection);
+                    fullBatches.add(batch);
+                }
+            }
+        }
+        fullBatches.forEach(this::flush);
+        return acks.size() == 1 ? acks.get(0) : CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private Batch newBatch(String collection) {
+        Batch batch = new Batch(collection);
+        lingerTimer.schedule(() -> flushLingering(batch), lingerMillis, TimeUnit.MILLISECONDS);
+        return batch;
+    }
+
+    private void flushLingering(Batch batch) {
+        synchronized (this) {
+            // the batch may have filled up and been sent while the timer was waiting
+            if (pending.get(batch.collection) != batch) {
+                return;
+            }
+            pending.remove(batch.collection);
+        }
+        flush(batch);
+    }
+
+    /**
+     * Waits for a solr permit and hands the batch to a flush thread, which sends it.
+     */
+    private void flush(Batch batch) {
+        try {
+            downstreamLimiter.acquire(DownstreamLimiter.Downstream.SOLR);
+        } catch (RuntimeException e) {
+            failed(batch, e);
+            return;
+        }
+        try {
+            flushExecutor.execute(() -> send(batch));
+        } catch (RuntimeException e) {
+            downstreamLimiter.release(DownstreamLimiter.Downstream.SOLR);
+            failed(batch, e);
+        }
+    }
+
+    /**
+     * Sends the batch with the solr permit taken for it, and gives the permit back once solr answered.
+     */
+    private void send(Batch batch) {
+        CompletableFuture<Void> response;
+        try {
+            response = sender.send(batch.collection, batch.documents);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((ignored, error) -> {
+            downstreamLimiter.release(DownstreamLimiter.Downstream.SOLR);
+            if (error != null) {
+                failed(batch, error);
+                return;
+            }
+            batchesSent.incrementAndGet();
+            documentsSent.addAndGet(batch.documents.size());
+            bytesSent.addAndGet(batch.bytes);
+            batch.ack.complete(null);
+        });
+    }
+
+    private void failed(Batch batch, Throwable error) {
+        log.error("Update batch of {} documents to {} failed", batch.documents.size(), batch.collection, error);
+        batchesFailed.incrementAndGet();
+        documentsFailed.addAndGet(batch.documents.size());
+        batch.ack.completeExceptionally(error);
+    }
+
+    /**
+     * A rough size of the field values of the document, only meant to keep update requests from growing without
+     * bound when the documents are large.
+     */
+    static long estimateBytes(SolrInputDocument document) {
+        long bytes = 0;
+        for (SolrInputField field : document) {
+            bytes += field.getName().length();
+            Collection<Object> values = field.getValues();
+            if (values != null) {
+                for (Object value : values) {
+                    bytes += estimateBytes(value);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value instanceof CharSequence text) {
+            return text.length();
+        } else if (value instanceof DenseVectorValue vector) {
+            return (long) Float.BYTES * vector.getVector().length;
+        } else if (value instanceof Collection<?> values) {
+            long bytes = 0;
+            for (Object element : values) {
+                bytes += estimateBytes(element);
+            }
+            return bytes;
+        }
+        return VALUE_BYTES;
+    }
+
+    /**
+     * @return the batch settings, how many batches and documents were sent or failed and how many are waiting
+     */
+    public Map<String, Object> getMetrics() {
+        int pendingDocuments;
+        synchronized (this) {
+            pendingDocuments = pending.values().stream().mapToInt(batch -> batch.documents.size()).sum();
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("batchSize", batchSize);
+        metrics.put("maxBytes", maxBytes);
+        metrics.put("lingerMillis", lingerMillis);
+        metrics.put("batchesSent", batchesSent.get());
+        metrics.put("documentsSent", documentsSent.get());
+        metrics.put("bytesSent", bytesSent.get());
+        metrics.put("batchesFailed", batchesFailed.get());
+        metrics.put("documentsFailed", documentsFailed.get());
+        metrics.put("pendingDocuments", pendingDocuments);
+        return metrics;
+    }
+
+    /**
+     * Sends whatever is pending and stops the writer's threads.
+     */
+    @PreDestroy
+    public void close() {
+        List<Batch> batches;
+        synchronized (this) {
+            batches = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        batches.forEach(batch -> {
+            downstreamLimiter.acquire(DownstreamLimiter.Downstream.SOLR);
+            send(batch);
+        });
+        lingerTimer.shutdownNow();
+        flushExecutor.shutdown();
+    }
+
+    interface Sender {
+        CompletableFuture<Void> send(String collection, List<SolrInputDocument> documents);
+    }
+
+    private static class Batch {
+        private final String collection;
+        private final List<SolrInputDocument> documents = new ArrayList<>();
+        private final CompletableFuture<Void> ack = new CompletableFuture<>();
+        private long bytes;
+
+        private Batch(String collection) {
+            this.collection = collection;
+        }
+
+        private void add(SolrInputDocument document, long documentBytes) {
+            documents.add(document);
+            bytes += documentBytes;
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package com.krickert.search.indexer.solr.client;
 
 import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.SolrConfiguration;
 import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Factory;
-import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.CollectionUtils;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
-import org.apache.solr.client.solrj.impl.ConcurrentUpdateHttp2SolrClient;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.CloudHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.Http2SolrClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 @Factory
 public class SolrClientService {
     private static final Logger log = LoggerFactory.getLogger(SolrClientService.class);
+    private static final String CLOUD_MODE = "cloud";
 
     private final OktaAuthenticatedHttpListenerFactory authenticatedRequestResponseListener;
     private final IndexerConfiguration indexerConfiguration;
@@ -24,7 +32,11 @@ public class SolrClientService {
         log.info("Creating solr client service");
         this.authenticatedRequestResponseListener = authenticatedRequestResponseListener;
         this.indexerConfiguration = indexerConfiguration;
-        
+        SolrConfiguration.Connection connection = indexerConfiguration.getDestinationSolrConfiguration().getConnection();
+        if (connection.getQueueSize() != null || connection.getThreadCount() != null) {
+            log.warn("The queue-size and thread-count of the destination connection are no longer used and have no effect. " +
+                    "Updates are batched by solr-batch-size and capped by solr-max-concurrency.");
+        }
     }
 
     @Bean
@@ -42,23 +54,6 @@ public class SolrClientService {
         return client;
     }
 
-    @Bean
-    @Named("vectorConcurrentClient")
-    public ConcurrentUpdateHttp2SolrClient vectorConcurrentClient() {
-        try {
-            log.info("Creating inlineConcurrentClient bean");
-            String solrUrl = indexerConfiguration.getDestinationSolrConfiguration().getConnection().getUrl();
-            return new ConcurrentUpdateHttp2SolrClient.Builder(solrUrl, inlineSolrClient(), false)
-                    .withQueueSize(indexerConfiguration.getDestinationSolrConfiguration().getConnection().getQueueSize())
-                    .withThreadCount(indexerConfiguration.getDestinationSolrConfiguration().getConnection().getThreadCount())
-                    .build();
-        } catch (Exception e) {
-            log.error("Error creating inlineConcurrentClient bean", e);
-            throw e;
-        }
-    }
-
-
     @Bean
     @Named("inlineSolrClient")
     public Http2SolrClient inlineSolrClient() {
@@ -74,22 +69,54 @@ public class SolrClientService {
         return client;
     }
 
+    /**
+     * The client the destination documents are written with: a cloud client in cloud mode, the http client
+     * otherwise. Both only return once solr answered the update, unlike a concurrent update client, whose add
+     * returns as soon as the documents are queued and whose failures never reach the caller. There is one of it, so
+     * a cloud client keeps one copy of the cluster state for every caller.
+     */
     @Bean
-    @Named("inlineConcurrentClient")
-    @Requires(bean = Http2SolrClient.class)
-    public ConcurrentUpdateHttp2SolrClient inlineConcurrentClient() {
-        try {
-            log.info("Creating inlineConcurrentClient bean");
-            String solrUrl = indexerConfiguration.getDestinationSolrConfiguration().getConnection().getUrl();
-            return new ConcurrentUpdateHttp2SolrClient.Builder(solrUrl, inlineSolrClient(), false)
-                    .withQueueSize(indexerConfiguration.getDestinationSolrConfiguration().getConnection().getQueueSize())
-                    .withThreadCount(indexerConfiguration.getDestinationSolrConfiguration().getConnection().getThreadCount())
-                    .build();
-        } catch (Exception e) {
-            log.error("Error creating inlineConcurrentClient bean", e);
-            throw e;
-        }
+    @Singleton
+    @Named("inlineUpdateClient")
+    public SolrClient inlineUpdateClient() {
+        return isCloudMode() ? cloudSolrClient(inlineSolrClient()) : inlineSolrClient();
     }
 
+    /**
+     * The client the chunks are written to the vector collections with: a cloud client in cloud mode, the http
+     * client otherwise.
+     */
+    @Bean
+    @Singleton
+    @Named("vectorUpdateClient")
+    public SolrClient vectorUpdateClient() {
+        return isCloudMode() ? cloudSolrClient(vectorSolrClient()) : vectorSolrClient();
+    }
+
+    private boolean isCloudMode() {
+        return CLOUD_MODE.equalsIgnoreCase(indexerConfiguration.getDestinationSolrConfiguration().getConnection().getMode());
+    }
 
-}
\ No newline at end of file
+    /**
+     * The cloud client keeps the cluster state of the destination, splits every update request by shard and sends
+     * each part straight to the leader of its shard, in parallel. The cluster state is read from zookeeper when
+     * zk-hosts are set, and from the cluster status api of the solr-urls, or of the connection url, otherwise. The
+     * requests go through the given http client, so they carry its authentication.
+     */
+    private CloudHttp2SolrClient cloudSolrClient(Http2SolrClient httpClient) {
+        SolrConfiguration.Connection connection = indexerConfiguration.getDestinationSolrConfiguration().getConnection();
+        CloudHttp2SolrClient.Builder builder;
+        if (CollectionUtils.isNotEmpty(connection.getZkHosts())) {
+            log.info("Creating destination cloud solr client with the cluster state of zookeeper {}", connection.getZkHosts());
+            builder = new CloudHttp2SolrClient.Builder(new ArrayList<>(connection.getZkHosts()), Optional.ofNullable(connection.getZkChroot()));
+        } else {
+            List<String> solrUrls = CollectionUtils.isNotEmpty(connection.getSolrUrls()) ?
+                    new ArrayList<>(connection.getSolrUrls()) : List.of(connection.getUrl());
+            log.info("Creating destination cloud solr client with the cluster state of {}", solrUrls);
+            builder = new CloudHttp2SolrClient.Builder(solrUrls);
+        }
+        return builder.withHttpClient(httpClient)
+                .withDefaultCollection(indexerConfiguration.getDestinationSolrConfiguration().getCollection())
+                .build();
+    }
+}
@@ -0,0 +1,354 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.VectorConfig;
+import com.krickert.search.indexer.solr.SchemaConstants;
+import io.micronaut.core.util.CollectionUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps documents that did not change since the last crawl away from the chunker and the embedding service.
+ * <br>
+ * Every source document gets a fingerprint: the SHA-256 of its fields and of the vector settings, stored in the
+ * destination document. Before a page is published, the fingerprints of its documents are looked up in the
+ * destination collection in one query. A document with the same fingerprint only gets its crawl_id and crawl_date
+ * set again, through atomic updates of the destination document and of its chunks in the vector collections.
+ * <br>
+ * A changed document is written without a fingerprint, which also drops the one it had. Its fingerprint is set with
+ * an atomic update once solr acknowledged both the destination document and the chunks of every chunk field, so a
+ * document that failed either way has no fingerprint and is processed again by the next crawl.
+ * <br>
+ * The fingerprint covers every source field, not only the vectorized ones, since the destination document holds
+ * the other fields too. The destination and vector collections must keep their fields stored or in docValues, as
+ * solr needs them to apply the atomic updates.
+ */
+@Singleton
+public class UnchangedDocumentFilter {
+    private static final Logger log = LoggerFactory.getLogger(UnchangedDocumentFilter.class);
+    // stays well below solr's default maxBooleanClauses of 1024
+    private static final int LOOKUP_BATCH_SIZE = 500;
+    private static final int CHUNK_PAGE_SIZE = 1000;
+    private static final Set<String> CRAWL_FIELDS = Set.of(SchemaConstants.CRAWL_ID, SchemaConstants.CRAWL_DATE, SchemaConstants.CONTENT_FINGERPRINT);
+
+    private final boolean enabled;
+    private final SolrClient destinationSolrClient;
+    private final SolrClient vectorSolrClient;
+    private final String destinationCollection;
+    private final String uniqueKey;
+    private final Collection<String> vectorCollections;
+    private final String vectorSignature;
+    private final DestinationWriter destinationWriter;
+    // the fingerprints of the published documents, until both of their writes are acknowledged
+    private final Map<String, PendingFingerprint> pendingFingerprints = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<Void>> fingerprintWrites = ConcurrentHashMap.newKeySet();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong fingerprintsWritten = new AtomicLong();
+    private final AtomicLong fingerprintsDropped = new AtomicLong();
+
+    @Inject
+    public UnchangedDocumentFilter(@Named("inlineUpdateClient") SolrClient inlineUpdateClient,
+                                   @Named("vectorUpdateClient") SolrClient vectorUpdateClient,
+                                   DestinationWriter destinationWriter,
+                                   IndexerConfiguration indexerConfiguration) {
+        this(Boolean.TRUE.equals(indexerConfiguration.getIndexerConfigurationProperties().getSkipUnchangedDocuments()),
+                inlineUpdateClient, vectorUpdateClient, destinationWriter,
+                indexerConfiguration.getDestinationSolrConfiguration().getCollection(),
+                // the destination documents are copies of the source documents and keep their unique key
+                indexerConfiguration.getSourceSolrConfiguration().getUniqueKey(),
+                CollectionUtils.isNotEmpty(indexerConfiguration.getChunkVectorConfig()) ?
+                        indexerConfiguration.getChunkVectorConfig().values().stream()
+                                .map(VectorConfig::getDestinationCollection).distinct().collect(Collectors.toList()) :
+                        List.of(),
+                vectorSignature(indexerConfiguration.getIndexerConfigurationProperties().getEmbeddingModelName(), indexerConfiguration.getVectorConfig()));
+    }
+
+    UnchangedDocumentFilter(boolean enabled, SolrClient destinationSolrClient, SolrClient vectorSolrClient,
+                            DestinationWriter destinationWriter, String destinationCollection, String uniqueKey,
+                            Collection<String> vectorCollections, String vectorSignature) {
+        this.enabled = enabled;
+        this.destinationSolrClient = checkNotNull(destinationSolrClient);
+        this.vectorSolrClient = checkNotNull(vectorSolrClient);
+        this.destinationWriter = checkNotNull(destinationWriter);
+        this.destinationCollection = checkNotNull(destinationCollection);
+        this.uniqueKey = checkNotNull(uniqueKey);
+        this.vectorCollections = List.copyOf(vectorCollections);
+        this.vectorSignature = checkNotNull(vectorSignature);
+        if (enabled) {
+            log.info("Documents that did not change since the last crawl will not be chunked or embedded again");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forgets the fingerprints of a crawl that stopped before its documents were written.
+     */
+    public void reset() {
+        pendingFingerprints.clear();
+    }
+
+    /**
+     * Fingerprints every document, refreshes the crawl fields of the documents whose fingerprint is already in the
+     * destination collection and returns the others, which still have to be published. Their fingerprints are kept
+     * until their writes are acknowledged.
+     */
+    public List<SolrInputDocument> filterUnchanged(Collection<SolrInputDocument> documents, String crawlId, String crawlDate) {
+        List<SolrInputDocument> changedDocuments = new ArrayList<>(documents.size());
+        for (List<SolrInputDocument> batch : Lists.partition(new ArrayList<>(documents), LOOKUP_BATCH_SIZE)) {
+            Map<String, String> storedFingerprints = storedFingerprints(batch);
+            List<String> unchangedIds = new ArrayList<>();
+            for (SolrInputDocument document : batch) {
+                String fingerprint = fingerprint(document, vectorSignature);
+                String id = document.getFieldValue(uniqueKey).toString();
+                if (fingerprint.equals(storedFingerprints.get(id))) {
+                    unchangedIds.add(id);
+                } else {
+                    pendingFingerprints.put(id, new PendingFingerprint(fingerprint));
+                    changedDocuments.add(document);
+                }
+            }
+            if (!unchangedIds.isEmpty()) {
+                refreshCrawlFields(unchangedIds, crawlId, crawlDate);
+            }
+            unchanged.addAndGet(unchangedIds.size());
+            changed.addAndGet(batch.size() - unchangedIds.size());
+        }
+        return changedDocuments;
+    }
+
+    /**
+     * Records whether the inline listener wrote the destination document.
+     */
+    public void mainWritten(SolrInputDocument document, boolean success) {
+        written(document, success);
+    }
+
+    /**
+     * Records whether the chunk listener wrote the chunks of every chunk field of the document.
+     */
+    public void vectorWritten(SolrInputDocument document, boolean success) {
+        written(document, success);
+    }
+
+    private void written(SolrInputDocument document, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        String id = document.getFieldValue(uniqueKey).toString();
+        PendingFingerprint pending = pendingFingerprints.get(id);
+        if (pending == null) {
+            return;
+        }
+        if (!success) {
+            if (pendingFingerprints.remove(id, pending)) {
+                fingerprintsDropped.incrementAndGet();
+            }
+        } else if (pending.remaining.decrementAndGet() == 0 && pendingFingerprints.remove(id, pending)) {
+            writeFingerprint(id, pending.fingerprint);
+        }
+    }
+
+    private void writeFingerprint(String id, String fingerprint) {
+        SolrInputDocument update = new SolrInputDocument();
+        update.setField(uniqueKey, id);
+        update.setField(SchemaConstants.CONTENT_FINGERPRINT, Map.of("set", fingerprint));
+        CompletableFuture<Void> write = destinationWriter.add(destinationCollection, update);
+        fingerprintWrites.add(write);
+        write.whenComplete((result, error) -> {
+            fingerprintWrites.remove(write);
+            if (error != null) {
+                fingerprintsDropped.incrementAndGet();
+                log.warn("Could not store the fingerprint of document {}, it will be processed again by the next crawl: {}", id, error.getMessage());
+            } else {
+                fingerprintsWritten.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Waits until the fingerprint updates sent so far were answered, so the commit that follows covers them.
+     */
+    public void awaitFingerprintWrites() {
+        CompletableFuture.allOf(fingerprintWrites.toArray(new CompletableFuture<?>[0]))
+                .handle((result, error) -> null)
+                .join();
+    }
+
+    /**
+     * @return how many documents were skipped and how many were published since the indexer started, and how many
+     * fingerprints were stored or dropped because a write of their document failed
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("unchanged", unchanged.get());
+        metrics.put("changed", changed.get());
+        metrics.put("fingerprintsWritten", fingerprintsWritten.get());
+        metrics.put("fingerprintsDropped", fingerprintsDropped.get());
+        metrics.put("fingerprintsPending", pendingFingerprints.size());
+        return metrics;
+    }
+
+    /**
+     * The fields are hashed in name order, so the fingerprint does not depend on the order the source returned
+     * them in. The crawl fields are left out, as they change on every crawl.
+     */
+    static String fingerprint(SolrInputDocument document, String vectorSignature) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(vectorSignature, StandardCharsets.UTF_8).putByte((byte) 0);
+        Map<String, Collection<Object>> fields = new TreeMap<>();
+        for (String fieldName : document.getFieldNames()) {
+            if (!CRAWL_FIELDS.contains(fieldName)) {
+                fields.put(fieldName, document.getFieldValues(fieldName));
+            }
+        }
+        fields.forEach((fieldName, values) -> {
+            hasher.putString(fieldName, StandardCharsets.UTF_8).putByte((byte) 0);
+            if (values != null) {
+                for (Object value : values) {
+                    hasher.putString(String.valueOf(value), StandardCharsets.UTF_8).putByte((byte) 1);
+                }
+            }
+            hasher.putByte((byte) 2);
+        });
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Changing how a field is chunked or embedded changes every fingerprint, so the next crawl embeds everything
+     * again with the new settings.
+     */
+    static String vectorSignature(String embeddingModelName, Map<String, VectorConfig> vectorConfig) {
+        StringBuilder signature = new StringBuilder(String.valueOf(embeddingModelName));
+        if (vectorConfig != null) {
+            new TreeMap<>(vectorConfig).forEach((fieldName, config) -> signature.append('|').append(fieldName)
+                    .append(',').append(config.getChunkField())
+                    .append(',').append(config.getChunkSize())
+                    .append(',').append(config.getChunkOverlap())
+                    .append(',').append(config.getMaxChars())
+                    .append(',').append(config.getModel())
+                    .append(',').append(config.getDestinationCollection())
+                    .append(',').append(config.getChunkFieldVectorName()));
+        }
+        return signature.toString();
+    }
+
+    private Map<String, String> storedFingerprints(List<SolrInputDocument> batch) {
+        String idQuery = batch.stream()
+                .map(document -> ClientUtils.escapeQueryChars(document.getFieldValue(uniqueKey).toString()))
+                .collect(Collectors.joining(" OR ", uniqueKey + ":(", ")"));
+        SolrQuery query = new SolrQuery(idQuery)
+                .setFields(uniqueKey, SchemaConstants.CONTENT_FINGERPRINT)
+                .setRows(batch.size());
+        QueryResponse response;
+        try {
+            // posted, as a page of ids can be longer than a solr url may be
+            response = destinationSolrClient.query(destinationCollection, query, SolrRequest.METHOD.POST);
+        } catch (SolrServerException | IOException e) {
+            throw new RuntimeException("Could not read the fingerprints of " + batch.size() + " documents from " + destinationCollection, e);
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        for (SolrDocument doc : response.getResults()) {
+            Object fingerprint = doc.getFieldValue(SchemaConstants.CONTENT_FINGERPRINT);
+            if (fingerprint != null) {
+                fingerprints.put(doc.getFieldValue(uniqueKey).toString(), fingerprint.toString());
+            }
+        }
+        return fingerprints;
+    }
+
+    private void refreshCrawlFields(List<String> ids, String crawlId, String crawlDate) {
+        try {
+            destinationSolrClient.add(destinationCollection, crawlFieldUpdates(uniqueKey, ids, crawlId, crawlDate));
+            String parentQuery = ids.stream().map(ClientUtils::escapeQueryChars).collect(Collectors.joining(" OR ", "parent_id:(", ")"));
+            for (String vectorCollection : vectorCollections) {
+                refreshChunks(vectorCollection, parentQuery, crawlId, crawlDate);
+            }
+        } catch (SolrServerException | IOException e) {
+            throw new RuntimeException("Could not refresh the crawl fields of " + ids.size() + " unchanged documents", e);
+        }
+    }
+
+    private void refreshChunks(String vectorCollection, String parentQuery, String crawlId, String crawlDate) throws SolrServerException, IOException {
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        while (true) {
+            SolrQuery query = new SolrQuery(parentQuery)
+                    .setFields(SchemaConstants.ID)
+                    .setRows(CHUNK_PAGE_SIZE)
+                    .setSort(SchemaConstants.ID, SolrQuery.ORDER.asc);
+            query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse response = vectorSolrClient.query(vectorCollection, query, SolrRequest.METHOD.POST);
+            List<String> chunkIds = new ArrayList<>(response.getResults().size());
+            for (SolrDocument doc : response.getResults()) {
+                chunkIds.add(doc.getFieldValue(SchemaConstants.ID).toString());
+            }
+            if (!chunkIds.isEmpty()) {
+                vectorSolrClient.add(vectorCollection, crawlFieldUpdates(SchemaConstants.ID, chunkIds, crawlId, crawlDate));
+            }
+            String nextCursorMark = response.getNextCursorMark();
+            if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+                return;
+            }
+            cursorMark = nextCursorMark;
+        }
+    }
+
+    private static final class PendingFingerprint {
+        private final String fingerprint;
+        // the destination document and its chunks
+        private final AtomicInteger remaining = new AtomicInteger(2);
+
+        private PendingFingerprint(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static List<SolrInputDocument> crawlFieldUpdates(String idField, List<String> ids, String crawlId, String crawlDate) {
+        List<SolrInputDocument> updates = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            SolrInputDocument update = new SolrInputDocument();
+            update.setField(idField, id);
+            update.setField(SchemaConstants.CRAWL_ID, Map.of("set", crawlId));
+            update.setField(SchemaConstants.CRAWL_DATE, Map.of("set", crawlDate));
+            updates.add(update);
+        }
+        return updates;
+    }
+}
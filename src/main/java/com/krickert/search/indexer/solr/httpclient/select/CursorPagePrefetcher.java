@@ -0,0 +1,129 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Walks the cursor of a single partition on a background thread and keeps up to {@code prefetchDepth} parsed
+ * pages waiting for the caller. While the caller publishes one page, the following pages are being fetched
+ * and parsed, so the source latency is hidden behind the publishing.
+ * <br>
+ * Each cursor request needs the nextCursorMark of the page before it, so there is only ever one request in
+ * flight per partition. The queue bounds memory to {@code prefetchDepth} pages of the pagination size; once it
+ * is full the fetch thread waits for the caller.
+ */
+public class CursorPagePrefetcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CursorPagePrefetcher.class);
+
+    private static final HttpSolrSelectResponse END_OF_PAGES = new HttpSolrSelectResponse.Builder()
+            .numFound(0L)
+            .docs(Collections.emptyList())
+            .build();
+
+    private final HttpSolrSelectClient httpSolrSelectClient;
+    private final String solrHost;
+    private final String solrCollection;
+    private final Integer paginationSize;
+    private final SourcePartition partition;
+    private final String startCursorMark;
+    private final BlockingQueue<HttpSolrSelectResponse> pages;
+    private volatile RuntimeException failure;
+    private volatile boolean closed;
+    private Future<?> fetchTask;
+
+    public CursorPagePrefetcher(HttpSolrSelectClient httpSolrSelectClient, String solrHost, String solrCollection,
+                                Integer paginationSize, SourcePartition partition, int prefetchDepth) {
+        this(httpSolrSelectClient, solrHost, solrCollection, paginationSize, partition, prefetchDepth, HttpSolrSelectClient.CURSOR_MARK_START);
+    }
+
+    /**
+     * @param startCursorMark the cursor of the first page to fetch, to continue a walk that was stopped
+     */
+    public CursorPagePrefetcher(HttpSolrSelectClient httpSolrSelectClient, String solrHost, String solrCollection,
+                                Integer paginationSize, SourcePartition partition, int prefetchDepth, String startCursorMark) {
+        checkArgument(prefetchDepth > 0, "prefetchDepth must be positive");
+        this.httpSolrSelectClient = checkNotNull(httpSolrSelectClient);
+        this.solrHost = checkNotNull(solrHost);
+        this.solrCollection = checkNotNull(solrCollection);
+        this.paginationSize = checkNotNull(paginationSize);
+        this.partition = checkNotNull(partition);
+        this.startCursorMark = checkNotNull(startCursorMark);
+        this.pages = new ArrayBlockingQueue<>(prefetchDepth);
+    }
+
+    /**
+     * Starts walking the cursor on a thread of the given executor.
+     */
+    public CursorPagePrefetcher start(ExecutorService executor) {
+        this.fetchTask = executor.submit(this::fetchPages);
+        return this;
+    }
+
+    /**
+     * Waits for the next page of the partition.
+     *
+     * @return the next page, or null once the cursor walk is complete
+     * @throws RuntimeException the error that stopped the fetch thread, if any
+     */
+    public HttpSolrSelectResponse next() throws InterruptedException {
+        HttpSolrSelectResponse page = pages.take();
+        if (page == END_OF_PAGES) {
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+        return page;
+    }
+
+    private void fetchPages() {
+        String cursorMark = startCursorMark;
+        try {
+            while (!closed) {
+                HttpSolrSelectResponse page = httpSolrSelectClient.getSolrDocsResponseWithCursor(solrHost, solrCollection, paginationSize, cursorMark, partition);
+                if (page.getNumFound() == 0 || page.getDocs().isEmpty()) {
+                    break;
+                }
+                pages.put(page);
+                String nextCursorMark = page.getNextCursorMark();
+                if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+                    // solr hands back the same cursor once the end of the result set is reached
+                    break;
+                }
+                cursorMark = nextCursorMark;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            log.error("Prefetching partition {} failed at cursorMark {}", partition.getName(), cursorMark, e);
+            failure = e;
+        }
+        try {
+            pages.put(END_OF_PAGES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the fetch thread. Pages that were prefetched but not taken are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (fetchTask != null) {
+            fetchTask.cancel(true);
+        }
+        pages.clear();
+    }
+}
@@ -1,13 +1,50 @@
 package com.krickert.search.indexer.solr.httpclient.select;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface HttpSolrSelectClient {
+    /**
+     * The cursorMark value that starts a deep paging walk from the first document.
+     */
+    String CURSOR_MARK_START = "*";
+
     String getSolrDocs(String solrHost, String solrCollection, Integer paginationSize, Integer pageNumber);
 
     String getSolrDocs(Integer paginationSize, Integer pageNumber) throws IOException, InterruptedException;
 
+    /**
+     * Fetches a page of a partition of the source collection using Solr's cursorMark deep paging, sorted on the
+     * collection's unique key. The cost of each page is constant no matter how deep into the collection the cursor
+     * is, and the response body is parsed while it streams in, so the page is never held as a String.
+     *
+     * @param solrHost       the base URL of the solr host
+     * @param solrCollection the collection to read from
+     * @param paginationSize the number of rows to return
+     * @param cursorMark     the cursor to read from - {@link #CURSOR_MARK_START} for the first page
+     * @return the parsed page, including its {@code nextCursorMark}
+     */
+    HttpSolrSelectResponse getSolrDocsResponseWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition);
+
+    /**
+     * Fetches a page of the unique keys of a partition of the collection, sorted on the unique key, with the
+     * configured filters applied. Only the unique key field of each document is returned.
+     */
+    HttpSolrSelectResponse getIdsWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition);
+
+    /**
+     * @return the class of the type of the field as the schema api reports it, such as {@code solr.StrField}
+     */
+    String getFieldTypeClass(String solrHost, String solrCollection, String fieldName);
+
     Long getTotalNumberOfDocumentsForCollection();
 
     Long getTotalNumberOfDocumentsForCollection(String solr7Host, String solr7Collection);
+
+    Long getTotalNumberOfDocumentsForPartition(String solr7Host, String solr7Collection, SourcePartition partition);
+
+    /**
+     * @return the shard names of a SolrCloud collection, as reported by the collections API CLUSTERSTATUS action
+     */
+    List<String> getShardNames(String solrHost, String solrCollection);
 }
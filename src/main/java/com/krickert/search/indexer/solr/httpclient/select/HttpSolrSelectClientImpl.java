@@ -4,6 +4,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.krickert.search.indexer.config.IndexerConfiguration;
 import com.krickert.search.indexer.config.SolrConfiguration;
+import com.krickert.search.indexer.solr.JavabinToSolrDocParser;
+import com.krickert.search.indexer.solr.JsonToSolrDocParser;
+import com.krickert.search.indexer.util.EnumSettings;
 import io.micronaut.context.annotation.Value;
 import io.micronaut.core.util.CollectionUtils;
 import io.micronaut.http.HttpRequest;
@@ -17,11 +20,15 @@ import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -29,18 +36,33 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
     private static final Logger log = LoggerFactory.getLogger(HttpSolrSelectClientImpl.class);
 
+    public enum ResponseFormat {
+        JSON, JAVABIN
+    }
+
     private final HttpClient httpClient;
     private final String solrHost;
     private final String solrCollection;
     private final SolrConfiguration sourceSolrConfiguration;
     private final Collection<String> filters;
+    private final String uniqueKey;
     private final ObjectMapper objectMapper;
+    private final SolrSourceStreamingClient streamingClient;
+    private final JsonToSolrDocParser jsonToSolrDocParser;
+    private final JavabinToSolrDocParser javabinToSolrDocParser;
+    private final ResponseFormat responseFormat;
 
     @Inject
     public HttpSolrSelectClientImpl(@Client HttpClient httpClient,
-                                    IndexerConfiguration configuration) {
+                                    IndexerConfiguration configuration,
+                                    SolrSourceStreamingClient streamingClient,
+                                    JsonToSolrDocParser jsonToSolrDocParser,
+                                    JavabinToSolrDocParser javabinToSolrDocParser) {
         log.info("Creating Http-based solr client");
         this.httpClient = checkNotNull(httpClient);
+        this.streamingClient = checkNotNull(streamingClient);
+        this.jsonToSolrDocParser = checkNotNull(jsonToSolrDocParser);
+        this.javabinToSolrDocParser = checkNotNull(javabinToSolrDocParser);
         checkNotNull(configuration);
         this.sourceSolrConfiguration = checkNotNull(configuration.getSourceSolrConfiguration());
         SolrConfiguration.Connection connection = checkNotNull(sourceSolrConfiguration.getConnection());
@@ -53,6 +75,8 @@ public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
             filters = sourceSolrConfiguration.getFilters();
         }
         this.filters = filters;
+        this.uniqueKey = checkNotNull(sourceSolrConfiguration.getUniqueKey());
+        this.responseFormat = EnumSettings.parse(ResponseFormat.class, "response-format", sourceSolrConfiguration.getResponseFormat(), ResponseFormat.JSON);
         this.objectMapper = new ObjectMapper();
         log.info("Created Http-based solr client");
     }
@@ -78,6 +102,68 @@ public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
         }
     }
 
+    @Retryable
+    @Override
+    public HttpSolrSelectResponse getSolrDocsResponseWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+        try {
+            URI uri = createCursorRequest(solrHost, solrCollection, paginationSize, cursorMark, partition, responseFormat);
+            Function<InputStream, HttpSolrSelectResponse> responseParser = responseFormat == ResponseFormat.JAVABIN ?
+                    javabinToSolrDocParser::parseSolrResponse :
+                    jsonToSolrDocParser::parseSolrResponse;
+            return streamingClient.get(uri, responseParser);
+        } catch (Exception e) {
+            log.error("Failed to get Solr documents for cursorMark {} in partition {}", cursorMark, partition.getName(), e);
+            throw new RuntimeException("Failed to get Solr documents", e);
+        }
+    }
+
+    @Retryable
+    @Override
+    public HttpSolrSelectResponse getIdsWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+        try {
+            UriBuilder builder = UriBuilder.of(solrHost)
+                    .path(solrCollection)
+                    .path("select")
+                    .queryParam("q", "*:*")
+                    .queryParam("wt", "json")
+                    .queryParam("sort", uniqueKey + " asc")
+                    .queryParam("rows", paginationSize)
+                    .queryParam("cursorMark", cursorMark)
+                    .queryParam("fl", uniqueKey);
+            addFilters(builder, partition);
+            return streamingClient.get(builder.build(), jsonToSolrDocParser::parseSolrResponse);
+        } catch (Exception e) {
+            log.error("Failed to get Solr ids for cursorMark {} in partition {}", cursorMark, partition.getName(), e);
+            throw new RuntimeException("Failed to get Solr ids", e);
+        }
+    }
+
+    @Retryable
+    @Override
+    public String getFieldTypeClass(String solrHost, String solrCollection, String fieldName) {
+        try {
+            URI fieldUrl = UriBuilder.of(solrHost)
+                    .path(solrCollection)
+                    .path("schema")
+                    .path("fields")
+                    .path(fieldName)
+                    .queryParam("wt", "json")
+                    .build();
+            String typeName = objectMapper.readTree(getResponseAsString(fieldUrl)).path("field").path("type").asText();
+            URI fieldTypeUrl = UriBuilder.of(solrHost)
+                    .path(solrCollection)
+                    .path("schema")
+                    .path("fieldtypes")
+                    .path(typeName)
+                    .queryParam("wt", "json")
+                    .build();
+            return objectMapper.readTree(getResponseAsString(fieldTypeUrl)).path("fieldType").path("class").asText();
+        } catch (Exception e) {
+            log.error("Failed to fetch the type of field {} of collection {}", fieldName, solrCollection, e);
+            throw new RuntimeException("Failed to fetch the type of field " + fieldName + " of collection " + solrCollection, e);
+        }
+    }
+
     private String getResponseAsString(URI uri) throws ExecutionException, InterruptedException {
         HttpRequest<?> request = HttpRequest.GET(uri);
 
@@ -110,12 +196,57 @@ public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
                 .queryParam("wt", "json")
                 .queryParam("start", pageNumber * paginationSize)
                 .queryParam("rows", paginationSize);
+        addFieldList(builder);
         for (String filter : filters) {
             builder.queryParam("fq", filter);
         }
         return builder.build();
     }
 
+    /**
+     * Creates a cursorMark request. Solr requires the sort to include the unique key so the
+     * cursor is stable, and the start parameter must not be set.
+     */
+    private URI createCursorRequest(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition, ResponseFormat format) {
+        UriBuilder builder = UriBuilder.of(solrHost)
+                .path(solrCollection)
+                .path("select")
+                .queryParam("q", "*:*")
+                .queryParam("wt", format.name().toLowerCase())
+                .queryParam("sort", uniqueKey + " asc")
+                .queryParam("rows", paginationSize)
+                .queryParam("cursorMark", cursorMark);
+        addFieldList(builder);
+        addFilters(builder, partition);
+        return builder.build();
+    }
+
+    /**
+     * Restricts the stored fields solr returns to the configured fields. The unique key is always returned so
+     * the destination documents keep their ids. Without a fields config every stored field is returned.
+     */
+    private void addFieldList(UriBuilder builder) {
+        Collection<String> fields = sourceSolrConfiguration.getFields();
+        if (CollectionUtils.isEmpty(fields)) {
+            return;
+        }
+        List<String> fieldList = new ArrayList<>(fields);
+        if (!fieldList.contains(uniqueKey)) {
+            fieldList.add(uniqueKey);
+        }
+        builder.queryParam("fl", String.join(",", fieldList));
+    }
+
+    private void addFilters(UriBuilder builder, SourcePartition partition) {
+        for (String filter : filters) {
+            builder.queryParam("fq", filter);
+        }
+        for (String filter : partition.getFilters()) {
+            builder.queryParam("fq", filter);
+        }
+        partition.getParams().forEach((name, value) -> builder.queryParam(name, value));
+    }
+
     @Override
     public Long getTotalNumberOfDocumentsForCollection() {
         return getTotalNumberOfDocumentsForCollection(solrHost, solrCollection);
@@ -123,15 +254,22 @@ public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
 
     @Override
     public Long getTotalNumberOfDocumentsForCollection(String solrHost, String solrCollection) {
+        return getTotalNumberOfDocumentsForPartition(solrHost, solrCollection, SourcePartition.all());
+    }
+
+    @Override
+    public Long getTotalNumberOfDocumentsForPartition(String solrHost, String solrCollection, SourcePartition partition) {
         try {
-            // Create the request for getting the total number of documents
-            URI solrRequestUrl = UriBuilder.of(solrHost)
+            // Create the request for getting the total number of documents. The filters are applied
+            // so the count matches the number of documents the export will actually walk.
+            UriBuilder builder = UriBuilder.of(solrHost)
                     .path(solrCollection)
                     .path("select")
                     .queryParam("q", "*:*")
                     .queryParam("wt", "json")
-                    .queryParam("rows", 0)
-                    .build();
+                    .queryParam("rows", 0);
+            addFilters(builder, partition);
+            URI solrRequestUrl = builder.build();
 
             // Get the response as a string
             String responseStr = getResponseAsString(solrRequestUrl);
@@ -147,4 +285,25 @@ public class HttpSolrSelectClientImpl implements HttpSolrSelectClient {
             throw new RuntimeException("Failed to fetch the total number of documents", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<String> getShardNames(String solrHost, String solrCollection) {
+        try {
+            URI clusterStatusUrl = UriBuilder.of(solrHost)
+                    .path("admin")
+                    .path("collections")
+                    .queryParam("action", "CLUSTERSTATUS")
+                    .queryParam("collection", solrCollection)
+                    .queryParam("wt", "json")
+                    .build();
+            JsonNode shards = objectMapper.readTree(getResponseAsString(clusterStatusUrl))
+                    .path("cluster").path("collections").path(solrCollection).path("shards");
+            List<String> shardNames = new ArrayList<>();
+            shards.fieldNames().forEachRemaining(shardNames::add);
+            return shardNames;
+        } catch (Exception e) {
+            log.error("Failed to fetch the shards for collection {}", solrCollection, e);
+            throw new RuntimeException("Failed to fetch the shards for collection " + solrCollection, e);
+        }
+    }
+}
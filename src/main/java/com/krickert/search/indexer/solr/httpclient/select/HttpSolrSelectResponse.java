@@ -10,6 +10,7 @@ public class HttpSolrSelectResponse {
     private final Long start;
     private final Collection<SolrInputDocument> docs;
     private final Long pageSize;
+    private final String nextCursorMark;
 
     private HttpSolrSelectResponse(Builder builder) {
         this.numFound = builder.numFound;
@@ -17,6 +18,7 @@ public class HttpSolrSelectResponse {
         this.start = builder.start;
         this.docs = builder.docs;
         this.pageSize = builder.pageSize;
+        this.nextCursorMark = builder.nextCursorMark;
     }
 
     public Long getNumFound() {
@@ -39,12 +41,21 @@ public class HttpSolrSelectResponse {
         return pageSize;
     }
 
+    /**
+     * @return the cursor for the next page when the request was made with a cursorMark, otherwise null.
+     * Solr returns the same cursor that was sent once there are no more documents.
+     */
+    public String getNextCursorMark() {
+        return nextCursorMark;
+    }
+
     public static class Builder {
         private Long numFound;
         private Long qtime;
         private Long start;
         private Collection<SolrInputDocument> docs;
         private Long pageSize;
+        private String nextCursorMark;
 
         public Builder numFound(Long numFound) {
             this.numFound = numFound;
@@ -71,6 +82,11 @@ public class HttpSolrSelectResponse {
             return this;
         }
 
+        public Builder nextCursorMark(String nextCursorMark) {
+            this.nextCursorMark = nextCursorMark;
+            return this;
+        }
+
         public HttpSolrSelectResponse build() {
             return new HttpSolrSelectResponse(this);
         }
@@ -0,0 +1,165 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.SolrConfiguration;
+import com.krickert.search.indexer.solr.JsonToSolrDocParser;
+import com.krickert.search.indexer.util.EnumSettings;
+import io.micronaut.core.util.CollectionUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import okhttp3.HttpUrl;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bulk reads the source collection through Solr's /export handler, or through a /stream search expression
+ * that runs against /export on every shard of a SolrCloud collection.
+ * <br>
+ * Unlike the /select reads, the response is never held as a whole. Documents are parsed as the body arrives
+ * and handed to the caller one at a time, so a multi-hour export costs the same memory as a single document.
+ * Every exported field must have docValues, and the fields have to be listed in the source "fields" config.
+ */
+@Singleton
+public class SolrExportClient {
+    private static final Logger log = LoggerFactory.getLogger(SolrExportClient.class);
+
+    public enum ReadMode {
+        SELECT, EXPORT, STREAM
+    }
+
+    private final SolrSourceStreamingClient streamingClient;
+    private final JsonToSolrDocParser jsonToSolrDocParser;
+    private final SolrConfiguration sourceSolrConfiguration;
+    private final Collection<String> filters;
+    private final String uniqueKey;
+
+    @Inject
+    public SolrExportClient(IndexerConfiguration configuration, JsonToSolrDocParser jsonToSolrDocParser,
+                            SolrSourceStreamingClient streamingClient) {
+        this.sourceSolrConfiguration = checkNotNull(configuration.getSourceSolrConfiguration());
+        this.jsonToSolrDocParser = checkNotNull(jsonToSolrDocParser);
+        this.uniqueKey = checkNotNull(sourceSolrConfiguration.getUniqueKey());
+        this.filters = CollectionUtils.isEmpty(sourceSolrConfiguration.getFilters()) ? Collections.emptyList() : sourceSolrConfiguration.getFilters();
+        this.streamingClient = checkNotNull(streamingClient);
+    }
+
+    public ReadMode getReadMode() {
+        return EnumSettings.parse(ReadMode.class, "read-mode", sourceSolrConfiguration.getReadMode(), ReadMode.SELECT);
+    }
+
+    /**
+     * @return true if the source is configured to be read with /export or /stream instead of /select
+     */
+    public boolean isExportMode() {
+        return getReadMode() != ReadMode.SELECT;
+    }
+
+    /**
+     * Streams every document of the partition to the consumer.
+     *
+     * @return the number of documents that were exported
+     */
+    public long exportDocuments(String solrHost, String solrCollection, SourcePartition partition, Consumer<SolrInputDocument> consumer) {
+        boolean stream = getReadMode() == ReadMode.STREAM;
+        HttpUrl url = stream ?
+                createStreamUrl(solrHost, solrCollection, partition) :
+                createExportUrl(solrHost, solrCollection, partition);
+        log.info("Exporting partition {} of collection {}", partition.getName(), solrCollection);
+        try {
+            long exported = streamingClient.export(url, inputStream -> stream ?
+                    jsonToSolrDocParser.parseStreamDocuments(inputStream, consumer) :
+                    jsonToSolrDocParser.parseSolrDocuments(inputStream, consumer));
+            log.info("Exported {} documents from partition {} of collection {}", exported, partition.getName(), solrCollection);
+            return exported;
+        } catch (IOException e) {
+            log.error("Failed to export partition {} of collection {}", partition.getName(), solrCollection, e);
+            throw new RuntimeException("Failed to export collection " + solrCollection, e);
+        }
+    }
+
+    private HttpUrl createExportUrl(String solrHost, String solrCollection, SourcePartition partition) {
+        HttpUrl.Builder builder = baseUrl(solrHost)
+                .addPathSegment(solrCollection)
+                .addPathSegment("export")
+                .addQueryParameter("q", "*:*")
+                .addQueryParameter("wt", "json")
+                .addQueryParameter("sort", uniqueKey + " asc")
+                .addQueryParameter("fl", String.join(",", getFields()));
+        for (String filter : allFilters(partition)) {
+            builder.addQueryParameter("fq", filter);
+        }
+        partition.getParams().forEach(builder::addQueryParameter);
+        return builder.build();
+    }
+
+    /**
+     * /export only reads the core that receives the request. The search expression below runs /export
+     * on every shard of the collection and merges the results on the unique key.
+     */
+    private HttpUrl createStreamUrl(String solrHost, String solrCollection, SourcePartition partition) {
+        StringBuilder expression = new StringBuilder("search(")
+                .append(solrCollection)
+                .append(", q=").append(quote("*:*"))
+                .append(", fl=").append(quote(String.join(",", getFields())))
+                .append(", sort=").append(quote(uniqueKey + " asc"));
+        for (String filter : allFilters(partition)) {
+            expression.append(", fq=").append(quote(filter));
+        }
+        partition.getParams().forEach((name, value) -> expression.append(", ").append(name).append('=').append(quote(value)));
+        expression.append(", qt=").append(quote("/export")).append(')');
+        return baseUrl(solrHost)
+                .addPathSegment(solrCollection)
+                .addPathSegment("stream")
+                .addQueryParameter("expr", expression.toString())
+                .build();
+    }
+
+    /**
+     * Quotes a parameter value of a streaming expression. The expression parser only unescapes a backslash before a
+     * double quote, so the quotes are escaped and every other backslash is left for the query parser. A value that
+     * ends in a backslash would escape the closing quote, and is refused.
+     */
+    static String quote(String value) {
+        checkNotNull(value);
+        checkArgument(!value.endsWith("\\"), "A streaming expression value cannot end with a backslash: %s", value);
+        return '"' + value.replace("\"", "\\\"") + '"';
+    }
+
+    private static HttpUrl.Builder baseUrl(String solrHost) {
+        HttpUrl baseUrl = HttpUrl.parse(solrHost);
+        if (baseUrl == null) {
+            throw new IllegalArgumentException("Invalid source solr url " + solrHost);
+        }
+        return baseUrl.newBuilder();
+    }
+
+    private List<String> allFilters(SourcePartition partition) {
+        List<String> allFilters = new ArrayList<>(filters);
+        allFilters.addAll(partition.getFilters());
+        return allFilters;
+    }
+
+    private Collection<String> getFields() {
+        Collection<String> fields = sourceSolrConfiguration.getFields();
+        if (CollectionUtils.isEmpty(fields)) {
+            throw new IllegalStateException("The source read-mode " + getReadMode() + " requires the docValues fields to export in the source fields config");
+        }
+        if (!fields.contains(uniqueKey)) {
+            List<String> fieldsWithKey = new ArrayList<>(fields);
+            fieldsWithKey.add(uniqueKey);
+            return fieldsWithKey;
+        }
+        return fields;
+    }
+}
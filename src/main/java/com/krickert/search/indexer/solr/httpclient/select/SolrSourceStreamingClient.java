@@ -0,0 +1,105 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.SolrConfiguration;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sends GET requests to the source solr and hands the response body to a reader as an {@link InputStream}
+ * while it is still arriving. The body is never copied into a String or a byte array, so a response costs
+ * only what its reader keeps of it.
+ * <br>
+ * Cursor pages are read with the source read timeout, so a source that stalls in the middle of a page fails the
+ * request instead of holding the partition reader forever. Exports are read without one.
+ */
+@Singleton
+public class SolrSourceStreamingClient {
+    private static final Logger log = LoggerFactory.getLogger(SolrSourceStreamingClient.class);
+
+    private static final int DEFAULT_READ_TIMEOUT_SECONDS = 120;
+
+    private final OkHttpClient okHttpClient;
+    private final OkHttpClient exportHttpClient;
+    private final SolrConfiguration sourceSolrConfiguration;
+
+    @Inject
+    public SolrSourceStreamingClient(IndexerConfiguration configuration) {
+        this.sourceSolrConfiguration = checkNotNull(configuration.getSourceSolrConfiguration());
+        Integer readTimeoutSeconds = configuration.getIndexerConfigurationProperties().getSourceReadTimeoutSeconds();
+        this.okHttpClient = new OkHttpClient.Builder()
+                .readTimeout(Duration.ofSeconds(readTimeoutSeconds == null || readTimeoutSeconds < 1 ?
+                        DEFAULT_READ_TIMEOUT_SECONDS : readTimeoutSeconds))
+                .build();
+        // an export body is read for as long as the export runs, and reading pauses whenever the
+        // publishers are behind, so there is no read timeout. It shares the connection pool of the page client.
+        this.exportHttpClient = okHttpClient.newBuilder()
+                .readTimeout(Duration.ZERO)
+                .build();
+    }
+
+    /**
+     * Reads a cursor page, failing when the source sends nothing for longer than the read timeout.
+     */
+    public <T> T get(URI uri, Function<InputStream, T> bodyReader) throws IOException {
+        return get(HttpUrl.get(uri), bodyReader);
+    }
+
+    /**
+     * Reads a cursor page, failing when the source sends nothing for longer than the read timeout.
+     */
+    public <T> T get(HttpUrl url, Function<InputStream, T> bodyReader) throws IOException {
+        return execute(okHttpClient, url, bodyReader);
+    }
+
+    /**
+     * Reads an /export or /stream body without a read timeout.
+     */
+    public <T> T export(HttpUrl url, Function<InputStream, T> bodyReader) throws IOException {
+        return execute(exportHttpClient, url, bodyReader);
+    }
+
+    private <T> T execute(OkHttpClient client, HttpUrl url, Function<InputStream, T> bodyReader) throws IOException {
+        try (Response response = client.newCall(createRequest(url)).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                String errorBody = body == null ? "" : body.string();
+                throw new IOException("Solr request " + url.encodedPath() + " failed with " + response.code() + ": " + errorBody);
+            }
+            try (InputStream inputStream = body.byteStream()) {
+                return bodyReader.apply(inputStream);
+            }
+        }
+    }
+
+    private Request createRequest(HttpUrl url) {
+        Request.Builder builder = new Request.Builder().url(url).get();
+        // If authentication is enabled, enhance the request with the basic auth header
+        SolrConfiguration.Connection.Authentication authentication = sourceSolrConfiguration.getConnection().getAuthentication();
+        if (authentication != null && authentication.isEnabled()) {
+            if ("basic".equalsIgnoreCase(authentication.getType())) {
+                builder.header("Authorization", Credentials.basic(authentication.getUserName(), authentication.getPassword()));
+            } else {
+                log.warn("Source authentication type '{}' is not supported. Skipping authentication for Solr request to {}",
+                        authentication.getType(), sourceSolrConfiguration.getConnection().getUrl());
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An independent slice of the source collection. Each partition is read with its own cursor, so
+ * partitions can be walked at the same time without coordinating with each other.
+ * <br>
+ * A partition narrows the source query with extra filter queries, extra request parameters, or both.
+ * The partition that covers the entire collection has neither.
+ */
+public class SourcePartition {
+
+    private static final SourcePartition ALL = new SourcePartition("all", Collections.emptyList(), Collections.emptyMap());
+
+    private final String name;
+    private final Collection<String> filters;
+    private final Map<String, String> params;
+
+    private SourcePartition(String name, Collection<String> filters, Map<String, String> params) {
+        this.name = checkNotNull(name);
+        this.filters = Collections.unmodifiableCollection(filters);
+        this.params = Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * @return the partition that reads the whole collection
+     */
+    public static SourcePartition all() {
+        return ALL;
+    }
+
+    /**
+     * Creates a partition that only reads the given shard of a SolrCloud collection.
+     */
+    public static SourcePartition ofShard(String shardName) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("shards", shardName);
+        return new SourcePartition("shard-" + shardName, Collections.emptyList(), params);
+    }
+
+    /**
+     * Creates a partition that reads one of {@code workers} hash ranges of the given key field.
+     * Solr's hash query parser requires docValues on the key field.
+     */
+    public static SourcePartition ofHashRange(String keyField, int worker, int workers) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("partitionKeys", keyField);
+        String filter = "{!hash workers=" + workers + " worker=" + worker + " partitionKeys=" + keyField + "}";
+        return new SourcePartition("hash-" + worker + "-of-" + workers, List.of(filter), params);
+    }
+
+    /**
+     * Creates a partition defined by a filter query slice.
+     */
+    public static SourcePartition ofFilter(String filter) {
+        return new SourcePartition("filter-" + filter, List.of(filter), Collections.emptyMap());
+    }
+
+    /**
+     * @return a copy of this partition that also applies the given filter query
+     */
+    public SourcePartition withFilter(String filter) {
+        List<String> withFilter = new ArrayList<>(filters);
+        withFilter.add(checkNotNull(filter));
+        return new SourcePartition(name, withFilter, params);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Collection<String> getFilters() {
+        return filters;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", name)
+                .add("filters", filters)
+                .add("params", params)
+                .toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.SolrConfiguration;
+import com.krickert.search.indexer.util.EnumSettings;
+import io.micronaut.core.util.CollectionUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Splits the source collection into {@link SourcePartition}s based on the partition strategy of the
+ * source solr configuration.
+ * <ul>
+ *     <li>none - a single partition covering the collection (the default)</li>
+ *     <li>shard - one partition per shard of a SolrCloud collection</li>
+ *     <li>hash - partition-count hash ranges of the unique key</li>
+ *     <li>filter - one partition for each of the configured partition-filters</li>
+ * </ul>
+ */
+@Singleton
+public class SourcePartitioner {
+    private static final Logger log = LoggerFactory.getLogger(SourcePartitioner.class);
+
+    public enum PartitionStrategy {
+        NONE, SHARD, HASH, FILTER
+    }
+
+    private final HttpSolrSelectClient httpSolrSelectClient;
+    private final SolrConfiguration sourceSolrConfiguration;
+
+    @Inject
+    public SourcePartitioner(HttpSolrSelectClient httpSolrSelectClient, IndexerConfiguration indexerConfiguration) {
+        this.httpSolrSelectClient = checkNotNull(httpSolrSelectClient);
+        this.sourceSolrConfiguration = checkNotNull(indexerConfiguration.getSourceSolrConfiguration());
+    }
+
+    public PartitionStrategy getPartitionStrategy() {
+        return EnumSettings.parse(PartitionStrategy.class, "partition-strategy", sourceSolrConfiguration.getPartitionStrategy(), PartitionStrategy.NONE);
+    }
+
+    public List<SourcePartition> createPartitions(String solrHost, String solrCollection) {
+        PartitionStrategy strategy = getPartitionStrategy();
+        List<SourcePartition> partitions = new ArrayList<>();
+        switch (strategy) {
+            case SHARD:
+                httpSolrSelectClient.getShardNames(solrHost, solrCollection)
+                        .forEach(shard -> partitions.add(SourcePartition.ofShard(shard)));
+                break;
+            case HASH:
+                int workers = sourceSolrConfiguration.getPartitionCount() == null ? getReadConcurrency() : sourceSolrConfiguration.getPartitionCount();
+                for (int worker = 0; worker < workers; worker++) {
+                    partitions.add(SourcePartition.ofHashRange(sourceSolrConfiguration.getUniqueKey(), worker, workers));
+                }
+                break;
+            case FILTER:
+                if (CollectionUtils.isNotEmpty(sourceSolrConfiguration.getPartitionFilters())) {
+                    sourceSolrConfiguration.getPartitionFilters()
+                            .forEach(filter -> partitions.add(SourcePartition.ofFilter(filter)));
+                }
+                break;
+            case NONE:
+            default:
+                break;
+        }
+        if (partitions.isEmpty()) {
+            if (strategy != PartitionStrategy.NONE) {
+                log.warn("Partition strategy {} produced no partitions for collection {}. Reading it as a single partition.", strategy, solrCollection);
+            }
+            partitions.add(SourcePartition.all());
+        }
+        log.info("Reading collection {} as {} partition(s) using strategy {}", solrCollection, partitions.size(), strategy);
+        return partitions;
+    }
+
+    /**
+     * @return the number of partitions that are read at the same time - defaults to 1
+     */
+    public int getReadConcurrency() {
+        Integer readConcurrency = sourceSolrConfiguration.getReadConcurrency();
+        return readConcurrency == null || readConcurrency < 1 ? 1 : readConcurrency;
+    }
+}
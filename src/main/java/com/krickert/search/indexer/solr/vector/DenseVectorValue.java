@@ -0,0 +1,48 @@
+package com.krickert.search.indexer.solr.vector;
+
+import org.apache.solr.common.IteratorWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A dense vector field value backed by a float[]. Javabin writes an {@link IteratorWriter} through its item writer,
+ * one primitive float at a time, so a vector is sent to solr without a Float object for each dimension.
+ * <br>
+ * The array may be shared with the embedding cache and must not be changed.
+ */
+public final class DenseVectorValue implements IteratorWriter {
+    private final float[] vector;
+
+    public DenseVectorValue(float[] vector) {
+        this.vector = checkNotNull(vector);
+    }
+
+    public float[] getVector() {
+        return vector;
+    }
+
+    @Override
+    public void writeIter(ItemWriter itemWriter) throws IOException {
+        for (float dimension : vector) {
+            itemWriter.add(dimension);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof DenseVectorValue value && Arrays.equals(vector, value.vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vector);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(vector);
+    }
+}
@@ -0,0 +1,219 @@
+package com.krickert.search.indexer.solr.vector.event;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.util.EnumSettings;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A document publisher backed by a sink with a bounded queue. When the listeners fall behind and the queue is
+ * full, the overflow policy decides what happens to the caller:
+ * <ul>
+ *     <li>block - the caller waits until the listeners make room (the default), failing the document if no room is
+ *     made within publisher-block-timeout-seconds. The caller sleeps on a condition that is signalled whenever the
+ *     listener takes a document from the queue.</li>
+ *     <li>fail - the document is rejected right away</li>
+ * </ul>
+ * Rejected documents are reported through {@link #documentRejected(SolrInputDocument)} so the tracker can count them.
+ */
+public abstract class BoundedDocumentPublisher implements SourceSolrDocumentListener {
+    private static final Logger log = LoggerFactory.getLogger(BoundedDocumentPublisher.class);
+
+    public enum OverflowPolicy {
+        BLOCK, FAIL
+    }
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final long DEFAULT_BLOCK_TIMEOUT_SECONDS = 300;
+
+    private final Sinks.Many<SolrInputDocument> sink;
+    private final String uniqueKey;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final ReentrantLock roomLock = new ReentrantLock();
+    private final Condition roomMade = roomLock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param uniqueKey the unique key of the source documents, to name the rejected ones in the log
+     */
+    protected BoundedDocumentPublisher(IndexerConfigurationProperties indexerConfigurationProperties, String uniqueKey) {
+        this.uniqueKey = checkNotNull(uniqueKey);
+        this.queueCapacity = indexerConfigurationProperties.getPublisherQueueCapacity() == null ?
+                DEFAULT_QUEUE_CAPACITY : indexerConfigurationProperties.getPublisherQueueCapacity();
+        this.overflowPolicy = EnumSettings.parse(OverflowPolicy.class, "publisher-overflow-policy",
+                indexerConfigurationProperties.getPublisherOverflowPolicy(), OverflowPolicy.BLOCK);
+        this.blockTimeoutNanos = TimeUnit.SECONDS.toNanos(indexerConfigurationProperties.getPublisherBlockTimeoutSeconds() == null ?
+                DEFAULT_BLOCK_TIMEOUT_SECONDS : indexerConfigurationProperties.getPublisherBlockTimeoutSeconds());
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(new SignallingQueue(Queues.<SolrInputDocument>get(queueCapacity).get()));
+    }
+
+    /**
+     * Called for every document the publisher could not hand to its listener.
+     */
+    protected abstract void documentRejected(SolrInputDocument document);
+
+    @Override
+    public void publishDocument(SolrInputDocument document) {
+        Sinks.EmitResult result = emit(document);
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            overflows.incrementAndGet();
+            result = overflowPolicy == OverflowPolicy.BLOCK ? awaitRoom(document) : result;
+        }
+        if (result.isSuccess()) {
+            published.incrementAndGet();
+        } else {
+            reject(document, result);
+        }
+    }
+
+    private Sinks.EmitResult emit(SolrInputDocument document) {
+        while (true) {
+            Sinks.EmitResult result = sink.tryEmitNext(document);
+            if (result != Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                return result;
+            }
+            // another thread is emitting at this very moment
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Waits for the listener to take documents from the full queue until the document fits or the block timeout
+     * passes. The waiter is counted before every attempt, so a take that follows a failed attempt always signals.
+     */
+    private Sinks.EmitResult awaitRoom(SolrInputDocument document) {
+        long blockedSince = System.nanoTime();
+        long remainingNanos = blockTimeoutNanos;
+        Sinks.EmitResult result = Sinks.EmitResult.FAIL_OVERFLOW;
+        waiting.incrementAndGet();
+        roomLock.lock();
+        try {
+            while (remainingNanos > 0) {
+                result = emit(document);
+                if (result != Sinks.EmitResult.FAIL_OVERFLOW) {
+                    break;
+                }
+                remainingNanos = roomMade.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            roomLock.unlock();
+            waiting.decrementAndGet();
+            blockedNanos.addAndGet(System.nanoTime() - blockedSince);
+        }
+        return result;
+    }
+
+    private void signalRoom() {
+        if (waiting.get() > 0) {
+            roomLock.lock();
+            try {
+                roomMade.signalAll();
+            } finally {
+                roomLock.unlock();
+            }
+        }
+    }
+
+    private void reject(SolrInputDocument document, Sinks.EmitResult result) {
+        rejected.incrementAndGet();
+        log.warn("Failed to publish document {}: {}", document.getFieldValue(uniqueKey), result);
+        documentRejected(document);
+    }
+
+    @Override
+    public Flux<SolrInputDocument> getDocumentFlux() {
+        return sink.asFlux();
+    }
+
+    /**
+     * @return the queue settings, the number of documents waiting in the queue, and the publish counters
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("overflowPolicy", overflowPolicy.name().toLowerCase());
+        metrics.put("queued", sink.scanOrDefault(Scannable.Attr.BUFFERED, 0));
+        metrics.put("published", published.get());
+        metrics.put("overflows", overflows.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+        return metrics;
+    }
+
+    /**
+     * The queue of the sink, signalling the publishers waiting for room whenever the listener takes a document.
+     */
+    private class SignallingQueue extends AbstractQueue<SolrInputDocument> {
+        private final Queue<SolrInputDocument> queue;
+
+        private SignallingQueue(Queue<SolrInputDocument> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean offer(SolrInputDocument document) {
+            return queue.offer(document);
+        }
+
+        @Override
+        public SolrInputDocument poll() {
+            SolrInputDocument document = queue.poll();
+            if (document != null) {
+                signalRoom();
+            }
+            return document;
+        }
+
+        @Override
+        public SolrInputDocument peek() {
+            return queue.peek();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+            signalRoom();
+        }
+
+        @Override
+        public Iterator<SolrInputDocument> iterator() {
+            return queue.iterator();
+        }
+    }
+}
@@ -1,52 +1,82 @@
 package com.krickert.search.indexer.solr.vector.event;
 
 import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
 import com.krickert.search.indexer.config.VectorConfig;
+import com.krickert.search.indexer.embedding.EmbeddingBatcher;
+import com.krickert.search.indexer.embedding.EmbeddingCache;
+import com.krickert.search.indexer.grpc.GrpcFutures;
 import com.krickert.search.indexer.solr.SchemaConstants;
-import com.krickert.search.indexer.solr.client.SolrClientService;
+import com.krickert.search.indexer.solr.client.DestinationWriter;
+import com.krickert.search.indexer.solr.client.UnchangedDocumentFilter;
+import com.krickert.search.indexer.solr.vector.DenseVectorValue;
 import com.krickert.search.indexer.tracker.IndexingTracker;
 import com.krickert.search.service.*;
 import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.ConcurrentUpdateHttp2SolrClient;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Singleton
 public class ChunkDocumentListener implements DocumentListener {
 
     private static final Logger log = LoggerFactory.getLogger(ChunkDocumentListener.class);
     private static final Integer DEFAULT_BATCH_SIZE = 3;
+    private static final long DEFAULT_EMBEDDING_BATCH_LINGER_MILLIS = 10;
     private final Map<String, VectorConfig> chunkVectorConfig;
     private final ChunkServiceGrpc.ChunkServiceBlockingStub chunkServiceBlockingStub;
     private final EmbeddingServiceGrpc.EmbeddingServiceBlockingStub embeddingServiceBlockingStub;
-    private final ConcurrentUpdateHttp2SolrClient vectorSolrClient;
+    private final ChunkServiceGrpc.ChunkServiceFutureStub chunkServiceFutureStub;
+    private final EmbeddingServiceGrpc.EmbeddingServiceFutureStub embeddingServiceFutureStub;
+    private final DestinationWriter destinationWriter;
     private final IndexingTracker indexingTracker;
     private final Integer batchSize;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final DownstreamLimiter downstreamLimiter;
+    private final EmbeddingCache embeddingCache;
+    private final UnchangedDocumentFilter unchangedDocumentFilter;
 
     public ChunkDocumentListener(IndexerConfiguration indexerConfiguration,
                                  @Named("chunkService") ChunkServiceGrpc.ChunkServiceBlockingStub chunkServiceBlockingStub,
                                  @Named("vectorEmbeddingService") EmbeddingServiceGrpc.EmbeddingServiceBlockingStub embeddingServiceBlockingStub,
-                                 SolrClientService solrClientService,
-                                 IndexingTracker indexingTracker) {
-        this.chunkVectorConfig = indexerConfiguration.getChunkVectorConfig();
+                                 @Named("chunkFutureService") ChunkServiceGrpc.ChunkServiceFutureStub chunkServiceFutureStub,
+                                 @Named("vectorEmbeddingFutureService") EmbeddingServiceGrpc.EmbeddingServiceFutureStub embeddingServiceFutureStub,
+                                 DestinationWriter destinationWriter,
+                                 IndexingTracker indexingTracker,
+                                 DownstreamLimiter downstreamLimiter,
+                                 EmbeddingCache embeddingCache,
+                                 UnchangedDocumentFilter unchangedDocumentFilter) {
+        this.chunkVectorConfig = indexerConfiguration.getChunkVectorConfig() == null ? Map.of() : indexerConfiguration.getChunkVectorConfig();
         this.chunkServiceBlockingStub = chunkServiceBlockingStub;
         this.embeddingServiceBlockingStub = embeddingServiceBlockingStub;
-        this.vectorSolrClient = solrClientService.vectorConcurrentClient();
+        this.chunkServiceFutureStub = chunkServiceFutureStub;
+        this.embeddingServiceFutureStub = embeddingServiceFutureStub;
+        this.destinationWriter = destinationWriter;
         this.indexingTracker = indexingTracker;
-        Integer vectorBatchSize = indexerConfiguration.getIndexerConfigurationProperties().getVectorBatchSize();
+        this.downstreamLimiter = downstreamLimiter;
+        this.embeddingCache = embeddingCache;
+        this.unchangedDocumentFilter = unchangedDocumentFilter;
+        IndexerConfigurationProperties properties = indexerConfiguration.getIndexerConfigurationProperties();
+        Integer vectorBatchSize = properties.getVectorBatchSize();
         if (vectorBatchSize == null || vectorBatchSize < 1) {
             this.batchSize = DEFAULT_BATCH_SIZE;
         } else {
             this.batchSize = vectorBatchSize;
         }
+        long lingerMillis = properties.getEmbeddingBatchLingerMillis() == null || properties.getEmbeddingBatchLingerMillis() < 0 ?
+                DEFAULT_EMBEDDING_BATCH_LINGER_MILLIS : properties.getEmbeddingBatchLingerMillis();
+        // chunks of every document share the batches, so short fields no longer send tiny requests
+        if (Boolean.TRUE.equals(properties.getAsyncListeners())) {
+            this.embeddingBatcher = EmbeddingBatcher.async("chunk-embedding", this::getEmbeddingsVectorsReplyAsync, this.batchSize, lingerMillis);
+        } else {
+            this.embeddingBatcher = new EmbeddingBatcher("chunk-embedding", this::getEmbeddingsVectorsReply, this.batchSize, lingerMillis);
+        }
         log.info("Batch size for the chunk listener is set to {}", this.batchSize);
     }
 
@@ -58,7 +88,47 @@ public class ChunkDocumentListener implements DocumentListener {
 
         String origDocId = document.getFieldValue(SchemaConstants.ID).toString();
 
-        chunkVectorConfig.forEach((fieldName, vectorConfig) -> processField(document, fieldName, vectorConfig, origDocId));
+        List<CompletableFuture<Void>> fields = new ArrayList<>(chunkVectorConfig.size());
+        chunkVectorConfig.forEach((fieldName, vectorConfig) -> fields.add(processField(document, fieldName, vectorConfig, origDocId)));
+        countDocument(document, origDocId, fields);
+    }
+
+    /**
+     * Chunks and embeds every field without holding the calling thread. The chunk documents of a field go into the
+     * update batches once the last embedding batch of the field is back, and the document is counted once every
+     * field was written.
+     */
+    @Override
+    public CompletableFuture<Void> processDocumentAsync(SolrInputDocument document) {
+        log.info("Processing side vector for document with ID: {}", document.getFieldValue(SchemaConstants.ID));
+
+        assertRequiredFieldsPresent(document);
+
+        String origDocId = document.getFieldValue(SchemaConstants.ID).toString();
+
+        List<CompletableFuture<Void>> fields = new ArrayList<>(chunkVectorConfig.size());
+        chunkVectorConfig.forEach((fieldName, vectorConfig) -> fields.add(processFieldAsync(document, fieldName, vectorConfig, origDocId)));
+        return countDocument(document, origDocId, fields);
+    }
+
+    /**
+     * Counts the document once for the vector task: processed when the chunks of every field were written, failed
+     * otherwise. The vector task expects one count per document found, as do the unchanged documents and the crawl
+     * checkpoints, so a document counts once however many chunk fields it has, and also when it has none.
+     */
+    private CompletableFuture<Void> countDocument(SolrInputDocument document, String origDocId, List<CompletableFuture<Void>> fields) {
+        return CompletableFuture.allOf(fields.toArray(new CompletableFuture<?>[0]))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        log.error("Could not process document with ID {} due to error: {}", origDocId, error.getMessage());
+                        unchangedDocumentFilter.vectorWritten(document, false);
+                        indexingTracker.vectorDocumentFailed();
+                    } else {
+                        unchangedDocumentFilter.vectorWritten(document, true);
+                        indexingTracker.vectorDocumentProcessed();
+                    }
+                    return null;
+                });
     }
 
     private void assertRequiredFieldsPresent(SolrInputDocument document) {
@@ -70,75 +140,125 @@ public class ChunkDocumentListener implements DocumentListener {
         }
     }
 
-    private void processField(SolrInputDocument document, String fieldName, VectorConfig vectorConfig, String origDocId) {
+    /**
+     * @return completed once solr acknowledged the chunks of the field, or failed
+     */
+    private CompletableFuture<Void> processField(SolrInputDocument document, String fieldName, VectorConfig vectorConfig, String origDocId) {
         Object fieldValue = document.getFieldValue(fieldName);
 
         if (fieldValue == null) {
             log.warn("Field '{}' is null for document with ID '{}'. Skipping processing for this field.", fieldName, origDocId);
-            indexingTracker.vectorDocumentProcessed();
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         String fieldData = fieldValue.toString();
         String crawlId = document.getFieldValue(SchemaConstants.CRAWL_ID).toString();
         Object dateCreated = document.getFieldValue(SchemaConstants.CRAWL_DATE);
 
-        processChunkField(fieldName, vectorConfig, fieldData, origDocId, crawlId, dateCreated);
+        try {
+            return processChunkField(fieldName, vectorConfig, fieldData, origDocId, crawlId, dateCreated);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
-    private void processChunkField(String fieldName, VectorConfig vectorConfig, String fieldData, String origDocId, String crawlId, Object dateCreated) {
+    private CompletableFuture<Void> processChunkField(String fieldName, VectorConfig vectorConfig, String fieldData, String origDocId, String crawlId, Object dateCreated) {
         ChunkRequest request = createChunkRequest(fieldData, vectorConfig);
         ChunkReply chunkerReply = getChunks(request);
 
         log.info("There are {} chunks in document with ID {}", chunkerReply.getChunksCount(), origDocId);
 
         List<String> chunksList = chunkerReply.getChunksList();
-        boolean hasError = false;
-        for (int i = 0; i < chunksList.size(); i += batchSize) {
-            int endIndex = Math.min(i + batchSize, chunksList.size());
-            List<String> chunkBatch = chunksList.subList(i, endIndex);
-
-            EmbeddingsVectorsReply batchReply = getEmbeddingsVectorsReply(chunkBatch);
-            List<SolrInputDocument> chunkDocuments = createChunkDocuments(fieldName, batchReply.getEmbeddingsList(), chunkBatch, i, origDocId, crawlId, dateCreated, vectorConfig.getChunkFieldVectorName());
-
-            try {
-                log.info("Adding chunks for parent id {} with {} documents to the {} collection with type VECTOR and document chunk batch {}", origDocId, chunkDocuments.size(), vectorConfig.getDestinationCollection(), i);
-                vectorSolrClient.add(vectorConfig.getDestinationCollection(), chunkDocuments);
-                log.info("Addded {} documents to the {} collection with type VECTOR and document chunk batch {}", chunkDocuments.size(), vectorConfig.getDestinationCollection(), i);
-            } catch (SolrServerException | IOException e) {
-                log.error("Could not process document with ID {} due to error: {}", origDocId, e.getMessage());
-                hasError = true;
-            }
+        List<CompletableFuture<float[]>> embeddings = embedChunks(chunksList);
+        List<SolrInputDocument> chunkDocuments = createChunkDocuments(fieldName, embeddings, chunksList, origDocId, crawlId, dateCreated, vectorConfig.getChunkFieldVectorName());
+        log.info("Adding chunks for parent id {} with {} documents to the {} collection with type VECTOR", origDocId, chunkDocuments.size(), vectorConfig.getDestinationCollection());
+        // the rail moves on while the update batches fill up; the document is counted once solr acknowledged its chunks
+        return destinationWriter.addAll(vectorConfig.getDestinationCollection(), chunkDocuments)
+                .thenRun(() -> log.info("Addded {} documents to the {} collection with type VECTOR", chunkDocuments.size(), vectorConfig.getDestinationCollection()));
+    }
+
+    private CompletableFuture<Void> processFieldAsync(SolrInputDocument document, String fieldName, VectorConfig vectorConfig, String origDocId) {
+        Object fieldValue = document.getFieldValue(fieldName);
+
+        if (fieldValue == null) {
+            log.warn("Field '{}' is null for document with ID '{}'. Skipping processing for this field.", fieldName, origDocId);
+            return CompletableFuture.completedFuture(null);
         }
-        if (hasError) {
-            indexingTracker.vectorDocumentFailed();
-        } else {
-            indexingTracker.vectorDocumentProcessed();
+
+        String crawlId = document.getFieldValue(SchemaConstants.CRAWL_ID).toString();
+        Object dateCreated = document.getFieldValue(SchemaConstants.CRAWL_DATE);
+        ChunkRequest request = createChunkRequest(fieldValue.toString(), vectorConfig);
+
+        return GrpcFutures.toCompletableFuture(chunkServiceFutureStub.chunk(request))
+                .thenCompose(chunkerReply -> {
+                    log.info("There are {} chunks in document with ID {}", chunkerReply.getChunksCount(), origDocId);
+                    List<String> chunksList = chunkerReply.getChunksList();
+                    List<CompletableFuture<float[]>> embeddings = embedChunks(chunksList);
+                    return CompletableFuture.allOf(embeddings.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(ignored -> createChunkDocuments(fieldName, embeddings, chunksList, origDocId, crawlId, dateCreated, vectorConfig.getChunkFieldVectorName()));
+                })
+                .thenCompose(chunkDocuments -> {
+                    log.info("Adding chunks for parent id {} with {} documents to the {} collection with type VECTOR", origDocId, chunkDocuments.size(), vectorConfig.getDestinationCollection());
+                    return destinationWriter.addAll(vectorConfig.getDestinationCollection(), chunkDocuments);
+                });
+    }
+
+    /**
+     * Chunks that are in the embedding cache, such as the overlaps of chunks seen before, are not sent again.
+     */
+    private List<CompletableFuture<float[]>> embedChunks(List<String> chunksList) {
+        List<CompletableFuture<float[]>> embeddings = new ArrayList<>(chunksList.size());
+        for (String chunk : chunksList) {
+            embeddings.add(embeddingCache.embed(chunk, embeddingBatcher::embed));
         }
+        return embeddings;
     }
 
-    private List<SolrInputDocument> createChunkDocuments(String fieldName, List<EmbeddingsVectorReply> embeddingsList, List<String> chunksList, int chunkBatch, String origDocId, String crawlId, Object dateCreated, String chunkVectorFieldName) {
+    /**
+     * Waits for the vector of every chunk and creates the chunk documents. The chunk number is the position of the
+     * chunk in the field, whichever embedding batch its vector came back in.
+     */
+    private List<SolrInputDocument> createChunkDocuments(String fieldName, List<CompletableFuture<float[]>> embeddings, List<String> chunksList, String origDocId, String crawlId, Object dateCreated, String chunkVectorFieldName) {
         List<SolrInputDocument> chunkDocuments = new ArrayList<>(chunksList.size());
 
         for (int i = 0; i < chunksList.size(); i++) {
-            SolrInputDocument docToAdd = createSolrInputDocument(origDocId, chunksList.get(i), i * (chunkBatch + 1), embeddingsList.get(i).getEmbeddingsList(), fieldName, crawlId, dateCreated, chunkVectorFieldName);
+            SolrInputDocument docToAdd = createSolrInputDocument(origDocId, chunksList.get(i), i, embeddings.get(i).join(), fieldName, crawlId, dateCreated, chunkVectorFieldName);
             chunkDocuments.add(docToAdd);
         }
 
         return chunkDocuments;
     }
 
+    public Map<String, Object> getEmbeddingMetrics() {
+        return embeddingBatcher.getMetrics();
+    }
+
     @Retryable(attempts = "3", delay = "1s", multiplier = "2.0", includes = {io.grpc.StatusRuntimeException.class})
     protected ChunkReply getChunks(ChunkRequest request) {
-        return chunkServiceBlockingStub.chunk(request);
+        downstreamLimiter.acquire(DownstreamLimiter.Downstream.CHUNKER);
+        try {
+            return chunkServiceBlockingStub.chunk(request);
+        } finally {
+            downstreamLimiter.release(DownstreamLimiter.Downstream.CHUNKER);
+        }
     }
 
     @Retryable(attempts = "3", delay = "1s", multiplier = "2.0", includes = {io.grpc.StatusRuntimeException.class})
     protected EmbeddingsVectorsReply getEmbeddingsVectorsReply(List<String> fieldDataList) {
-        return embeddingServiceBlockingStub.createEmbeddingsVectors(EmbeddingsVectorsRequest.newBuilder().addAllText(fieldDataList).build());
+        downstreamLimiter.acquire(DownstreamLimiter.Downstream.EMBEDDING);
+        try {
+            return embeddingServiceBlockingStub.createEmbeddingsVectors(EmbeddingsVectorsRequest.newBuilder().addAllText(fieldDataList).build());
+        } finally {
+            downstreamLimiter.release(DownstreamLimiter.Downstream.EMBEDDING);
+        }
+    }
+
+    protected CompletableFuture<EmbeddingsVectorsReply> getEmbeddingsVectorsReplyAsync(List<String> fieldDataList) {
+        return GrpcFutures.toCompletableFuture(
+                embeddingServiceFutureStub.createEmbeddingsVectors(EmbeddingsVectorsRequest.newBuilder().addAllText(fieldDataList).build()));
     }
 
-    public static SolrInputDocument createSolrInputDocument(String origDocId, String chunk, int chunkNumber, Collection<Float> vector, String parentFieldName, String crawlId, Object dateCreated, String vectorFieldName) {
+    public static SolrInputDocument createSolrInputDocument(String origDocId, String chunk, int chunkNumber, float[] vector, String parentFieldName, String crawlId, Object dateCreated, String vectorFieldName) {
         String docId = origDocId + "#" + StringUtils.leftPad(String.valueOf(chunkNumber), 7, "0");
 
         SolrInputDocument document = new SolrInputDocument();
@@ -147,7 +267,7 @@ public class ChunkDocumentListener implements DocumentListener {
         document.addField("parent_id", origDocId);
         document.addField("chunk", chunk);
         document.addField("chunk_number", chunkNumber);
-        document.addField(vectorFieldName, vector);
+        document.addField(vectorFieldName, new DenseVectorValue(vector));
         document.addField("parent_field_name", parentFieldName);
         document.addField(SchemaConstants.CRAWL_ID, crawlId);
         document.addField(SchemaConstants.CRAWL_DATE, dateCreated);
@@ -2,6 +2,22 @@ package com.krickert.search.indexer.solr.vector.event;
 
 import org.apache.solr.common.SolrInputDocument;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface DocumentListener {
     void processDocument(SolrInputDocument document);
-}
\ No newline at end of file
+
+    /**
+     * Processes the document without holding the calling thread while the remote services work. The returned future
+     * completes once the document has been handed to solr or counted as failed. Listeners that have no non-blocking
+     * path fall back to processing the document on the calling thread.
+     */
+    default CompletableFuture<Void> processDocumentAsync(SolrInputDocument document) {
+        try {
+            processDocument(document);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
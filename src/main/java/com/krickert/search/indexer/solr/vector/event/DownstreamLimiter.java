@@ -0,0 +1,85 @@
+package com.krickert.search.indexer.solr.vector.event;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of blocking calls the listeners make to each remote service at once. With the thread-pool
+ * execution mode there can be far more listener threads than a service can take, so the threads queue here
+ * instead of piling requests onto the embedding service, the chunker or solr.
+ * <br>
+ * A service without a positive limit is not capped.
+ */
+@Singleton
+public class DownstreamLimiter {
+    private static final Logger log = LoggerFactory.getLogger(DownstreamLimiter.class);
+
+    public enum Downstream {
+        EMBEDDING, CHUNKER, SOLR
+    }
+
+    private final Map<Downstream, Semaphore> permits = new EnumMap<>(Downstream.class);
+    private final Map<Downstream, Integer> limits = new EnumMap<>(Downstream.class);
+
+    public DownstreamLimiter(IndexerConfigurationProperties properties) {
+        addLimit(Downstream.EMBEDDING, properties.getEmbeddingMaxConcurrency());
+        addLimit(Downstream.CHUNKER, properties.getChunkerMaxConcurrency());
+        addLimit(Downstream.SOLR, properties.getSolrMaxConcurrency());
+    }
+
+    private void addLimit(Downstream downstream, Integer limit) {
+        if (limit == null || limit < 1) {
+            log.info("Calls to {} are not limited", downstream);
+            return;
+        }
+        log.info("Calls to {} are limited to {} at once", downstream, limit);
+        permits.put(downstream, new Semaphore(limit, true));
+        limits.put(downstream, limit);
+    }
+
+    /**
+     * Waits for a permit to call the service. Every acquire must be followed by a {@link #release} in a finally block.
+     */
+    public void acquire(Downstream downstream) {
+        Semaphore semaphore = permits.get(downstream);
+        if (semaphore == null) {
+            return;
+        }
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to call " + downstream, e);
+        }
+    }
+
+    public void release(Downstream downstream) {
+        Semaphore semaphore = permits.get(downstream);
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * @return the limit, the calls in flight and the threads waiting for each limited service
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        permits.forEach((downstream, semaphore) -> {
+            Map<String, Object> downstreamMetrics = new LinkedHashMap<>();
+            int limit = limits.get(downstream);
+            downstreamMetrics.put("limit", limit);
+            downstreamMetrics.put("inFlight", limit - semaphore.availablePermits());
+            downstreamMetrics.put("waiting", semaphore.getQueueLength());
+            metrics.put(downstream.name().toLowerCase(), downstreamMetrics);
+        });
+        return metrics;
+    }
+}
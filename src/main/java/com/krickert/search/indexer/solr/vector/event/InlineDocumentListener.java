@@ -1,44 +1,77 @@
 package com.krickert.search.indexer.solr.vector.event;
 
 import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
 import com.krickert.search.indexer.config.VectorConfig;
-import com.krickert.search.indexer.solr.client.SolrClientService;
+import com.krickert.search.indexer.embedding.EmbeddingBatcher;
+import com.krickert.search.indexer.embedding.EmbeddingCache;
+import com.krickert.search.indexer.grpc.GrpcFutures;
+import com.krickert.search.indexer.solr.client.DestinationWriter;
+import com.krickert.search.indexer.solr.client.UnchangedDocumentFilter;
+import com.krickert.search.indexer.solr.vector.DenseVectorValue;
 import com.krickert.search.indexer.tracker.IndexingTracker;
 import com.krickert.search.service.EmbeddingServiceGrpc;
-import com.krickert.search.service.EmbeddingsVectorReply;
-import com.krickert.search.service.EmbeddingsVectorRequest;
+import com.krickert.search.service.EmbeddingsVectorsReply;
+import com.krickert.search.service.EmbeddingsVectorsRequest;
 import io.micronaut.retry.annotation.Retryable;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.solr.client.solrj.impl.ConcurrentUpdateHttp2SolrClient;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Singleton
 public class InlineDocumentListener implements DocumentListener {
 
     private static final Logger log = LoggerFactory.getLogger(InlineDocumentListener.class);
+    private static final int DEFAULT_EMBEDDING_BATCH_SIZE = 32;
+    private static final long DEFAULT_EMBEDDING_BATCH_LINGER_MILLIS = 10;
     private final Map<String, VectorConfig> inlineVectorConfig;
     private final EmbeddingServiceGrpc.EmbeddingServiceBlockingStub embeddingServiceBlockingStub;
-    private final ConcurrentUpdateHttp2SolrClient inlineSolrClient;
+    private final EmbeddingServiceGrpc.EmbeddingServiceFutureStub embeddingServiceFutureStub;
+    private final DestinationWriter destinationWriter;
     private final String destinationCollectionName;
     private final IndexingTracker indexingTracker;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final DownstreamLimiter downstreamLimiter;
+    private final EmbeddingCache embeddingCache;
+    private final UnchangedDocumentFilter unchangedDocumentFilter;
 
-    public InlineDocumentListener(SolrClientService solrClientService,
+    public InlineDocumentListener(DestinationWriter destinationWriter,
                                   IndexerConfiguration indexerConfiguration,
                                   @Named("inlineEmbeddingService") EmbeddingServiceGrpc.EmbeddingServiceBlockingStub inlineEmbeddingService,
-                                  IndexingTracker indexingTracker) {
+                                  @Named("inlineEmbeddingFutureService") EmbeddingServiceGrpc.EmbeddingServiceFutureStub inlineEmbeddingFutureService,
+                                  IndexingTracker indexingTracker,
+                                  DownstreamLimiter downstreamLimiter,
+                                  EmbeddingCache embeddingCache,
+                                  UnchangedDocumentFilter unchangedDocumentFilter) {
 
-        this.inlineSolrClient =  solrClientService.inlineConcurrentClient();
+        this.destinationWriter = destinationWriter;
         this.inlineVectorConfig = indexerConfiguration.getInlineVectorConfig();
         this.embeddingServiceBlockingStub = inlineEmbeddingService;
+        this.embeddingServiceFutureStub = inlineEmbeddingFutureService;
         this.destinationCollectionName = indexerConfiguration.getDestinationSolrConfiguration().getCollection();
         this.indexingTracker = indexingTracker;
+        this.downstreamLimiter = downstreamLimiter;
+        this.embeddingCache = embeddingCache;
+        this.unchangedDocumentFilter = unchangedDocumentFilter;
+        IndexerConfigurationProperties properties = indexerConfiguration.getIndexerConfigurationProperties();
+        int embeddingBatchSize = properties.getEmbeddingBatchSize() == null || properties.getEmbeddingBatchSize() < 1 ?
+                DEFAULT_EMBEDDING_BATCH_SIZE : properties.getEmbeddingBatchSize();
+        long lingerMillis = properties.getEmbeddingBatchLingerMillis() == null || properties.getEmbeddingBatchLingerMillis() < 0 ?
+                DEFAULT_EMBEDDING_BATCH_LINGER_MILLIS : properties.getEmbeddingBatchLingerMillis();
+        if (Boolean.TRUE.equals(properties.getAsyncListeners())) {
+            this.embeddingBatcher = EmbeddingBatcher.async("inline-embedding", this::getEmbeddingsVectorsReplyAsync, embeddingBatchSize, lingerMillis);
+        } else {
+            this.embeddingBatcher = new EmbeddingBatcher("inline-embedding", this::getEmbeddingsVectorsReply, embeddingBatchSize, lingerMillis);
+        }
     }
 
     @Override
@@ -46,32 +79,90 @@ public class InlineDocumentListener implements DocumentListener {
         String origDocId = document.getFieldValue("id").toString();
         log.info("Processing inline vector for document with ID: {}", origDocId);
         try {
-            inlineVectorConfig.forEach((fieldName, vectorConfig) -> {
-                String fieldData = Optional.ofNullable(document.getFieldValue(fieldName))
-                        .map(Object::toString)
-                        .orElse(null);
-                processInlineDocumentField(document, fieldName, fieldData, origDocId);
-            });
+            // every field goes into the shared batch before waiting on any of them, so the fields of
+            // this document and of the documents on the other rails can share an embedding request
+            Map<String, CompletableFuture<float[]>> embeddings = queueEmbeddings(document, origDocId);
+            addEmbeddings(document, embeddings);
         } catch (RuntimeException e) {
             log.error("could not process document with id {} due to error: {}", origDocId, e.getMessage());
+            unchangedDocumentFilter.mainWritten(document, false);
             indexingTracker.documentFailed();
             return;
         }
+        // the rail moves on while the update batch fills up, and only waits when it fills a batch while
+        // solr-max-concurrency batches are unanswered; the document is counted once solr acknowledged it
+        destinationWriter.add(destinationCollectionName, document).whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("could not process document with id {} due to error: {}", origDocId, error.getMessage());
+                unchangedDocumentFilter.mainWritten(document, false);
+                indexingTracker.documentFailed();
+            } else {
+                unchangedDocumentFilter.mainWritten(document, true);
+                indexingTracker.documentProcessed();
+            }
+        });
+    }
+
+    /**
+     * Queues the fields for embedding and adds the document to the update batch once every vector is back. No thread
+     * waits in between: the document is counted when its update batch completes.
+     */
+    @Override
+    public CompletableFuture<Void> processDocumentAsync(SolrInputDocument document) {
+        String origDocId = document.getFieldValue("id").toString();
+        log.info("Processing inline vector for document with ID: {}", origDocId);
+        Map<String, CompletableFuture<float[]>> embeddings;
         try {
-            inlineSolrClient.add(destinationCollectionName, document);
-        } catch (Exception e) {
+            embeddings = queueEmbeddings(document, origDocId);
+        } catch (RuntimeException e) {
             log.error("could not process document with id {} due to error: {}", origDocId, e.getMessage());
+            unchangedDocumentFilter.mainWritten(document, false);
             indexingTracker.documentFailed();
-            return;
+            return CompletableFuture.completedFuture(null);
         }
-        indexingTracker.documentProcessed();
+        return CompletableFuture.allOf(embeddings.values().toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> {
+                    addEmbeddings(document, embeddings);
+                    return destinationWriter.add(destinationCollectionName, document);
+                })
+                .handle((result, error) -> {
+                    if (error != null) {
+                        log.error("could not process document with id {} due to error: {}", origDocId, error.getMessage());
+                        unchangedDocumentFilter.mainWritten(document, false);
+                        indexingTracker.documentFailed();
+                    } else {
+                        unchangedDocumentFilter.mainWritten(document, true);
+                        indexingTracker.documentProcessed();
+                    }
+                    return null;
+                });
     }
 
-    private void processInlineDocumentField(SolrInputDocument solrInputDocument, String fieldName, String fieldData, String origDocId) {
+    private Map<String, CompletableFuture<float[]>> queueEmbeddings(SolrInputDocument document, String origDocId) {
+        Map<String, CompletableFuture<float[]>> embeddings = new LinkedHashMap<>();
+        inlineVectorConfig.forEach((fieldName, vectorConfig) -> {
+            String fieldData = Optional.ofNullable(document.getFieldValue(fieldName))
+                    .map(Object::toString)
+                    .orElse(null);
+            CompletableFuture<float[]> embedding = processInlineDocumentField(fieldName, fieldData, origDocId);
+            if (embedding != null) {
+                embeddings.put(fieldName, embedding);
+            }
+        });
+        return embeddings;
+    }
+
+    private void addEmbeddings(SolrInputDocument document, Map<String, CompletableFuture<float[]>> embeddings) {
+        // Add the embeddings to the Solr input document
+        embeddings.forEach((fieldName, embedding) ->
+                document.setField(inlineVectorConfig.get(fieldName).getChunkFieldVectorName(), new DenseVectorValue(embedding.join())));
+    }
+
+    private CompletableFuture<float[]> processInlineDocumentField(String fieldName, String fieldData, String origDocId) {
         // If the field data is null, log a warning and return early
         if (fieldData == null) {
             log.warn("Field data for {} is null in document with id {}", fieldName, origDocId);
-            return;
+            return null;
         }
 
         // Retrieve the vector configuration for the given field name
@@ -80,14 +171,12 @@ public class InlineDocumentListener implements DocumentListener {
         // Determine the final field data, possibly truncated if it exceeds the maximum allowed characters
         String finalFieldData = getFinalFieldData(fieldData, vectorConfig);
 
-        // Get the name of the vector field from the configuration
-        String vectorFieldName = vectorConfig.getChunkFieldVectorName();
-
-        // Generate embeddings vector reply based on the processed field data
-        EmbeddingsVectorReply embeddingsVectorReply = getEmbeddingsVectorReply(finalFieldData);
+        // Use the cached vector, or queue the processed field data for the next embedding batch
+        return embeddingCache.embed(finalFieldData, embeddingBatcher::embed);
+    }
 
-        // Add the embeddings to the Solr input document
-        solrInputDocument.addField(vectorFieldName, embeddingsVectorReply.getEmbeddingsList());
+    public Map<String, Object> getEmbeddingMetrics() {
+        return embeddingBatcher.getMetrics();
     }
 
     private String getFinalFieldData(String fieldData, VectorConfig vectorConfig) {
@@ -99,8 +188,18 @@ public class InlineDocumentListener implements DocumentListener {
     }
 
     @Retryable(attempts = "3", delay = "1s", multiplier = "2.0", includes = {io.grpc.StatusRuntimeException.class})
-    protected EmbeddingsVectorReply getEmbeddingsVectorReply(String fieldData) {
-        return embeddingServiceBlockingStub.createEmbeddingsVector(EmbeddingsVectorRequest.newBuilder().setText(fieldData).build());
+    protected EmbeddingsVectorsReply getEmbeddingsVectorsReply(List<String> fieldDataList) {
+        downstreamLimiter.acquire(DownstreamLimiter.Downstream.EMBEDDING);
+        try {
+            return embeddingServiceBlockingStub.createEmbeddingsVectors(EmbeddingsVectorsRequest.newBuilder().addAllText(fieldDataList).build());
+        } finally {
+            downstreamLimiter.release(DownstreamLimiter.Downstream.EMBEDDING);
+        }
+    }
+
+    protected CompletableFuture<EmbeddingsVectorsReply> getEmbeddingsVectorsReplyAsync(List<String> fieldDataList) {
+        return GrpcFutures.toCompletableFuture(
+                embeddingServiceFutureStub.createEmbeddingsVectors(EmbeddingsVectorsRequest.newBuilder().addAllText(fieldDataList).build()));
     }
 
-}
\ No newline at end of file
+}
@@ -1,32 +1,34 @@
 package com.krickert.search.indexer.solr.vector.event;
 
-import org.apache.solr.common.SolrInputDocument;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.tracker.IndexingTracker;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
-import org.slf4j.Logger;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import org.apache.solr.common.SolrInputDocument;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 
 @Singleton
-public class SolrSourceDocumentPublisher implements SourceSolrDocumentListener {
+public class SolrSourceDocumentPublisher extends BoundedDocumentPublisher {
 
-    Logger log = org.slf4j.LoggerFactory.getLogger(SolrSourceDocumentPublisher.class);
-    private final Sinks.Many<SolrInputDocument> sink;
+    private final IndexingTracker indexingTracker;
 
-    public SolrSourceDocumentPublisher() {
-        this.sink = Sinks.many().unicast().onBackpressureBuffer();
+    @Inject
+    public SolrSourceDocumentPublisher(IndexerConfiguration indexerConfiguration,
+                                       IndexingTracker indexingTracker) {
+        this(indexerConfiguration.getIndexerConfigurationProperties(),
+                indexerConfiguration.getSourceSolrConfiguration().getUniqueKey(), indexingTracker);
     }
 
-    @Override
-    public void publishDocument(SolrInputDocument document) {
-        Sinks.EmitResult result = this.sink.tryEmitNext(document);
-        if (result.isFailure()) {
-            log.warn("Failed to publish document: {}", document.getFieldValue("id"));
-        }
+    SolrSourceDocumentPublisher(IndexerConfigurationProperties indexerConfigurationProperties, String uniqueKey, IndexingTracker indexingTracker) {
+        super(indexerConfigurationProperties, uniqueKey);
+        this.indexingTracker = checkNotNull(indexingTracker);
     }
 
     @Override
-    public Flux<SolrInputDocument> getDocumentFlux() {
-        return sink.asFlux();
+    protected void documentRejected(SolrInputDocument document) {
+        indexingTracker.documentFailed();
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,27 @@
 package com.krickert.search.indexer.solr.vector.event;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.util.EnumSettings;
 import jakarta.inject.Singleton;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * The SubscriptionManager class is responsible for managing subscriptions to document publishers
  * and delegating the processing of documents to respective document listeners.
@@ -15,6 +30,18 @@ import reactor.core.scheduler.Schedulers;
  * <br>
  * It includes methods to subscribe listeners to publishers and process the documents
  * with the listeners in a parallel, non-blocking manner using reactive programming paradigms.
+ * With async-listeners turned on, the documents are handed to {@link DocumentListener#processDocumentAsync} and
+ * up to max-in-flight-documents of them are worked on at once, without a thread for each one.
+ * With the thread-pool execution mode, each listener gets its own pool of listener-threads threads and one rail per
+ * thread, so the listeners stay plain blocking code while far more documents than cores wait on the remote services
+ * at once. The {@link DownstreamLimiter} keeps those threads from overrunning any one service.
+ * <br>
+ * The rails, the prefetch and the threads can be set for each listener, so the chunk listener, which waits on the
+ * chunker and the embedding service, can be given more concurrency than the inline listener. The queue depth of
+ * each listener is reported by {@link #getMetrics()}.
+ * <br>
+ * The start time of every document a listener is working on is kept, so a hang shows up as a document that has
+ * been active for too long rather than as a pause in the counts. See {@link #getOldestActiveAge()}.
  * <br>
  * @see SolrSourceDocumentPublisher
  * @see InlineDocumentListener
@@ -24,37 +51,167 @@ import reactor.core.scheduler.Schedulers;
 @Singleton
 public class SubscriptionManager {
     private static final Logger log = LoggerFactory.getLogger(SubscriptionManager.class);
+    private static final int DEFAULT_MAX_IN_FLIGHT_DOCUMENTS = 1000;
+    private static final int DEFAULT_LISTENER_THREADS = 256;
+
+    enum ExecutionMode {
+        PARALLEL, THREAD_POOL;
+
+        /**
+         * @return the mode of the listener-execution-mode setting, parallel when it is not set
+         * @throws IllegalArgumentException naming the allowed values when the setting is not one of them
+         */
+        static ExecutionMode fromSetting(String setting) {
+            return EnumSettings.parse(ExecutionMode.class, "listener-execution-mode", setting, PARALLEL);
+        }
+    }
 
     private final SolrSourceDocumentPublisher solrSourceDocumentPublisher;
     private final InlineDocumentListener inlineDocumentListener;
     private final SolrChunkDocumentPublisher solrChunkDocumentPublisher;
     private final ChunkDocumentListener chunkDocumentListener;
+    private final boolean asyncListeners;
+    private final int maxInFlightDocuments;
+    private final ExecutionMode executionMode;
+    private final int listenerThreads;
+    private final ListenerStage inlineStage;
+    private final ListenerStage chunkStage;
 
     public SubscriptionManager(SolrSourceDocumentPublisher solrSourceDocumentPublisher,
                                SolrChunkDocumentPublisher solrChunkDocumentPublisher,
                                InlineDocumentListener inlineDocumentListener,
-                               ChunkDocumentListener chunkDocumentListener) {
+                               ChunkDocumentListener chunkDocumentListener,
+                               IndexerConfiguration indexerConfiguration) {
         this.solrSourceDocumentPublisher = solrSourceDocumentPublisher;
         this.solrChunkDocumentPublisher = solrChunkDocumentPublisher;
         this.inlineDocumentListener = inlineDocumentListener;
         this.chunkDocumentListener = chunkDocumentListener;
+        IndexerConfigurationProperties properties = indexerConfiguration.getIndexerConfigurationProperties();
+        this.asyncListeners = Boolean.TRUE.equals(properties.getAsyncListeners());
+        this.maxInFlightDocuments = properties.getMaxInFlightDocuments() == null || properties.getMaxInFlightDocuments() < 1 ?
+                DEFAULT_MAX_IN_FLIGHT_DOCUMENTS : properties.getMaxInFlightDocuments();
+        this.executionMode = ExecutionMode.fromSetting(properties.getListenerExecutionMode());
+        this.listenerThreads = properties.getListenerThreads() == null || properties.getListenerThreads() < 1 ?
+                DEFAULT_LISTENER_THREADS : properties.getListenerThreads();
+        this.inlineStage = createStage("inline-listener", properties.getInlineListenerRails(),
+                properties.getInlineListenerPrefetch(), properties.getInlineListenerThreads(), executionMode, listenerThreads);
+        this.chunkStage = createStage("chunk-listener", properties.getChunkListenerRails(),
+                properties.getChunkListenerPrefetch(), properties.getChunkListenerThreads(), executionMode, listenerThreads);
         subscribeListeners();
     }
 
     private void subscribeListeners() {
-        subscribeToPublisher(solrSourceDocumentPublisher.getDocumentFlux(), inlineDocumentListener);
-        subscribeToPublisher(solrChunkDocumentPublisher.getDocumentFlux(), chunkDocumentListener);
+        subscribeToPublisher(solrSourceDocumentPublisher.getDocumentFlux(), inlineDocumentListener, inlineStage);
+        subscribeToPublisher(solrChunkDocumentPublisher.getDocumentFlux(), chunkDocumentListener, chunkStage);
+    }
+
+    /**
+     * Sizes a listener from its own settings. Without them, a thread pool listener gets listenerThreads threads and
+     * one rail per thread, and a parallel listener one rail per core on the shared scheduler, each with a prefetch
+     * of 1.
+     */
+    static ListenerStage createStage(String name, Integer rails, Integer prefetch, Integer threads,
+                                     ExecutionMode executionMode, int listenerThreads) {
+        int stageThreads;
+        if (threads != null && threads > 0) {
+            stageThreads = threads;
+        } else if (executionMode == ExecutionMode.THREAD_POOL) {
+            stageThreads = listenerThreads;
+        } else {
+            stageThreads = 0;
+        }
+        int stageRails;
+        if (rails != null && rails > 0) {
+            stageRails = rails;
+        } else if (stageThreads > 0) {
+            stageRails = stageThreads;
+        } else {
+            stageRails = Runtime.getRuntime().availableProcessors();
+        }
+        int stagePrefetch = prefetch == null || prefetch < 1 ? 1 : prefetch;
+        return new ListenerStage(name, stageRails, stagePrefetch, stageThreads);
     }
 
-    private void subscribeToPublisher(Flux<SolrInputDocument> documentFlux, DocumentListener documentListener) {
+    private void subscribeToPublisher(Flux<SolrInputDocument> documentFlux, DocumentListener documentListener, ListenerStage stage) {
+        if (asyncListeners) {
+            subscribeAsync(documentFlux, documentListener, stage);
+            return;
+        }
+        Scheduler scheduler;
+        if (stage.threads > 0) {
+            scheduler = Schedulers.fromExecutorService(Executors.newFixedThreadPool(stage.threads,
+                    new ThreadFactoryBuilder().setNameFormat(stage.name + "-%d").setDaemon(true).build()), stage.name);
+        } else {
+            scheduler = Schedulers.boundedElastic();
+        }
+        log.info("The {} runs {} rails with a prefetch of {} on {}", stage.name, stage.rails, stage.prefetch,
+                stage.threads > 0 ? stage.threads + " dedicated threads" : "the shared elastic scheduler");
+        // with the default prefetch of 1 the rails only request one document at a time, so the documents wait in
+        // the bounded publisher queue, where they are counted, rather than in the rail queues
+        documentFlux
+                .doOnNext(document -> stage.received())
+                .parallel(stage.rails, stage.prefetch)
+                .runOn(scheduler, stage.prefetch)
+                .doOnNext(document -> {
+                    long token = stage.started();
+                    try {
+                        processDocumentWithListener(document, documentListener);
+                    } finally {
+                        stage.finished(token);
+                    }
+                })
+                .doOnError(throwable -> log.error("Error in Flux pipeline: ", throwable))
+                .subscribe();
+    }
+
+    private void subscribeAsync(Flux<SolrInputDocument> documentFlux, DocumentListener documentListener, ListenerStage stage) {
+        log.info("The {} works on up to {} documents at once with a prefetch of {}", stage.name, maxInFlightDocuments, stage.prefetch);
+        // flatMap only requests a new document when one of the in flight documents completes, so the rest still
+        // wait in the bounded publisher queue. The prefetch is how many documents are taken from that queue at a
+        // time: each inner Mono only ever has one value, so it has no use as the prefetch of flatMap itself
         documentFlux
-                .parallel()
-                .runOn(Schedulers.boundedElastic())
-                .doOnNext(document -> processDocumentWithListener(document, documentListener))
+                .limitRate(stage.prefetch)
+                .doOnNext(document -> stage.received())
+                .flatMap(document -> Mono.defer(() -> {
+                    long token = stage.started();
+                    return Mono.fromFuture(() -> processDocumentWithListenerAsync(document, documentListener))
+                            .onErrorResume(throwable -> {
+                                log.error("Error processing document: {}", document.getFieldValue("id"), throwable);
+                                return Mono.empty();
+                            })
+                            .doFinally(signal -> stage.finished(token));
+                }), maxInFlightDocuments)
                 .doOnError(throwable -> log.error("Error in Flux pipeline: ", throwable))
                 .subscribe();
     }
 
+    /**
+     * @return the settings of each listener and how many documents are waiting in its rails and being processed
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("inline", inlineStage.getMetrics());
+        metrics.put("chunk", chunkStage.getMetrics());
+        return metrics;
+    }
+
+    /**
+     * @return how long the listeners have been working on the oldest document they have not finished, or zero
+     * when they are not working on any
+     */
+    public Duration getOldestActiveAge() {
+        long oldestStart = Math.min(inlineStage.oldestStartNanos(), chunkStage.oldestStartNanos());
+        return oldestStart == Long.MAX_VALUE ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldestStart);
+    }
+
+    private CompletableFuture<Void> processDocumentWithListenerAsync(SolrInputDocument document, DocumentListener listener) {
+        try {
+            return listener.processDocumentAsync(document);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     private void processDocumentWithListener(SolrInputDocument document, DocumentListener listener) {
         try {
             listener.processDocument(document);
@@ -62,4 +219,72 @@ public class SubscriptionManager {
             log.error("Error processing document: {}", document.getFieldValue("id"), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The settings of one listener and the documents that have left its publisher but are not done yet.
+     */
+    static class ListenerStage {
+        private final String name;
+        private final int rails;
+        private final int prefetch;
+        private final int threads;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong nextToken = new AtomicLong();
+        private final Map<Long, Long> activeSince = new ConcurrentHashMap<>();
+
+        ListenerStage(String name, int rails, int prefetch, int threads) {
+            this.name = name;
+            this.rails = rails;
+            this.prefetch = prefetch;
+            this.threads = threads;
+        }
+
+        void received() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * @return the token to hand to {@link #finished} once the document is done
+         */
+        long started() {
+            active.incrementAndGet();
+            long token = nextToken.incrementAndGet();
+            activeSince.put(token, System.nanoTime());
+            return token;
+        }
+
+        void finished(long token) {
+            activeSince.remove(token);
+            active.decrementAndGet();
+            inFlight.decrementAndGet();
+            processed.incrementAndGet();
+        }
+
+        Map<String, Object> getMetrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            int activeNow = active.get();
+            metrics.put("rails", rails);
+            metrics.put("prefetch", prefetch);
+            metrics.put("threads", threads);
+            metrics.put("queued", Math.max(0, inFlight.get() - activeNow));
+            metrics.put("active", activeNow);
+            metrics.put("processed", processed.get());
+            long oldestStart = oldestStartNanos();
+            metrics.put("oldestActiveSeconds", oldestStart == Long.MAX_VALUE ? 0 : Duration.ofNanos(System.nanoTime() - oldestStart).toSeconds());
+            return metrics;
+        }
+
+        /**
+         * @return the start time of the oldest active document, or Long.MAX_VALUE when none is active
+         */
+        long oldestStartNanos() {
+            long oldest = Long.MAX_VALUE;
+            for (long startedAt : activeSince.values()) {
+                oldest = Math.min(oldest, startedAt);
+            }
+            return oldest;
+        }
+    }
+}
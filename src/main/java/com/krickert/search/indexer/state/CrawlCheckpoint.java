@@ -0,0 +1,26 @@
+package com.krickert.search.indexer.state;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * The progress of a crawl at a point where every document read so far had been written or had failed.
+ *
+ * @param crawlId           the crawl id the resumed crawl keeps writing
+ * @param modifiedFilter    the modified filter of an incremental crawl, or null for a full crawl
+ * @param crawlStart        when the crawl started, which becomes the high-water mark once it succeeds
+ * @param totalFound        the number of documents the crawl expected when it started
+ * @param partitionCursors  the cursor to continue each partition from, or {@link #DONE} for finished partitions.
+ *                          Partitions that are missing had not been started
+ */
+public record CrawlCheckpoint(String crawlId,
+                              String modifiedFilter,
+                              Instant crawlStart,
+                              long totalFound,
+                              long mainProcessed,
+                              long mainFailed,
+                              long vectorProcessed,
+                              long vectorFailed,
+                              Map<String, String> partitionCursors) {
+    public static final String DONE = "done";
+}
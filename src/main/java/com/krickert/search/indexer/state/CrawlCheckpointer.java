@@ -0,0 +1,155 @@
+package com.krickert.search.indexer.state;
+
+import com.krickert.search.indexer.dto.IndexingStatus;
+import com.krickert.search.indexer.tracker.IndexingTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Saves the progress of one crawl every checkpoint interval, so it can be resumed from the last checkpoint instead
+ * of from the first page.
+ * <br>
+ * The listeners write documents long after the reader published them, so a cursor is only safe to resume from once
+ * every document before it was written. To get there, a checkpoint holds back the partition readers after their
+ * current page and waits until the tracker has counted every published document as processed or failed for the
+ * main task, and for the vector task when chunk fields are configured. The cursors and the counts saved then match
+ * exactly. When the listeners do not catch up within the drain timeout, the checkpoint is skipped and the readers
+ * carry on.
+ * <br>
+ * Only the cursor walk publishes pages, so crawls that read the source with /export or /stream save no checkpoints.
+ */
+public class CrawlCheckpointer {
+    private static final Logger log = LoggerFactory.getLogger(CrawlCheckpointer.class);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+    private static final long DRAIN_CHECK_MILLIS = 100;
+
+    private final CrawlStateStore crawlStateStore;
+    private final IndexingTracker indexingTracker;
+    private final String sourceCollection;
+    private final String crawlId;
+    private final String modifiedFilter;
+    private final Instant crawlStart;
+    private final long totalFound;
+    private final Duration interval;
+    private final boolean awaitVectors;
+    private final Map<String, String> startCursors;
+    private final Map<String, String> cursors = new ConcurrentHashMap<>();
+    private final ReadWriteLock pageLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+    private final AtomicLong published;
+    private volatile Instant lastCheckpoint = Instant.now();
+
+    /**
+     * @param resumeFrom   the checkpoint the crawl continues from, or null for a new crawl
+     * @param interval     the time between checkpoints; zero or negative turns them off
+     * @param awaitVectors whether a checkpoint waits for the vector task too; false when there are no chunk fields,
+     *                     as nothing then writes to a vector collection
+     */
+    public CrawlCheckpointer(CrawlStateStore crawlStateStore, IndexingTracker indexingTracker, String sourceCollection,
+                             String crawlId, String modifiedFilter, Instant crawlStart, long totalFound,
+                             Duration interval, boolean awaitVectors, CrawlCheckpoint resumeFrom) {
+        this.crawlStateStore = checkNotNull(crawlStateStore);
+        this.indexingTracker = checkNotNull(indexingTracker);
+        this.sourceCollection = checkNotNull(sourceCollection);
+        this.crawlId = checkNotNull(crawlId);
+        this.modifiedFilter = modifiedFilter;
+        this.crawlStart = checkNotNull(crawlStart);
+        this.totalFound = totalFound;
+        this.interval = checkNotNull(interval);
+        this.awaitVectors = awaitVectors;
+        this.startCursors = resumeFrom == null ? Map.of() : Map.copyOf(resumeFrom.partitionCursors());
+        this.cursors.putAll(startCursors);
+        this.published = new AtomicLong(resumeFrom == null ? 0 : resumeFrom.mainProcessed() + resumeFrom.mainFailed());
+    }
+
+    /**
+     * @return the cursor to start the partition from: the first page, the checkpointed cursor, or
+     * {@link CrawlCheckpoint#DONE} when the partition was finished before the checkpoint
+     */
+    public String getStartCursor(String partitionName, String firstPageCursor) {
+        return startCursors.getOrDefault(partitionName, firstPageCursor);
+    }
+
+    /**
+     * Publishes a page of the partition and records the cursor to continue the partition after it.
+     *
+     * @param nextCursorMark the cursor of the next page, or null when this was the last page
+     */
+    public void publishPage(String partitionName, int documents, String nextCursorMark, Runnable publish) {
+        pageLock.readLock().lock();
+        try {
+            publish.run();
+            published.addAndGet(documents);
+            cursors.put(partitionName, nextCursorMark == null ? CrawlCheckpoint.DONE : nextCursorMark);
+        } finally {
+            pageLock.readLock().unlock();
+        }
+        if (isEnabled() && Duration.between(lastCheckpoint, Instant.now()).compareTo(interval) >= 0) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Marks a partition without any documents left to publish as finished.
+     */
+    public void partitionDone(String partitionName) {
+        cursors.put(partitionName, CrawlCheckpoint.DONE);
+    }
+
+    private boolean isEnabled() {
+        return !interval.isZero() && !interval.isNegative();
+    }
+
+    private void checkpoint() {
+        if (!checkpointing.compareAndSet(false, true)) {
+            return;
+        }
+        pageLock.writeLock().lock();
+        try {
+            long publishedDocuments = published.get();
+            if (!awaitDrained(publishedDocuments)) {
+                log.warn("The listeners did not finish the {} documents published within {}. Skipping this checkpoint of crawl {}",
+                        publishedDocuments, DRAIN_TIMEOUT, crawlId);
+                return;
+            }
+            IndexingStatus main = indexingTracker.getMainTaskStatus();
+            IndexingStatus vector = indexingTracker.getVectorTaskStatus();
+            crawlStateStore.saveCheckpoint(sourceCollection, new CrawlCheckpoint(crawlId, modifiedFilter, crawlStart, totalFound,
+                    main.getTotalDocumentsProcessed(), main.getTotalDocumentsFailed(),
+                    vector.getTotalDocumentsProcessed(), vector.getTotalDocumentsFailed(),
+                    new HashMap<>(cursors)));
+            log.info("Saved a checkpoint of crawl {} after {} documents", crawlId, publishedDocuments);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while saving a checkpoint of crawl " + crawlId, e);
+        } finally {
+            lastCheckpoint = Instant.now();
+            pageLock.writeLock().unlock();
+            checkpointing.set(false);
+        }
+    }
+
+    private boolean awaitDrained(long publishedDocuments) throws InterruptedException {
+        Instant deadline = Instant.now().plus(DRAIN_TIMEOUT);
+        while (indexingTracker.getDocumentsDone(IndexingTracker.TaskType.MAIN) < publishedDocuments
+                || (awaitVectors && indexingTracker.getDocumentsDone(IndexingTracker.TaskType.VECTOR) < publishedDocuments)) {
+            if (Instant.now().isAfter(deadline)) {
+                return false;
+            }
+            Thread.sleep(DRAIN_CHECK_MILLIS);
+        }
+        return true;
+    }
+}
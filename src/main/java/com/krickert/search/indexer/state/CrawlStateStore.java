@@ -0,0 +1,151 @@
+package com.krickert.search.indexer.state;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Keeps the state of the crawls of each source collection in the local state-dir, so it survives restarts.
+ * Each source collection has its own properties file, which is replaced in one atomic move on every save so a
+ * crash never leaves a half written file behind.
+ * <br>
+ * Besides the high-water mark of incremental crawls, the file holds the checkpoint of a crawl that has not
+ * finished yet, so it can be resumed after the indexer stopped.
+ */
+@Singleton
+public class CrawlStateStore {
+    private static final Logger log = LoggerFactory.getLogger(CrawlStateStore.class);
+    private static final String DEFAULT_STATE_DIR = "indexer-state";
+    private static final String WATERMARK = "watermark";
+    private static final String CHECKPOINT = "checkpoint.";
+    private static final String CHECKPOINT_CURSOR = CHECKPOINT + "cursor.";
+
+    private final Path directory;
+
+    public CrawlStateStore(IndexerConfigurationProperties properties) {
+        this.directory = Paths.get(properties.getStateDir() == null || properties.getStateDir().isBlank() ?
+                DEFAULT_STATE_DIR : properties.getStateDir());
+    }
+
+    /**
+     * @return the start time of the last successful crawl of the collection, if there was one
+     */
+    public Optional<Instant> getWatermark(String sourceCollection) {
+        return Optional.ofNullable(load(sourceCollection).getProperty(WATERMARK)).map(Instant::parse);
+    }
+
+    public void saveWatermark(String sourceCollection, Instant watermark) {
+        Properties state = load(sourceCollection);
+        state.setProperty(WATERMARK, watermark.toString());
+        save(sourceCollection, state);
+        log.info("Saved the high-water mark {} for collection {}", watermark, sourceCollection);
+    }
+
+    /**
+     * @return the checkpoint of the unfinished crawl of the collection, if there is one
+     */
+    public Optional<CrawlCheckpoint> getCheckpoint(String sourceCollection) {
+        Properties state = load(sourceCollection);
+        String crawlId = state.getProperty(CHECKPOINT + "crawl-id");
+        if (crawlId == null) {
+            return Optional.empty();
+        }
+        Map<String, String> partitionCursors = new HashMap<>();
+        for (String key : state.stringPropertyNames()) {
+            if (key.startsWith(CHECKPOINT_CURSOR)) {
+                partitionCursors.put(key.substring(CHECKPOINT_CURSOR.length()), state.getProperty(key));
+            }
+        }
+        String modifiedFilter = state.getProperty(CHECKPOINT + "modified-filter");
+        return Optional.of(new CrawlCheckpoint(crawlId,
+                modifiedFilter == null || modifiedFilter.isEmpty() ? null : modifiedFilter,
+                Instant.parse(state.getProperty(CHECKPOINT + "crawl-start")),
+                Long.parseLong(state.getProperty(CHECKPOINT + "total-found")),
+                Long.parseLong(state.getProperty(CHECKPOINT + "main-processed")),
+                Long.parseLong(state.getProperty(CHECKPOINT + "main-failed")),
+                Long.parseLong(state.getProperty(CHECKPOINT + "vector-processed")),
+                Long.parseLong(state.getProperty(CHECKPOINT + "vector-failed")),
+                partitionCursors));
+    }
+
+    /**
+     * Replaces the checkpoint of the collection. The rest of its state, such as the watermark, is kept.
+     */
+    public synchronized void saveCheckpoint(String sourceCollection, CrawlCheckpoint checkpoint) {
+        Properties state = withoutCheckpoint(load(sourceCollection));
+        state.setProperty(CHECKPOINT + "crawl-id", checkpoint.crawlId());
+        state.setProperty(CHECKPOINT + "modified-filter", checkpoint.modifiedFilter() == null ? "" : checkpoint.modifiedFilter());
+        state.setProperty(CHECKPOINT + "crawl-start", checkpoint.crawlStart().toString());
+        state.setProperty(CHECKPOINT + "total-found", String.valueOf(checkpoint.totalFound()));
+        state.setProperty(CHECKPOINT + "main-processed", String.valueOf(checkpoint.mainProcessed()));
+        state.setProperty(CHECKPOINT + "main-failed", String.valueOf(checkpoint.mainFailed()));
+        state.setProperty(CHECKPOINT + "vector-processed", String.valueOf(checkpoint.vectorProcessed()));
+        state.setProperty(CHECKPOINT + "vector-failed", String.valueOf(checkpoint.vectorFailed()));
+        checkpoint.partitionCursors().forEach((partition, cursorMark) -> state.setProperty(CHECKPOINT_CURSOR + partition, cursorMark));
+        save(sourceCollection, state);
+    }
+
+    public synchronized void clearCheckpoint(String sourceCollection) {
+        Properties state = load(sourceCollection);
+        if (state.getProperty(CHECKPOINT + "crawl-id") != null) {
+            save(sourceCollection, withoutCheckpoint(state));
+        }
+    }
+
+    private static Properties withoutCheckpoint(Properties state) {
+        state.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(CHECKPOINT))
+                .forEach(state::remove);
+        return state;
+    }
+
+    /**
+     * @return the saved state of the collection, empty if nothing was saved yet
+     */
+    public synchronized Properties load(String sourceCollection) {
+        Properties state = new Properties();
+        Path file = stateFile(sourceCollection);
+        if (!Files.exists(file)) {
+            return state;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            state.load(reader);
+            return state;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the crawl state " + file, e);
+        }
+    }
+
+    public synchronized void save(String sourceCollection, Properties state) {
+        Path file = stateFile(sourceCollection);
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                state.store(writer, "crawl state of " + sourceCollection);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save the crawl state " + file, e);
+        }
+    }
+
+    private Path stateFile(String sourceCollection) {
+        return directory.resolve(sourceCollection.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+    }
+}
@@ -9,10 +9,20 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+/**
+ * Counts the documents of the running crawl for the main and the vector task. Each task has a completion future
+ * that completes once every document found was processed or failed, or once the task is marked as failed, so the
+ * crawl can wait on it instead of polling the counts.
+ * <br>
+ * Every listener thread reports every document here, so counting takes no lock: the counts are {@link LongAdder}s
+ * and the end of a task is found by counting down the documents it still expects, which exactly one thread takes
+ * to zero. The percentage and the rate are only worked out when a status is read.
+ */
 @Singleton
 public class IndexingTracker {
 
@@ -20,41 +30,61 @@ public class IndexingTracker {
     private final IndexingStatus vectorTaskStatus = new IndexingStatus();
     private final List<IndexingStatus> indexingHistory = new LinkedList<>();
 
-    private final AtomicLong mainDocumentsFound = new AtomicLong(0);
-    private final AtomicLong vectorDocumentsFound = new AtomicLong(0);
-    private final AtomicInteger mainDocumentsProcessed = new AtomicInteger(0);
-    private final AtomicInteger mainDocumentsFailed = new AtomicInteger(0);
-    private final AtomicInteger vectorDocumentsProcessed = new AtomicInteger(0);
-    private final AtomicInteger vectorDocumentsFailed = new AtomicInteger(0);
+    private final TaskCounts mainCounts = new TaskCounts();
+    private final TaskCounts vectorCounts = new TaskCounts();
     private final Integer maxHistorySize;
 
     private LocalDateTime timeStarted;
+    private CompletableFuture<IndexingStatus> mainCompletion = new CompletableFuture<>();
+    private CompletableFuture<IndexingStatus> vectorCompletion = new CompletableFuture<>();
 
     @Inject
     public IndexingTracker(@Value("${indexer-manager.max-history-size}") Integer maxHistorySize) {
         this.maxHistorySize = maxHistorySize == null || maxHistorySize < 0 ? 100 : maxHistorySize;
     }
 
-    public IndexingStatus getMainTaskStatus() {
+    public synchronized IndexingStatus getMainTaskStatus() {
+        updateProgress(TaskType.MAIN);
         return mainTaskStatus;
     }
 
-    public IndexingStatus getVectorTaskStatus() {
+    public synchronized IndexingStatus getVectorTaskStatus() {
+        updateProgress(TaskType.VECTOR);
         return vectorTaskStatus;
     }
 
+    /**
+     * @return the documents of the task that were processed or failed so far, read without taking the lock
+     */
+    public long getDocumentsDone(TaskType taskType) {
+        TaskCounts counts = getCounts(taskType);
+        return counts.processed.sum() + counts.failed.sum();
+    }
+
     public synchronized void reset() {
         resetStatus(mainTaskStatus);
         resetStatus(vectorTaskStatus);
 
-        mainDocumentsFound.set(0);
-        vectorDocumentsFound.set(0);
-        mainDocumentsProcessed.set(0);
-        mainDocumentsFailed.set(0);
-        vectorDocumentsProcessed.set(0);
-        vectorDocumentsFailed.set(0);
+        mainCounts.reset();
+        vectorCounts.reset();
 
         timeStarted = null;
+        mainCompletion = new CompletableFuture<>();
+        vectorCompletion = new CompletableFuture<>();
+    }
+
+    /**
+     * @return the future that completes with the status of the task once the task is completed or failed
+     */
+    public synchronized CompletableFuture<IndexingStatus> getCompletion(TaskType taskType) {
+        switch (taskType) {
+            case MAIN:
+                return mainCompletion;
+            case VECTOR:
+                return vectorCompletion;
+            default:
+                throw new IllegalArgumentException("Unknown task type: " + taskType);
+        }
     }
 
     private void resetStatus(IndexingStatus status) {
@@ -84,8 +114,20 @@ public class IndexingTracker {
     }
 
     public synchronized void setTotalDocumentsFound(Long totalDocuments) {
-        mainDocumentsFound.set(totalDocuments);
-        vectorDocumentsFound.set(totalDocuments);
+        mainCounts.found.set(totalDocuments);
+        vectorCounts.found.set(totalDocuments);
+        checkIfFinished();
+    }
+
+    /**
+     * Sets the counts a resumed crawl had reached at its checkpoint. Like {@link #setTotalDocumentsFound}, it must be
+     * called before the crawl publishes any document.
+     */
+    public synchronized void restoreCounts(long mainProcessed, long mainFailed, long vectorProcessed, long vectorFailed) {
+        mainCounts.restore(mainProcessed, mainFailed);
+        vectorCounts.restore(vectorProcessed, vectorFailed);
+        updateProgress();
+        checkIfFinished();
     }
 
     public synchronized void updateProgress() {
@@ -94,30 +136,21 @@ public class IndexingTracker {
     }
 
     private void updateProgress(TaskType taskType) {
-        switch (taskType) {
-            case MAIN:
-                updateProgressForStatus(mainTaskStatus, mainDocumentsFound, mainDocumentsProcessed, mainDocumentsFailed);
-                break;
-            case VECTOR:
-                updateProgressForStatus(vectorTaskStatus, vectorDocumentsFound, vectorDocumentsProcessed, vectorDocumentsFailed);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown task type: " + taskType);
-        }
+        updateProgressForStatus(getStatus(taskType), getCounts(taskType));
     }
 
-    private void updateProgressForStatus(IndexingStatus status, AtomicLong documentsFound, AtomicInteger documentsProcessed, AtomicInteger documentsFailed) {
+    private void updateProgressForStatus(IndexingStatus status, TaskCounts counts) {
         if (status.getOverallStatus() == IndexingStatus.OverallStatus.NOT_STARTED) {
             return;
         }
 
-        status.setTotalDocumentsFound(documentsFound.get());
-        status.setTotalDocumentsProcessed(documentsProcessed.get());
-        status.setTotalDocumentsFailed(documentsFailed.get());
+        long totalFound = counts.found.get();
+        int totalProcessed = (int) counts.processed.sum();
+        status.setTotalDocumentsFound(totalFound);
+        status.setTotalDocumentsProcessed(totalProcessed);
+        status.setTotalDocumentsFailed((int) counts.failed.sum());
 
         // Update percent complete
-        long totalFound = documentsFound.get();
-        int totalProcessed = documentsProcessed.get();
         status.setPercentComplete(totalFound > 0 ? ((float) totalProcessed / totalFound) * 100 : 0);
 
         // Update average documents per second
@@ -127,14 +160,37 @@ public class IndexingTracker {
         status.setAverageDocsPerSecond(avgDocsPerSecond);
     }
 
+    /**
+     * Marks the task as completed. Only the first call for a task counts, and a task that was marked as failed
+     * stays failed.
+     */
     public synchronized void finalizeTracking(TaskType taskType) {
+        CompletableFuture<IndexingStatus> completion = getCompletion(taskType);
+        if (completion.isDone()) {
+            return;
+        }
+        IndexingStatus status = getStatus(taskType);
+        finalizeStatus(status);
+        completion.complete(status);
+    }
+
+    private TaskCounts getCounts(TaskType taskType) {
         switch (taskType) {
             case MAIN:
-                finalizeStatus(mainTaskStatus);
-                break;
+                return mainCounts;
             case VECTOR:
-                finalizeStatus(vectorTaskStatus);
-                break;
+                return vectorCounts;
+            default:
+                throw new IllegalArgumentException("Unknown task type: " + taskType);
+        }
+    }
+
+    private IndexingStatus getStatus(TaskType taskType) {
+        switch (taskType) {
+            case MAIN:
+                return mainTaskStatus;
+            case VECTOR:
+                return vectorTaskStatus;
             default:
                 throw new IllegalArgumentException("Unknown task type: " + taskType);
         }
@@ -142,6 +198,7 @@ public class IndexingTracker {
 
     private void finalizeStatus(IndexingStatus status) {
         status.setEndTime(LocalDateTime.now());
+        updateProgressForStatus(status, status == mainTaskStatus ? mainCounts : vectorCounts);
         status.setCurrentStatusMessage("completed");
         status.setOverallStatus(IndexingStatus.OverallStatus.COMPLETED);
         calculateFinalStatistics(status);
@@ -185,48 +242,32 @@ public class IndexingTracker {
     }
 
     private void documentProcessed(TaskType taskType) {
-        synchronized (this) {
-            switch (taskType) {
-                case MAIN:
-                    mainDocumentsProcessed.incrementAndGet();
-                    break;
-                case VECTOR:
-                    vectorDocumentsProcessed.incrementAndGet();
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown task type: " + taskType);
-            }
-            updateProgress(taskType);
-            checkIfFinished();
-        }
+        TaskCounts counts = getCounts(taskType);
+        counts.processed.increment();
+        documentDone(taskType, counts);
     }
 
     private void documentFailed(TaskType taskType) {
-        synchronized (this) {
-            switch (taskType) {
-                case MAIN:
-                    mainDocumentsFailed.incrementAndGet();
-                    break;
-                case VECTOR:
-                    vectorDocumentsFailed.incrementAndGet();
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown task type: " + taskType);
-            }
-            updateProgress(taskType);
-            checkIfFinished();
+        TaskCounts counts = getCounts(taskType);
+        counts.failed.increment();
+        documentDone(taskType, counts);
+    }
+
+    private void documentDone(TaskType taskType, TaskCounts counts) {
+        if (counts.remaining.decrementAndGet() == 0) {
+            finalizeTracking(taskType);
         }
     }
 
     private void checkIfFinished() {
         synchronized (this) {
-            boolean isMainFinished = mainDocumentsProcessed.get() + mainDocumentsFailed.get() == mainDocumentsFound.get();
-            boolean isVectorFinished = vectorDocumentsProcessed.get() + vectorDocumentsFailed.get() == vectorDocumentsFound.get();
-
-            if (isMainFinished) {
+            if (timeStarted == null) {
+                return;
+            }
+            if (mainCounts.recount()) {
                 finalizeTracking(TaskType.MAIN);
             }
-            if (isVectorFinished) {
+            if (vectorCounts.recount()) {
                 finalizeTracking(TaskType.VECTOR);
             }
         }
@@ -238,15 +279,13 @@ public class IndexingTracker {
     }
 
     public synchronized void markIndexingAsFailed(TaskType taskType) {
-        switch (taskType) {
-            case MAIN:
-                markStatusAsFailed(mainTaskStatus);
-                break;
-            case VECTOR:
-                markStatusAsFailed(vectorTaskStatus);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown task type: " + taskType);
+        IndexingStatus status = getStatus(taskType);
+        markStatusAsFailed(status);
+        CompletableFuture<IndexingStatus> completion = getCompletion(taskType);
+        if (!completion.isDone()) {
+            status.setEndTime(LocalDateTime.now());
+            recordHistory(status);
+            completion.complete(status);
         }
     }
 
@@ -257,6 +296,7 @@ public class IndexingTracker {
 
     // Helper functions
     public synchronized float getPercentComplete(TaskType taskType) {
+        updateProgress(taskType);
         switch (taskType) {
             case MAIN:
                 return mainTaskStatus.getPercentComplete();
@@ -275,12 +315,12 @@ public class IndexingTracker {
             case MAIN:
                 endTime = mainTaskStatus.getEndTime() != null ? mainTaskStatus.getEndTime() : LocalDateTime.now();
                 durationInSeconds = Duration.between(mainTaskStatus.getTimeStarted(), endTime).getSeconds();
-                return durationInSeconds > 0 ? (float) mainDocumentsProcessed.get() / durationInSeconds : 0;
+                return durationInSeconds > 0 ? (float) mainCounts.processed.sum() / durationInSeconds : 0;
 
             case VECTOR:
                 endTime = vectorTaskStatus.getEndTime() != null ? vectorTaskStatus.getEndTime() : LocalDateTime.now();
                 durationInSeconds = Duration.between(vectorTaskStatus.getTimeStarted(), endTime).getSeconds();
-                return durationInSeconds > 0 ? (float) vectorDocumentsProcessed.get() / durationInSeconds : 0;
+                return durationInSeconds > 0 ? (float) vectorCounts.processed.sum() / durationInSeconds : 0;
 
             default:
                 throw new IllegalArgumentException("Unknown task type: " + taskType);
@@ -290,4 +330,40 @@ public class IndexingTracker {
     public enum TaskType {
         MAIN, VECTOR;
     }
+
+    /**
+     * The counts of one task. remaining is the number of documents found minus the ones done; until the number
+     * found is known it stays far above zero, so no task can finish before its crawl has been counted.
+     */
+    private static final class TaskCounts {
+        private final AtomicLong found = new AtomicLong();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicLong remaining = new AtomicLong(Long.MAX_VALUE);
+
+        void reset() {
+            found.set(0);
+            processed.reset();
+            failed.reset();
+            remaining.set(Long.MAX_VALUE);
+        }
+
+        void restore(long processedCount, long failedCount) {
+            processed.reset();
+            processed.add(processedCount);
+            failed.reset();
+            failed.add(failedCount);
+        }
+
+        /**
+         * Sets remaining from the number found and the counts, for when either of them was set rather than counted.
+         *
+         * @return true when nothing remains
+         */
+        boolean recount() {
+            long left = found.get() - processed.sum() - failed.sum();
+            remaining.set(left);
+            return left <= 0;
+        }
+    }
 }
\ No newline at end of file
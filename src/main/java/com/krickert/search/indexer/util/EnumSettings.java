@@ -0,0 +1,43 @@
+package com.krickert.search.indexer.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a setting that names one of the constants of an enum. The setting is matched in any case, with dashes
+ * for underscores, and a value that matches none of them fails with the setting and the allowed values, so a
+ * typo in the configuration tells what to write instead.
+ */
+public final class EnumSettings {
+
+    private EnumSettings() {
+    }
+
+    /**
+     * @param settingName  the name of the setting in the configuration, for the error message
+     * @param defaultValue returned when the setting is not set
+     * @throws IllegalArgumentException naming the setting and the allowed values when the value is not one of them
+     */
+    public static <E extends Enum<E>> E parse(Class<E> type, String settingName, String setting, E defaultValue) {
+        if (setting == null || setting.isBlank()) {
+            return defaultValue;
+        }
+        String name = setting.trim().toUpperCase().replace('-', '_');
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + settingName + " '" + setting + "'. Allowed values are " + allowedValues(type));
+    }
+
+    private static String allowedValues(Class<? extends Enum<?>> type) {
+        List<String> values = Arrays.stream(type.getEnumConstants())
+                .map(constant -> constant.name().toLowerCase().replace('_', '-'))
+                .toList();
+        if (values.size() == 1) {
+            return values.get(0);
+        }
+        return String.join(", ", values.subList(0, values.size() - 1)) + " and " + values.get(values.size() - 1);
+    }
+}
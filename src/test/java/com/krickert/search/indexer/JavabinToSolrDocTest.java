@@ -0,0 +1,72 @@
+package com.krickert.search.indexer;
+
+import com.krickert.search.indexer.solr.JavabinToSolrDocParser;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the javabin response parser.
+ */
+public class JavabinToSolrDocTest {
+
+    /**
+     * Test checks that a javabin /select response is decoded into SolrInputDocuments along with its header values.
+     */
+    @Test
+    public void testParseSolrResponse() throws IOException {
+        SolrDocument doc1 = new SolrDocument();
+        doc1.setField("id", "doc1");
+        doc1.setField("tags", List.of("x", "y"));
+        doc1.setField("size", 3000000000L);
+        doc1.setField("_version_", 1L);
+        SolrDocument doc2 = new SolrDocument();
+        doc2.setField("id", "doc2");
+        SolrDocumentList docs = new SolrDocumentList();
+        docs.setNumFound(42);
+        docs.setStart(0);
+        docs.add(doc1);
+        docs.add(doc2);
+        NamedList<Object> responseHeader = new NamedList<>();
+        responseHeader.add("status", 0);
+        responseHeader.add("QTime", 7);
+        NamedList<Object> response = new NamedList<>();
+        response.add("responseHeader", responseHeader);
+        response.add("response", docs);
+        response.add("nextCursorMark", "AoEjZG9jMg==");
+
+        HttpSolrSelectResponse parsed = new JavabinToSolrDocParser().parseSolrResponse(new ByteArrayInputStream(marshal(response)));
+
+        assertEquals(42L, parsed.getNumFound());
+        assertEquals(0L, parsed.getStart());
+        assertEquals(7L, parsed.getQtime());
+        assertEquals("AoEjZG9jMg==", parsed.getNextCursorMark());
+        List<SolrInputDocument> parsedDocs = new ArrayList<>(parsed.getDocs());
+        assertEquals(2, parsedDocs.size());
+        assertEquals("doc1", parsedDocs.get(0).getFieldValue("id"));
+        assertEquals(List.of("x", "y"), new ArrayList<>(parsedDocs.get(0).getFieldValues("tags")));
+        assertEquals(3000000000L, parsedDocs.get(0).getFieldValue("size"));
+        assertFalse(parsedDocs.get(0).containsKey("_version_"));
+        assertEquals("doc2", parsedDocs.get(1).getFieldValue("id"));
+    }
+
+    private static byte[] marshal(NamedList<Object> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JavaBinCodec codec = new JavaBinCodec()) {
+            codec.marshal(response, out);
+        }
+        return out.toByteArray();
+    }
+}
@@ -5,7 +5,12 @@ import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse
 import org.apache.solr.common.SolrInputDocument;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -87,4 +92,139 @@ public class JsonToSolrDocTest {
         // Act & Assert
         assertThrows(RuntimeException.class, () -> jsonToSolrDoc.parseSolrDocuments(invalidJsonString));
     }
-}
\ No newline at end of file
+
+    /**
+     * Test checks that the nextCursorMark of a cursor request is carried on the response.
+     */
+    @Test
+    public void testParseSolrDocumentsWithCursorMark() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{" +
+                "\"responseHeader\":{\"status\":0,\"QTime\":2}," +
+                "\"response\":{\"numFound\":3,\"start\":0,\"docs\":[" +
+                "{\"id\":\"doc1\",\"_version_\":1}," +
+                "{\"id\":\"doc2\",\"_version_\":2}]}," +
+                "\"nextCursorMark\":\"AoEjZG9jMg==\"" +
+                "}";
+
+        HttpSolrSelectResponse response = jsonToSolrDoc.parseSolrDocuments(jsonString);
+
+        assertEquals(3L, response.getNumFound());
+        assertEquals(2, response.getDocs().size());
+        assertEquals("AoEjZG9jMg==", response.getNextCursorMark());
+    }
+
+    /**
+     * Test checks that a regular start/rows response has no cursor.
+     */
+    @Test
+    public void testParseSolrDocumentsWithoutCursorMark() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{" +
+                "\"responseHeader\":{\"status\":0,\"QTime\":2}," +
+                "\"response\":{\"numFound\":0,\"start\":0,\"docs\":[]}" +
+                "}";
+
+        assertNull(jsonToSolrDoc.parseSolrDocuments(jsonString).getNextCursorMark());
+    }
+
+    /**
+     * Test checks that a /stream result-set is handed to the consumer one document at a time, without the EOF tuple.
+     */
+    @Test
+    public void testParseSolrDocumentsFromStream() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{\"result-set\":{\"docs\":[" +
+                "{\"id\":\"doc1\",\"size\":3000000000}," +
+                "{\"id\":\"doc2\",\"size\":12}," +
+                "{\"EOF\":true,\"RESPONSE_TIME\":10}]}}";
+        List<SolrInputDocument> consumed = new ArrayList<>();
+
+        long count = jsonToSolrDoc.parseStreamDocuments(new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8)), consumed::add);
+
+        assertEquals(2, count);
+        assertEquals(2, consumed.size());
+        assertEquals("doc1", consumed.get(0).getFieldValue("id"));
+        assertEquals(3000000000L, consumed.get(0).getFieldValue("size"));
+        assertEquals(12, consumed.get(1).getFieldValue("size"));
+    }
+
+    /**
+     * Test checks that an exception tuple of a /stream response fails the parse.
+     */
+    @Test
+    public void testParseSolrDocumentsFromFailedStream() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{\"result-set\":{\"docs\":[{\"EXCEPTION\":\"field title has no docValues\",\"EOF\":true}]}}";
+
+        assertThrows(RuntimeException.class, () -> jsonToSolrDoc.parseStreamDocuments(
+                new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8)), doc -> {
+                }));
+    }
+
+    /**
+     * Test checks that the docs of an /export response are documents, even when they have a field named like a
+     * stream tuple field.
+     */
+    @Test
+    public void testParseSolrDocumentsKeepsTupleFieldNames() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{\"responseHeader\":{\"status\":0},\"response\":{\"numFound\":2,\"docs\":[" +
+                "{\"id\":\"doc1\",\"EOF\":\"end of file\"}," +
+                "{\"id\":\"doc2\",\"EXCEPTION\":\"none\"}]}}";
+        List<SolrInputDocument> consumed = new ArrayList<>();
+
+        long count = jsonToSolrDoc.parseSolrDocuments(new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8)), consumed::add);
+
+        assertEquals(2, count);
+        assertEquals("end of file", consumed.get(0).getFieldValue("EOF"));
+        assertEquals("none", consumed.get(1).getFieldValue("EXCEPTION"));
+    }
+
+    /**
+     * Test checks that a /select response is parsed from a stream in one pass, including the header values,
+     * and that nested objects the parser does not need are skipped.
+     */
+    @Test
+    public void testParseSolrResponseFromStream() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser();
+        String jsonString = "{" +
+                "\"responseHeader\":{\"zkConnected\":true,\"status\":0,\"QTime\":7,\"params\":{\"q\":\"*:*\",\"fq\":[\"a\",\"b\"]}}," +
+                "\"response\":{\"numFound\":42,\"start\":0,\"numFoundExact\":true,\"docs\":[" +
+                "{\"id\":\"doc1\",\"tags\":[\"x\",\"y\"],\"_version_\":1}," +
+                "{\"id\":\"doc2\",\"_version_\":2}]}," +
+                "\"nextCursorMark\":\"AoEjZG9jMg==\"" +
+                "}";
+
+        HttpSolrSelectResponse response = jsonToSolrDoc.parseSolrResponse(new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(42L, response.getNumFound());
+        assertEquals(0L, response.getStart());
+        assertEquals(7L, response.getQtime());
+        assertEquals("AoEjZG9jMg==", response.getNextCursorMark());
+        List<SolrInputDocument> docs = new ArrayList<>(response.getDocs());
+        assertEquals(2, docs.size());
+        assertEquals("doc1", docs.get(0).getFieldValue("id"));
+        assertEquals(List.of("x", "y"), new ArrayList<>(docs.get(0).getFieldValues("tags")));
+        assertFalse(docs.get(1).containsKey("_version_"));
+    }
+
+    /**
+     * Test checks that excluded fields, including nested objects and arrays, are skipped by the streaming parser.
+     */
+    @Test
+    public void testParseSolrResponseWithExcludedFields() {
+        JsonToSolrDocParser jsonToSolrDoc = new JsonToSolrDocParser(List.of("raw_content", "blobs"));
+        String jsonString = "{" +
+                "\"responseHeader\":{\"status\":0,\"QTime\":1}," +
+                "\"response\":{\"numFound\":1,\"start\":0,\"docs\":[" +
+                "{\"id\":\"doc1\",\"raw_content\":\"a very large stored blob\",\"blobs\":[\"a\",{\"b\":1}],\"title\":\"kept\",\"_version_\":1}]}" +
+                "}";
+
+        HttpSolrSelectResponse response = jsonToSolrDoc.parseSolrResponse(new ByteArrayInputStream(jsonString.getBytes(StandardCharsets.UTF_8)));
+
+        SolrInputDocument doc = response.getDocs().iterator().next();
+        assertEquals(Set.of("id", "title"), doc.getFieldNames());
+        assertEquals("kept", doc.getFieldValue("title"));
+    }
+}
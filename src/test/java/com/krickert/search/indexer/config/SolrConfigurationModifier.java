@@ -5,7 +5,6 @@ import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Factory;
 import io.micronaut.context.annotation.Replaces;
 import jakarta.inject.Named;
-import org.apache.solr.client.solrj.impl.ConcurrentUpdateHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.Http2SolrClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,16 +36,5 @@ public class SolrConfigurationModifier {
                 .build();
     }
 
-    @Replaces(ConcurrentUpdateHttp2SolrClient.class)
-    @Bean
-    @Named("concurrentClient")
-    public ConcurrentUpdateHttp2SolrClient createConcurrentUpdateSolrClient() {
-        Http2SolrClient solrClient = createSolrClient();
-        return new ConcurrentUpdateHttp2SolrClient.Builder(solr9Url, solrClient, false)
-                .withQueueSize(originalConfiguration.getDestinationSolrConfiguration().getConnection().getQueueSize())
-                .withThreadCount(originalConfiguration.getDestinationSolrConfiguration().getConnection().getThreadCount())
-                .build();
-    }
-
 
 }
\ No newline at end of file
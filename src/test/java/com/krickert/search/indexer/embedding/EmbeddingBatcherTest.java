@@ -0,0 +1,99 @@
+package com.krickert.search.indexer.embedding;
+
+import com.krickert.search.service.EmbeddingsVectorReply;
+import com.krickert.search.service.EmbeddingsVectorsReply;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingBatcherTest {
+
+    /**
+     * Test checks that a full batch is sent in one request and every text gets its own vector back.
+     */
+    @Test
+    public void testFullBatchIsSentAndRouted() {
+        List<List<String>> requests = new CopyOnWriteArrayList<>();
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher("test", texts -> {
+            requests.add(texts);
+            return reply(texts);
+        }, 3, 60_000)) {
+            List<CompletableFuture<EmbeddingsVectorReply>> futures = batcher.embedAll(List.of("a", "bb", "ccc"));
+
+            assertEquals(1, requests.size());
+            assertEquals(List.of("a", "bb", "ccc"), requests.get(0));
+            assertEquals(1.0f, futures.get(0).join().getEmbeddings(0));
+            assertEquals(2.0f, futures.get(1).join().getEmbeddings(0));
+            assertEquals(3.0f, futures.get(2).join().getEmbeddings(0));
+        }
+    }
+
+    /**
+     * Test checks that a batch that does not fill up is sent once the linger time passes.
+     */
+    @Test
+    public void testPartialBatchIsSentAfterLinger() throws Exception {
+        List<List<String>> requests = new CopyOnWriteArrayList<>();
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher("test", texts -> {
+            requests.add(texts);
+            return reply(texts);
+        }, 100, 20)) {
+            CompletableFuture<EmbeddingsVectorReply> first = batcher.embed("a");
+            CompletableFuture<EmbeddingsVectorReply> second = batcher.embed("bb");
+
+            assertEquals(2.0f, second.get(5, TimeUnit.SECONDS).getEmbeddings(0));
+            assertEquals(1.0f, first.get(5, TimeUnit.SECONDS).getEmbeddings(0));
+            assertEquals(1, requests.size());
+            assertEquals(1L, batcher.getMetrics().get("batchesSent"));
+        }
+    }
+
+    /**
+     * Test checks that a failed request fails every text of the batch.
+     */
+    @Test
+    public void testFailedBatchFailsEveryText() {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher("test", texts -> {
+            throw new RuntimeException("embedding service unavailable");
+        }, 2, 60_000)) {
+            List<CompletableFuture<EmbeddingsVectorReply>> futures = batcher.embedAll(List.of("a", "b"));
+
+            for (CompletableFuture<EmbeddingsVectorReply> future : futures) {
+                assertThrows(CompletionException.class, future::join);
+            }
+        }
+    }
+
+    /**
+     * Test checks that an async embedder does not hold the caller and the vectors arrive when its reply completes.
+     */
+    @Test
+    public void testAsyncEmbedderCompletesLater() {
+        CompletableFuture<EmbeddingsVectorsReply> pendingReply = new CompletableFuture<>();
+        try (EmbeddingBatcher batcher = EmbeddingBatcher.async("test", texts -> pendingReply, 2, 60_000)) {
+            List<CompletableFuture<EmbeddingsVectorReply>> futures = batcher.embedAll(List.of("a", "bb"));
+
+            assertFalse(futures.get(0).isDone());
+            pendingReply.complete(reply(List.of("a", "bb")));
+            assertEquals(1.0f, futures.get(0).join().getEmbeddings(0));
+            assertEquals(2.0f, futures.get(1).join().getEmbeddings(0));
+        }
+    }
+
+    /**
+     * Reply with a one dimensional vector holding the length of each text, so the routing can be checked.
+     */
+    private static EmbeddingsVectorsReply reply(List<String> texts) {
+        EmbeddingsVectorsReply.Builder builder = EmbeddingsVectorsReply.newBuilder();
+        for (String text : texts) {
+            builder.addEmbeddings(EmbeddingsVectorReply.newBuilder().addEmbeddings((float) text.length()).build());
+        }
+        return builder.build();
+    }
+}
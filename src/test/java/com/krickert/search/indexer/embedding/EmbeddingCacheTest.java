@@ -0,0 +1,109 @@
+package com.krickert.search.indexer.embedding;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.service.EmbeddingsVectorReply;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingCacheTest {
+
+    /**
+     * Test checks that a text is only embedded once, and that whitespace differences hit the same entry.
+     */
+    @Test
+    public void testRepeatedTextIsServedFromTheCache() {
+        EmbeddingCache cache = new EmbeddingCache(properties(false, 1024 * 1024), new EmbeddingStore(new IndexerConfigurationProperties()));
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, CompletableFuture<EmbeddingsVectorReply>> embedder = text -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(vector(4, text.length()));
+        };
+
+        float[] first = cache.embed("the state of the union", embedder).join();
+        float[] second = cache.embed("  the state   of the union\n", embedder).join();
+
+        assertEquals(1, calls.get());
+        assertArrayEquals(first, second);
+        Map<String, Object> metrics = cache.getMetrics();
+        assertEquals(1L, metrics.get("hits"));
+        assertEquals(1L, metrics.get("misses"));
+    }
+
+    /**
+     * Test checks that a text being embedded is not sent again while the first request is in flight.
+     */
+    @Test
+    public void testInFlightTextIsShared() {
+        EmbeddingCache cache = new EmbeddingCache(properties(true, 1024 * 1024), new EmbeddingStore(new IndexerConfigurationProperties()));
+        CompletableFuture<EmbeddingsVectorReply> pending = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, CompletableFuture<EmbeddingsVectorReply>> embedder = text -> {
+            calls.incrementAndGet();
+            return pending;
+        };
+
+        CompletableFuture<float[]> first = cache.embed("boilerplate", embedder);
+        CompletableFuture<float[]> second = cache.embed("boilerplate", embedder);
+        pending.complete(vector(2, 3.0f));
+
+        assertEquals(1, calls.get());
+        assertArrayEquals(new float[]{3.0f, 3.0f}, first.join());
+        assertArrayEquals(new float[]{3.0f, 3.0f}, second.join());
+        assertArrayEquals(new float[]{3.0f, 3.0f}, cache.embed("boilerplate", embedder).join());
+    }
+
+    /**
+     * Test checks that an embedder that throws fails the load instead of leaving it in flight, so the text can be
+     * embedded again.
+     */
+    @Test
+    public void testThrowingEmbedderDoesNotLeaveTheLoadInFlight() {
+        EmbeddingCache cache = new EmbeddingCache(properties(false, 1024 * 1024), new EmbeddingStore(new IndexerConfigurationProperties()));
+
+        CompletableFuture<float[]> failed = cache.embed("boilerplate", text -> {
+            throw new IllegalStateException("embedding service unavailable");
+        });
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertArrayEquals(new float[]{1.0f, 1.0f},
+                cache.embed("boilerplate", text -> CompletableFuture.completedFuture(vector(2, 1.0f))).join());
+    }
+
+    /**
+     * Test checks that the cache evicts entries once the vectors go over the byte limit.
+     */
+    @Test
+    public void testCacheIsBoundedByBytes() {
+        EmbeddingCache cache = new EmbeddingCache(properties(false, 4096), new EmbeddingStore(new IndexerConfigurationProperties()));
+        for (int i = 0; i < 100; i++) {
+            cache.embed("text " + i, text -> CompletableFuture.completedFuture(vector(64, 1.0f))).join();
+        }
+
+        Map<String, Object> metrics = cache.getMetrics();
+        assertTrue((Long) metrics.get("entries") < 100);
+        assertTrue((Long) metrics.get("evictions") > 0);
+    }
+
+    private static IndexerConfigurationProperties properties(boolean offHeap, long maxBytes) {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setEmbeddingCacheEnabled(true);
+        properties.setEmbeddingCacheOffHeap(offHeap);
+        properties.setEmbeddingCacheMaxBytes(maxBytes);
+        properties.setEmbeddingModelName("test-model");
+        return properties;
+    }
+
+    private static EmbeddingsVectorReply vector(int dimensions, float value) {
+        EmbeddingsVectorReply.Builder builder = EmbeddingsVectorReply.newBuilder();
+        for (int i = 0; i < dimensions; i++) {
+            builder.addEmbeddings(value);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.krickert.search.indexer.embedding;
+
+import com.google.common.hash.HashCode;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingStoreTest {
+
+    /**
+     * Test checks that vectors written in one run are read back, across sealed segments, after the store is reopened.
+     */
+    @Test
+    public void testVectorsSurviveARestart(@TempDir Path directory) throws IOException {
+        EmbeddingStore store = new EmbeddingStore(properties(directory, 256));
+        for (int i = 0; i < 20; i++) {
+            store.put(key(i), new float[]{i, i + 0.5f, -i});
+        }
+        assertArrayEquals(new float[]{3, 3.5f, -3}, store.get(key(3)));
+        assertTrue((Integer) store.getMetrics().get("segments") > 1);
+        store.close();
+
+        EmbeddingStore reopened = new EmbeddingStore(properties(directory, 256));
+        assertEquals(20, reopened.getMetrics().get("entries"));
+        for (int i = 0; i < 20; i++) {
+            assertArrayEquals(new float[]{i, i + 0.5f, -i}, reopened.get(key(i)));
+        }
+        assertNull(reopened.get(key(20)));
+        reopened.close();
+    }
+
+    /**
+     * Test checks that a record cut off by a crash is dropped and the store keeps working after it.
+     */
+    @Test
+    public void testPartlyWrittenRecordIsDropped(@TempDir Path directory) throws IOException {
+        EmbeddingStore store = new EmbeddingStore(properties(directory, 1024 * 1024));
+        store.put(key(1), new float[]{1, 2, 3});
+        store.put(key(2), new float[]{4, 5, 6});
+        store.close();
+        Path segment = directory.resolve("segment-00000.vec");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        EmbeddingStore reopened = new EmbeddingStore(properties(directory, 1024 * 1024));
+        assertArrayEquals(new float[]{1, 2, 3}, reopened.get(key(1)));
+        assertNull(reopened.get(key(2)));
+        reopened.put(key(2), new float[]{7, 8, 9});
+        assertArrayEquals(new float[]{7, 8, 9}, reopened.get(key(2)));
+        reopened.close();
+    }
+
+    private static IndexerConfigurationProperties properties(Path directory, long segmentBytes) {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setEmbeddingStoreDir(directory.toString());
+        properties.setEmbeddingStoreSegmentBytes(segmentBytes);
+        return properties;
+    }
+
+    private static HashCode key(int i) {
+        return EmbeddingStore.key("test-model", EmbeddingCache.hash("text " + i));
+    }
+}
@@ -1,8 +1,12 @@
 package com.krickert.search.indexer.enhancers;
 
 import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectClient;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartition;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class MockSolrSelectClient implements HttpSolrSelectClient {
     @Override
@@ -15,6 +19,27 @@ public class MockSolrSelectClient implements HttpSolrSelectClient {
         return "";
     }
 
+    @Override
+    public HttpSolrSelectResponse getSolrDocsResponseWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+        return new HttpSolrSelectResponse.Builder()
+                .numFound(0L)
+                .docs(Collections.emptyList())
+                .build();
+    }
+
+    @Override
+    public HttpSolrSelectResponse getIdsWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+        return new HttpSolrSelectResponse.Builder()
+                .numFound(0L)
+                .docs(Collections.emptyList())
+                .build();
+    }
+
+    @Override
+    public String getFieldTypeClass(String solrHost, String solrCollection, String fieldName) {
+        return "solr.StrField";
+    }
+
     @Override
     public Long getTotalNumberOfDocumentsForCollection() {
         return 0L;
@@ -24,4 +49,14 @@ public class MockSolrSelectClient implements HttpSolrSelectClient {
     public Long getTotalNumberOfDocumentsForCollection(String solr7Host, String solr7Collection) {
         return 0L;
     }
+
+    @Override
+    public Long getTotalNumberOfDocumentsForPartition(String solr7Host, String solr7Collection, SourcePartition partition) {
+        return 0L;
+    }
+
+    @Override
+    public List<String> getShardNames(String solrHost, String solrCollection) {
+        return Collections.emptyList();
+    }
 }
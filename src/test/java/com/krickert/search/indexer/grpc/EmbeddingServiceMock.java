@@ -1,5 +1,6 @@
 package com.krickert.search.indexer.grpc;
 
+import com.google.common.util.concurrent.Futures;
 import com.krickert.search.service.*;
 
 import java.util.List;
@@ -44,6 +45,25 @@ public class EmbeddingServiceMock {
         return mockStub;
     }
 
+    public static EmbeddingServiceGrpc.EmbeddingServiceFutureStub createFutureMock() {
+        EmbeddingServiceGrpc.EmbeddingServiceFutureStub mockStub = mock(EmbeddingServiceGrpc.EmbeddingServiceFutureStub.class);
+
+        // Mock createEmbeddingsVectors to match the number of texts sent in the request, completed right away
+        when(mockStub.createEmbeddingsVectors(any(EmbeddingsVectorsRequest.class)))
+                .thenAnswer(invocation -> {
+                    EmbeddingsVectorsRequest request = invocation.getArgument(0);
+                    EmbeddingsVectorsReply.Builder replyBuilder = EmbeddingsVectorsReply.newBuilder();
+                    for (String text : request.getTextList()) {
+                        replyBuilder.addEmbeddings(EmbeddingsVectorReply.newBuilder()
+                                .addAllEmbeddings(generateRandomFloats(300, -1.0f, 1.0f))
+                                .build());
+                    }
+                    return Futures.immediateFuture(replyBuilder.build());
+                });
+
+        return mockStub;
+    }
+
     // Generate random floats between min and max
     private static List<Float> generateRandomFloats(int count, float min, float max) {
         Random random = new Random();
@@ -13,6 +13,7 @@ import jakarta.inject.Named;
 
 import java.io.IOException;
 
+import static com.krickert.search.indexer.grpc.EmbeddingServiceMock.createFutureMock;
 import static com.krickert.search.indexer.grpc.EmbeddingServiceMock.createMock;
 
 @Factory
@@ -21,9 +22,11 @@ import static com.krickert.search.indexer.grpc.EmbeddingServiceMock.createMock;
 public class TestClients {
 
     private final EmbeddingServiceGrpc.EmbeddingServiceBlockingStub embeddingServiceBlockingStub;
+    private final EmbeddingServiceGrpc.EmbeddingServiceFutureStub embeddingServiceFutureStub;
 
     public TestClients() {
         this.embeddingServiceBlockingStub = createMock();
+        this.embeddingServiceFutureStub = createFutureMock();
     }
 
     @Bean
@@ -48,6 +51,28 @@ public class TestClients {
         );
     }
 
+    @Bean
+    @Named("inlineEmbeddingFutureService")
+    public EmbeddingServiceGrpc.EmbeddingServiceFutureStub inlineEmbeddingFutureService() {
+        return embeddingServiceFutureStub;
+    }
+
+    @Bean
+    @Named("vectorEmbeddingFutureService")
+    public EmbeddingServiceGrpc.EmbeddingServiceFutureStub vectorEmbeddingFutureService() {
+        return embeddingServiceFutureStub;
+    }
+
+    @Bean
+    @Named("chunkFutureService")
+    ChunkServiceGrpc.ChunkServiceFutureStub chunkServiceFutureStub(
+            @GrpcChannel("${indexer.chunker-grpc-channel}")
+            ManagedChannel channel) {
+        return ChunkServiceGrpc.newFutureStub(
+                channel
+        );
+    }
+
     @Bean
     @Named("OktaAuth")
     OktaAuth oktaAuth() {
@@ -0,0 +1,81 @@
+package com.krickert.search.indexer.solr.client;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommitPolicyTest {
+
+    /**
+     * Test checks that a collection is hard committed without a new searcher once it reached the document limit,
+     * and not before.
+     */
+    @Test
+    public void testHardCommitAfterDocumentLimit() throws Exception {
+        RecordingSolrClient solrClient = new RecordingSolrClient();
+        CommitPolicy commitPolicy = new CommitPolicy(solrClient, solrClient, "destination", List.of("chunks"), -1, 0, 100);
+        try {
+            commitPolicy.documentsWritten("chunks", 60);
+            commitPolicy.documentsWritten("destination", 60);
+            commitPolicy.documentsWritten("chunks", 60);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((Long) commitPolicy.getMetrics().get("hardCommits") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("chunks soft=false openSearcher=false"), solrClient.commits);
+            assertEquals(1L, commitPolicy.getMetrics().get("hardCommits"));
+        } finally {
+            commitPolicy.close();
+        }
+    }
+
+    /**
+     * Test checks that the end of each stage hard commits its collections and opens a searcher, the destination
+     * collection with the destination client and the vector collections with the vector client.
+     */
+    @Test
+    public void testStageCommits() {
+        RecordingSolrClient destinationClient = new RecordingSolrClient();
+        RecordingSolrClient vectorClient = new RecordingSolrClient();
+        CommitPolicy commitPolicy = new CommitPolicy(destinationClient, vectorClient, "destination",
+                List.of("title-chunks", "body-chunks"), 5000, 0, 0);
+        try {
+            assertEquals(5000, commitPolicy.getCommitWithinMillis());
+
+            commitPolicy.commitMainStage();
+            commitPolicy.commitVectorStage();
+
+            assertEquals(List.of("destination soft=false openSearcher=true"), destinationClient.commits);
+            assertEquals(List.of("title-chunks soft=false openSearcher=true",
+                    "body-chunks soft=false openSearcher=true"), vectorClient.commits);
+            assertEquals(3L, commitPolicy.getMetrics().get("stageCommits"));
+        } finally {
+            commitPolicy.close();
+        }
+    }
+
+    private static class RecordingSolrClient extends SolrClient {
+        private final List<String> commits = new CopyOnWriteArrayList<>();
+
+        @Override
+        public NamedList<Object> request(SolrRequest<?> request, String collection) {
+            SolrParams params = request.getParams();
+            commits.add(collection + " soft=" + params.get(UpdateParams.SOFT_COMMIT, "false")
+                    + " openSearcher=" + params.get(UpdateParams.OPEN_SEARCHER, "true"));
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.krickert.search.indexer.enhancers.MockSolrSelectClient;
+import com.krickert.search.indexer.solr.httpclient.select.HttpSolrSelectResponse;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartition;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeletedDocumentSweeperTest {
+
+    /**
+     * Test checks that only the destination ids missing from the source are reported, wherever they fall.
+     */
+    @Test
+    public void testDiffReportsMissingIds() {
+        List<String> deleted = new ArrayList<>();
+
+        DeletedDocumentSweeper.diff(
+                List.of("b", "c", "e", "f").iterator(),
+                List.of("a", "b", "c", "d", "f", "g").iterator(),
+                deleted::add);
+
+        assertEquals(List.of("a", "d", "g"), deleted);
+    }
+
+    /**
+     * Test checks that an id outside the basic plane sorts the way solr sorts it, after the high BMP characters.
+     */
+    @Test
+    public void testCodePointOrderMatchesSolr() {
+        String supplementary = new String(Character.toChars(0x1F600));
+        String highBmp = "Ａ";
+
+        assertTrue(supplementary.compareTo(highBmp) < 0);
+        assertTrue(DeletedDocumentSweeper.compareCodePoints(supplementary, highBmp) > 0);
+        assertEquals(0, DeletedDocumentSweeper.compareCodePoints("doc1", "doc1"));
+        assertTrue(DeletedDocumentSweeper.compareCodePoints("doc1", "doc10") < 0);
+    }
+
+    /**
+     * Test checks that a sweep walks every partition of the source and the destination page by page, and deletes the
+     * destination documents the source no longer has with the destination client and their chunks with the vector
+     * client.
+     */
+    @Test
+    public void testSweepDeletesDocumentsMissingFromSource() {
+        SourcePartition books = SourcePartition.ofFilter("type:book");
+        SourcePartition films = SourcePartition.ofFilter("type:film");
+        PagedSourceClient source = new PagedSourceClient("solr.StrField", Map.of(
+                books.getName(), List.of("doc1", "doc3", "doc5"),
+                films.getName(), List.of("doc10", "doc3")));
+        PagedDestinationClient destination = new PagedDestinationClient(List.of("doc1", "doc10", "doc2", "doc3", "doc4", "doc5", "doc6"));
+        PagedDestinationClient vectors = new PagedDestinationClient(List.of());
+        DeletedDocumentSweeper sweeper = new DeletedDocumentSweeper(source, destination, vectors, List.of("chunks"), "uuid");
+
+        long deleted = sweeper.sweep("http://source", "source", "destination", List.of(books, films));
+
+        assertEquals(3, deleted);
+        assertEquals(List.of("destination:[doc2, doc4, doc6]"), destination.deletedIds);
+        assertTrue(destination.deleteQueries.isEmpty());
+        assertEquals(List.of("chunks:parent_id:(doc2 OR doc4 OR doc6)"), vectors.deleteQueries);
+    }
+
+    /**
+     * Test checks that nothing is deleted when the unique key of the source is numeric, as its ids do not sort the
+     * way the merge expects.
+     */
+    @Test
+    public void testSweepRefusesNumericUniqueKey() {
+        PagedSourceClient source = new PagedSourceClient("solr.IntPointField", Map.of(SourcePartition.all().getName(), List.of("9", "10")));
+        PagedDestinationClient destination = new PagedDestinationClient(List.of("10", "9"));
+        PagedDestinationClient vectors = new PagedDestinationClient(List.of());
+        DeletedDocumentSweeper sweeper = new DeletedDocumentSweeper(source, destination, vectors, List.of("chunks"), "uuid");
+
+        assertEquals(0, sweeper.sweep("http://source", "source", "destination", List.of(SourcePartition.all())));
+        assertTrue(destination.deletedIds.isEmpty());
+        assertTrue(vectors.deleteQueries.isEmpty());
+    }
+
+    /**
+     * Returns the ids of each partition two at a time, with the position of the next page as the cursor.
+     */
+    private static class PagedSourceClient extends MockSolrSelectClient {
+        private final String uniqueKeyType;
+        private final Map<String, List<String>> idsByPartition;
+
+        private PagedSourceClient(String uniqueKeyType, Map<String, List<String>> idsByPartition) {
+            this.uniqueKeyType = uniqueKeyType;
+            this.idsByPartition = idsByPartition;
+        }
+
+        @Override
+        public String getFieldTypeClass(String solrHost, String solrCollection, String fieldName) {
+            return uniqueKeyType;
+        }
+
+        @Override
+        public HttpSolrSelectResponse getIdsWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+            List<String> ids = idsByPartition.get(partition.getName());
+            int start = cursorMark.equals(CURSOR_MARK_START) ? 0 : Integer.parseInt(cursorMark);
+            int end = Math.min(start + 2, ids.size());
+            List<SolrInputDocument> docs = new ArrayList<>();
+            for (String id : ids.subList(start, end)) {
+                SolrInputDocument doc = new SolrInputDocument();
+                doc.setField("uuid", id);
+                docs.add(doc);
+            }
+            return new HttpSolrSelectResponse.Builder()
+                    .numFound((long) ids.size())
+                    .docs(docs)
+                    .nextCursorMark(end == start ? cursorMark : String.valueOf(end))
+                    .build();
+        }
+    }
+
+    /**
+     * Answers the id queries two ids at a time and records the deletes.
+     */
+    private static class PagedDestinationClient extends SolrClient {
+        private final List<String> ids;
+        private final List<String> deletedIds = new CopyOnWriteArrayList<>();
+        private final List<String> deleteQueries = new CopyOnWriteArrayList<>();
+
+        private PagedDestinationClient(List<String> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest<?> request, String collection) {
+            NamedList<Object> response = new NamedList<>();
+            if (request instanceof QueryRequest) {
+                String cursorMark = request.getParams().get(CursorMarkParams.CURSOR_MARK_PARAM);
+                int start = cursorMark.equals(CursorMarkParams.CURSOR_MARK_START) ? 0 : Integer.parseInt(cursorMark);
+                int end = Math.min(start + 2, ids.size());
+                SolrDocumentList docs = new SolrDocumentList();
+                for (String id : ids.subList(start, end)) {
+                    SolrDocument doc = new SolrDocument();
+                    doc.setField("id", id);
+                    docs.add(doc);
+                }
+                response.add("response", docs);
+                response.add(CursorMarkParams.CURSOR_MARK_NEXT, end == start ? cursorMark : String.valueOf(end));
+            } else if (request instanceof UpdateRequest) {
+                UpdateRequest update = (UpdateRequest) request;
+                if (update.getDeleteById() != null) {
+                    deletedIds.add(collection + ":" + update.getDeleteById());
+                }
+                if (update.getDeleteQuery() != null) {
+                    update.getDeleteQuery().forEach(query -> deleteQueries.add(collection + ":" + query));
+                }
+            }
+            return response;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.solr.vector.event.DownstreamLimiter;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DestinationWriterTest {
+
+    /**
+     * Test checks that documents of one collection are sent together once the batch is full, and that the documents
+     * of another collection go into their own batch.
+     */
+    @Test
+    public void testFullBatchIsSentPerCollection() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter((collection, documents) -> {
+            requests.add(collection + ":" + documents.size());
+            return CompletableFuture.completedFuture(null);
+        }, 3, Long.MAX_VALUE, 60_000);
+        try {
+            CompletableFuture<Void> first = writer.addAll("chunks", List.of(document("1#0"), document("1#1")));
+            CompletableFuture<Void> other = writer.add("destination", document("1"));
+            CompletableFuture<Void> second = writer.add("chunks", document("2#0"));
+
+            second.get(5, TimeUnit.SECONDS);
+            first.get(5, TimeUnit.SECONDS);
+            assertFalse(other.isDone());
+            assertEquals(List.of("chunks:3"), requests);
+            assertEquals(1, writer.getMetrics().get("pendingDocuments"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test checks that a batch that does not fill up is sent once the linger time passes.
+     */
+    @Test
+    public void testPartialBatchIsSentAfterLinger() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter((collection, documents) -> {
+            requests.add(collection + ":" + documents.size());
+            return CompletableFuture.completedFuture(null);
+        }, 100, Long.MAX_VALUE, 20);
+        try {
+            writer.add("destination", document("1")).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of("destination:1"), requests);
+            assertEquals(1L, writer.getMetrics().get("batchesSent"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test checks that a batch is sent once its documents reach the byte limit, and that documents added together
+     * wait for every batch they were split over.
+     */
+    @Test
+    public void testBatchIsBoundedByBytes() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter((collection, documents) -> {
+            batchSizes.add(documents.size());
+            return CompletableFuture.completedFuture(null);
+        }, 100, 100, 60_000);
+        try {
+            List<SolrInputDocument> documents = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                SolrInputDocument document = document(String.valueOf(i));
+                document.setField("body", "x".repeat(60));
+                documents.add(document);
+            }
+            CompletableFuture<Void> written = writer.addAll("destination", documents);
+
+            // two documents reach the limit, so the fifth is still waiting for more
+            assertFalse(written.isDone());
+            writer.close();
+            written.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(1, 2, 2), batchSizes.stream().sorted().toList());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test checks that a failed request fails every document of the batch and is counted.
+     */
+    @Test
+    public void testFailedBatchFailsEveryDocument() {
+        DestinationWriter writer = new DestinationWriter((collection, documents) ->
+                CompletableFuture.failedFuture(new RuntimeException("solr unavailable")), 2, Long.MAX_VALUE, 60_000);
+        try {
+            CompletableFuture<Void> first = writer.add("destination", document("1"));
+            CompletableFuture<Void> second = writer.add("destination", document("2"));
+
+            assertThrows(CompletionException.class, first::join);
+            assertThrows(CompletionException.class, second::join);
+            assertEquals(2L, writer.getMetrics().get("documentsFailed"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test checks that the batches of the destination collection go to the destination sender and those of the
+     * vector collections to the vector sender.
+     */
+    @Test
+    public void testVectorCollectionsAreSentWithTheVectorClient() throws Exception {
+        List<String> destinationRequests = new CopyOnWriteArrayList<>();
+        List<String> vectorRequests = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter(DestinationWriter.routed("destination",
+                (collection, documents) -> {
+                    destinationRequests.add(collection + ":" + documents.size());
+                    return CompletableFuture.completedFuture(null);
+                },
+                (collection, documents) -> {
+                    vectorRequests.add(collection + ":" + documents.size());
+                    return CompletableFuture.completedFuture(null);
+                }), 1, Long.MAX_VALUE, 60_000);
+        try {
+            writer.add("destination", document("1")).get(5, TimeUnit.SECONDS);
+            writer.add("title-chunks", document("1#0")).get(5, TimeUnit.SECONDS);
+            writer.add("body-chunks", document("1#0")).get(5, TimeUnit.SECONDS);
+
+            assertEquals(List.of("destination:1"), destinationRequests);
+            assertEquals(List.of("title-chunks:1", "body-chunks:1"), vectorRequests);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test checks that with solr-max-concurrency reached, an add that fills a batch waits until solr answered an
+     * earlier batch, instead of handing the batch to another flush thread.
+     */
+    @Test
+    public void testFullBatchWaitsForASolrPermit() throws Exception {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setSolrMaxConcurrency(1);
+        List<CompletableFuture<Void>> responses = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter((collection, documents) -> {
+            CompletableFuture<Void> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        }, new DownstreamLimiter(properties), 1, Long.MAX_VALUE, 60_000);
+        try {
+            CompletableFuture<Void> first = writer.add("destination", document("1"));
+            CountDownLatch added = new CountDownLatch(1);
+            Thread listener = new Thread(() -> {
+                writer.add("destination", document("2"));
+                added.countDown();
+            });
+            listener.start();
+
+            assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (responses.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, responses.size());
+
+            responses.get(0).complete(null);
+            first.get(5, TimeUnit.SECONDS);
+            assertTrue(added.await(5, TimeUnit.SECONDS));
+            listener.join();
+            while (responses.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, responses.size());
+            responses.get(1).complete(null);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static SolrInputDocument document(String id) {
+        SolrInputDocument document = new SolrInputDocument();
+        document.setField("id", id);
+        return document;
+    }
+}
@@ -0,0 +1,71 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.krickert.search.indexer.config.IndexerConfiguration;
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.config.SolrConfiguration;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.CloudHttp2SolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolrClientServiceTest {
+
+    /**
+     * Test checks that cloud mode writes with cloud clients that default to the destination collection and read the
+     * cluster state of the configured zookeeper.
+     */
+    @Test
+    public void testCloudModeCreatesCloudUpdateClients() throws Exception {
+        SolrConfiguration.Connection connection = connection("cloud");
+        connection.setZkHosts(List.of("zookeeper1:2181", "zookeeper2:2181"));
+        connection.setZkChroot("/solr");
+        SolrClientService solrClientService = solrClientService(connection);
+
+        // the zookeeper client connects on the first request, so nothing is contacted here
+        try (SolrClient inlineUpdateClient = solrClientService.inlineUpdateClient();
+             SolrClient vectorUpdateClient = solrClientService.vectorUpdateClient()) {
+            CloudHttp2SolrClient inline = assertInstanceOf(CloudHttp2SolrClient.class, inlineUpdateClient);
+            CloudHttp2SolrClient vector = assertInstanceOf(CloudHttp2SolrClient.class, vectorUpdateClient);
+            assertEquals("destination", inline.getDefaultCollection());
+            assertEquals("destination", vector.getDefaultCollection());
+            assertNotSame(inline, vector);
+        }
+    }
+
+    /**
+     * Test checks that without cloud mode the update clients are the http clients of the connection url.
+     */
+    @Test
+    public void testDefaultModeWritesWithTheHttpClients() throws Exception {
+        SolrClientService solrClientService = solrClientService(connection(null));
+
+        try (SolrClient inlineUpdateClient = solrClientService.inlineUpdateClient();
+             SolrClient vectorUpdateClient = solrClientService.vectorUpdateClient()) {
+            Http2SolrClient inline = assertInstanceOf(Http2SolrClient.class, inlineUpdateClient);
+            assertInstanceOf(Http2SolrClient.class, vectorUpdateClient);
+            assertEquals("http://localhost:8983/solr", inline.getBaseURL());
+            assertEquals("destination", inline.getDefaultCollection());
+        }
+    }
+
+    private static SolrConfiguration.Connection connection(String mode) {
+        SolrConfiguration.Connection connection = new SolrConfiguration.Connection();
+        connection.setUrl("http://localhost:8983/solr");
+        connection.setMode(mode);
+        return connection;
+    }
+
+    private static SolrClientService solrClientService(SolrConfiguration.Connection connection) {
+        SolrConfiguration destination = new SolrConfiguration("destination");
+        destination.setCollection("destination");
+        destination.setConnection(connection);
+        IndexerConfiguration indexerConfiguration = new IndexerConfiguration(new IndexerConfigurationProperties(),
+                List.of(destination), Map.of());
+        return new SolrClientService(new OktaAuthenticatedHttpListenerFactory(() -> "token", false), indexerConfiguration);
+    }
+}
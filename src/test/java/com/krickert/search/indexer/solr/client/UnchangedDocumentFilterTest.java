@@ -0,0 +1,134 @@
+package com.krickert.search.indexer.solr.client;
+
+import com.krickert.search.indexer.config.VectorConfig;
+import com.krickert.search.indexer.solr.SchemaConstants;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnchangedDocumentFilterTest {
+
+    /**
+     * Test checks that the fingerprint ignores the field order and the crawl fields, but not the content.
+     */
+    @Test
+    public void testFingerprintOnlyDependsOnContent() {
+        SolrInputDocument document = new SolrInputDocument();
+        document.setField("id", "doc1");
+        document.setField("title", "A title");
+        document.setField("body", "Some body text");
+        document.setField(SchemaConstants.CRAWL_ID, "crawl-1");
+
+        SolrInputDocument reordered = new SolrInputDocument();
+        reordered.setField("body", "Some body text");
+        reordered.setField(SchemaConstants.CRAWL_DATE, "2024-01-01T00:00:00.000Z");
+        reordered.setField("title", "A title");
+        reordered.setField("id", "doc1");
+        reordered.setField(SchemaConstants.CRAWL_ID, "crawl-2");
+
+        String fingerprint = UnchangedDocumentFilter.fingerprint(document, "signature");
+        assertEquals(fingerprint, UnchangedDocumentFilter.fingerprint(reordered, "signature"));
+
+        reordered.setField("body", "Some changed body text");
+        assertNotEquals(fingerprint, UnchangedDocumentFilter.fingerprint(reordered, "signature"));
+    }
+
+    /**
+     * Test checks that multiple values cannot be confused with a single joined value.
+     */
+    @Test
+    public void testFingerprintSeparatesValues() {
+        SolrInputDocument twoValues = new SolrInputDocument();
+        twoValues.setField("keywords", List.of("ab", "c"));
+        SolrInputDocument oneValue = new SolrInputDocument();
+        oneValue.setField("keywords", List.of("a", "bc"));
+
+        assertNotEquals(UnchangedDocumentFilter.fingerprint(twoValues, "signature"),
+                UnchangedDocumentFilter.fingerprint(oneValue, "signature"));
+    }
+
+    /**
+     * Test checks that changing how a field is chunked changes the fingerprint of every document.
+     */
+    @Test
+    public void testVectorSettingsAreSigned() {
+        VectorConfig bodyConfig = new VectorConfig();
+        bodyConfig.setChunkField(true);
+        bodyConfig.setChunkSize(300);
+        bodyConfig.setChunkOverlap(30);
+        String signature = UnchangedDocumentFilter.vectorSignature("model", Map.of("body", bodyConfig));
+
+        bodyConfig.setChunkSize(500);
+        String resizedSignature = UnchangedDocumentFilter.vectorSignature("model", Map.of("body", bodyConfig));
+
+        assertNotEquals(signature, resizedSignature);
+        assertNotEquals(resizedSignature, UnchangedDocumentFilter.vectorSignature("other-model", Map.of("body", bodyConfig)));
+    }
+
+    /**
+     * Test checks that a fingerprint is only stored once both the destination document and its chunks were written,
+     * and never for a document whose chunks failed.
+     */
+    @Test
+    public void testFingerprintIsStoredAfterBothWrites() {
+        List<SolrInputDocument> sent = new CopyOnWriteArrayList<>();
+        DestinationWriter writer = new DestinationWriter((collection, documents) -> {
+            sent.addAll(documents);
+            return CompletableFuture.completedFuture(null);
+        }, 1, Long.MAX_VALUE, 60_000);
+        UnchangedDocumentFilter filter = new UnchangedDocumentFilter(true, new EmptySolrClient(), new EmptySolrClient(), writer,
+                "destination", "uuid", List.of("chunks"), "signature");
+        try {
+            SolrInputDocument written = new SolrInputDocument();
+            written.setField("uuid", "doc1");
+            SolrInputDocument chunksFailed = new SolrInputDocument();
+            chunksFailed.setField("uuid", "doc2");
+
+            List<SolrInputDocument> changed = filter.filterUnchanged(List.of(written, chunksFailed), "crawl-1", "2024-01-01T00:00:00.000Z");
+            assertEquals(2, changed.size());
+            assertNull(written.getFieldValue(SchemaConstants.CONTENT_FINGERPRINT));
+
+            filter.mainWritten(written, true);
+            filter.mainWritten(chunksFailed, true);
+            filter.vectorWritten(chunksFailed, false);
+            assertTrue(sent.isEmpty());
+            filter.vectorWritten(written, true);
+            filter.awaitFingerprintWrites();
+
+            assertEquals(1, sent.size());
+            assertEquals("doc1", sent.get(0).getFieldValue("uuid"));
+            assertEquals(Map.of("set", UnchangedDocumentFilter.fingerprint(written, "signature")),
+                    sent.get(0).getFieldValue(SchemaConstants.CONTENT_FINGERPRINT));
+            assertEquals(1L, filter.getMetrics().get("fingerprintsDropped"));
+            assertEquals(0, filter.getMetrics().get("fingerprintsPending"));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Finds no stored fingerprints.
+     */
+    private static class EmptySolrClient extends SolrClient {
+        @Override
+        public NamedList<Object> request(SolrRequest<?> request, String collection) {
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", new SolrDocumentList());
+            return response;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
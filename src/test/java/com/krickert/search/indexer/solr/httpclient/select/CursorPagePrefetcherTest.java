@@ -0,0 +1,91 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import com.krickert.search.indexer.enhancers.MockSolrSelectClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorPagePrefetcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test checks that the pages come back in cursor order and that the walk stops when solr hands back the same cursor.
+     */
+    @Test
+    public void testPagesAreReturnedInCursorOrder() throws InterruptedException {
+        List<String> requestedCursors = new ArrayList<>();
+        HttpSolrSelectClient client = new MockSolrSelectClient() {
+            @Override
+            public HttpSolrSelectResponse getSolrDocsResponseWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+                synchronized (requestedCursors) {
+                    requestedCursors.add(cursorMark);
+                }
+                switch (cursorMark) {
+                    case HttpSolrSelectClient.CURSOR_MARK_START:
+                        return page("doc1", "c1");
+                    case "c1":
+                        return page("doc2", "c2");
+                    default:
+                        return page("doc3", cursorMark);
+                }
+            }
+        };
+
+        List<Object> ids = new ArrayList<>();
+        try (CursorPagePrefetcher prefetcher = new CursorPagePrefetcher(client, "http://localhost:8983/solr", "source", 1, SourcePartition.all(), 1)
+                .start(executor)) {
+            HttpSolrSelectResponse page;
+            while ((page = prefetcher.next()) != null) {
+                page.getDocs().forEach(doc -> ids.add(doc.getFieldValue("id")));
+            }
+        }
+
+        assertEquals(List.of("doc1", "doc2", "doc3"), ids);
+        assertEquals(List.of("*", "c1", "c2"), requestedCursors);
+    }
+
+    /**
+     * Test checks that a failed source request is rethrown to the caller after the pages before it.
+     */
+    @Test
+    public void testFetchFailureIsRethrown() throws InterruptedException {
+        HttpSolrSelectClient client = new MockSolrSelectClient() {
+            @Override
+            public HttpSolrSelectResponse getSolrDocsResponseWithCursor(String solrHost, String solrCollection, Integer paginationSize, String cursorMark, SourcePartition partition) {
+                if (HttpSolrSelectClient.CURSOR_MARK_START.equals(cursorMark)) {
+                    return page("doc1", "c1");
+                }
+                throw new RuntimeException("Failed to get Solr documents");
+            }
+        };
+
+        try (CursorPagePrefetcher prefetcher = new CursorPagePrefetcher(client, "http://localhost:8983/solr", "source", 1, SourcePartition.all(), 2)
+                .start(executor)) {
+            assertNotNull(prefetcher.next());
+            assertThrows(RuntimeException.class, prefetcher::next);
+        }
+    }
+
+    private static HttpSolrSelectResponse page(String id, String nextCursorMark) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", id);
+        return new HttpSolrSelectResponse.Builder()
+                .numFound(3L)
+                .docs(List.of(doc))
+                .nextCursorMark(nextCursorMark)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.krickert.search.indexer.solr.httpclient.select;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolrExportClientTest {
+
+    /**
+     * Test checks that the double quotes of a streaming expression value are escaped, including those the query
+     * parser already escaped, and that backslashes are passed on to the query parser as they are.
+     */
+    @Test
+    public void testQuoteEscapesDoubleQuotes() {
+        assertEquals("\"*:*\"", SolrExportClient.quote("*:*"));
+        assertEquals("\"title:\\\"red shoes\\\"\"", SolrExportClient.quote("title:\"red shoes\""));
+        assertEquals("\"path:C\\:\\\\docs\"", SolrExportClient.quote("path:C\\:\\\\docs"));
+        assertEquals("\"name:say\\\\\"hi\"", SolrExportClient.quote("name:say\\\"hi"));
+    }
+
+    /**
+     * Test checks that a value ending in a backslash, which would escape the closing quote, is refused.
+     */
+    @Test
+    public void testQuoteRefusesTrailingBackslash() {
+        assertThrows(IllegalArgumentException.class, () -> SolrExportClient.quote("path:C\\"));
+    }
+}
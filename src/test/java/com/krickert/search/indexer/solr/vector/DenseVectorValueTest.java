@@ -0,0 +1,37 @@
+package com.krickert.search.indexer.solr.vector;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DenseVectorValueTest {
+
+    /**
+     * Test checks that javabin writes the vector as a plain list of floats, the way solr reads a dense vector field.
+     */
+    @Test
+    public void testVectorIsWrittenAsFloatList() throws IOException {
+        SolrInputDocument document = new SolrInputDocument();
+        document.setField("id", "doc1");
+        document.setField("vector", new DenseVectorValue(new float[]{0.5f, -1.25f, 3.0f}));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JavaBinCodec codec = new JavaBinCodec()) {
+            codec.marshal(document, out);
+        }
+        SolrInputDocument read;
+        try (JavaBinCodec codec = new JavaBinCodec()) {
+            read = (SolrInputDocument) codec.unmarshal(new ByteArrayInputStream(out.toByteArray()));
+        }
+
+        assertEquals(List.of(0.5f, -1.25f, 3.0f), new ArrayList<>(read.getFieldValues("vector")));
+    }
+}
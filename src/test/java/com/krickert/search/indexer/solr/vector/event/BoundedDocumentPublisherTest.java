@@ -0,0 +1,94 @@
+package com.krickert.search.indexer.solr.vector.event;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.tracker.IndexingTracker;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedDocumentPublisherTest {
+
+    /**
+     * Test checks that the fail policy rejects the documents that do not fit in the queue.
+     */
+    @Test
+    public void testFailPolicyRejectsOverflow() {
+        SolrSourceDocumentPublisher publisher = new SolrSourceDocumentPublisher(properties(8, "fail", 1), "id", new IndexingTracker(10));
+
+        for (int i = 0; i < 10; i++) {
+            publisher.publishDocument(document(i));
+        }
+
+        Map<String, Object> metrics = publisher.getMetrics();
+        assertEquals(8L, metrics.get("published"));
+        assertEquals(2L, metrics.get("rejected"));
+        assertEquals(2L, metrics.get("overflows"));
+    }
+
+    /**
+     * Test checks that the block policy gives up on a document once the block timeout passes.
+     */
+    @Test
+    public void testBlockPolicyTimesOut() {
+        SolrChunkDocumentPublisher publisher = new SolrChunkDocumentPublisher(properties(8, "block", 0), "id", new IndexingTracker(10));
+
+        for (int i = 0; i < 9; i++) {
+            publisher.publishDocument(document(i));
+        }
+
+        Map<String, Object> metrics = publisher.getMetrics();
+        assertEquals(8L, metrics.get("published"));
+        assertEquals(1L, metrics.get("rejected"));
+    }
+
+    /**
+     * Test checks that with the block policy every document is delivered to a slow listener.
+     */
+    @Test
+    public void testBlockPolicyWaitsForTheListener() throws InterruptedException {
+        SolrSourceDocumentPublisher publisher = new SolrSourceDocumentPublisher(properties(8, "block", 30), "id", new IndexingTracker(10));
+        List<Object> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+        publisher.getDocumentFlux()
+                .publishOn(Schedulers.single(), 1)
+                .subscribe(doc -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    received.add(doc.getFieldValue("id"));
+                    done.countDown();
+                });
+
+        for (int i = 0; i < 100; i++) {
+            publisher.publishDocument(document(i));
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(100, received.size());
+        assertEquals(0L, publisher.getMetrics().get("rejected"));
+    }
+
+    private static IndexerConfigurationProperties properties(int capacity, String overflowPolicy, int blockTimeoutSeconds) {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setPublisherQueueCapacity(capacity);
+        properties.setPublisherOverflowPolicy(overflowPolicy);
+        properties.setPublisherBlockTimeoutSeconds(blockTimeoutSeconds);
+        return properties;
+    }
+
+    private static SolrInputDocument document(int id) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", "doc" + id);
+        return doc;
+    }
+}
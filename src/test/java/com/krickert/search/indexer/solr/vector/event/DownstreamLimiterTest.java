@@ -0,0 +1,54 @@
+package com.krickert.search.indexer.solr.vector.event;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownstreamLimiterTest {
+
+    /**
+     * Test checks that a limited service lets no more than its limit of callers through and the rest wait.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLimitedServiceMakesCallersWait() throws InterruptedException {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setEmbeddingMaxConcurrency(1);
+        DownstreamLimiter limiter = new DownstreamLimiter(properties);
+
+        limiter.acquire(DownstreamLimiter.Downstream.EMBEDDING);
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            limiter.acquire(DownstreamLimiter.Downstream.EMBEDDING);
+            acquired.countDown();
+            limiter.release(DownstreamLimiter.Downstream.EMBEDDING);
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        Map<String, Object> embedding = (Map<String, Object>) limiter.getMetrics().get("embedding");
+        assertEquals(1, embedding.get("inFlight"));
+        limiter.release(DownstreamLimiter.Downstream.EMBEDDING);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    /**
+     * Test checks that a service without a limit is not tracked and never waits.
+     */
+    @Test
+    public void testUnlimitedServiceNeverWaits() {
+        DownstreamLimiter limiter = new DownstreamLimiter(new IndexerConfigurationProperties());
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire(DownstreamLimiter.Downstream.SOLR);
+        }
+
+        assertTrue(limiter.getMetrics().isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.krickert.search.indexer.solr.vector.event;
+
+import com.krickert.search.indexer.solr.vector.event.SubscriptionManager.ExecutionMode;
+import com.krickert.search.indexer.solr.vector.event.SubscriptionManager.ListenerStage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionManagerTest {
+
+    /**
+     * Test checks that the execution mode accepts the documented values in any case, defaults to parallel and names
+     * the allowed values when the setting has a typo.
+     */
+    @Test
+    public void testExecutionModeSetting() {
+        assertEquals(ExecutionMode.PARALLEL, ExecutionMode.fromSetting(null));
+        assertEquals(ExecutionMode.PARALLEL, ExecutionMode.fromSetting(" "));
+        assertEquals(ExecutionMode.PARALLEL, ExecutionMode.fromSetting("Parallel"));
+        assertEquals(ExecutionMode.THREAD_POOL, ExecutionMode.fromSetting("thread-pool"));
+        assertEquals(ExecutionMode.THREAD_POOL, ExecutionMode.fromSetting(" THREAD_POOL "));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ExecutionMode.fromSetting("threadpool"));
+        assertTrue(e.getMessage().contains("'threadpool'"));
+        assertTrue(e.getMessage().contains("parallel and thread-pool"));
+    }
+
+    /**
+     * Test checks that a parallel listener without settings gets one rail per core on the shared scheduler, and a
+     * thread pool listener one rail per thread.
+     */
+    @Test
+    public void testDefaultStageSizing() {
+        Map<String, Object> parallel = SubscriptionManager.createStage("inline-listener", null, null, null, ExecutionMode.PARALLEL, 256).getMetrics();
+        assertEquals(Runtime.getRuntime().availableProcessors(), parallel.get("rails"));
+        assertEquals(1, parallel.get("prefetch"));
+        assertEquals(0, parallel.get("threads"));
+
+        Map<String, Object> threadPool = SubscriptionManager.createStage("inline-listener", null, 0, -1, ExecutionMode.THREAD_POOL, 64).getMetrics();
+        assertEquals(64, threadPool.get("rails"));
+        assertEquals(1, threadPool.get("prefetch"));
+        assertEquals(64, threadPool.get("threads"));
+    }
+
+    /**
+     * Test checks that the settings of a listener win over the execution mode defaults.
+     */
+    @Test
+    public void testListenerSettingsOverrideDefaults() {
+        Map<String, Object> chunk = SubscriptionManager.createStage("chunk-listener", 12, 4, 48, ExecutionMode.PARALLEL, 256).getMetrics();
+        assertEquals(12, chunk.get("rails"));
+        assertEquals(4, chunk.get("prefetch"));
+        assertEquals(48, chunk.get("threads"));
+
+        Map<String, Object> threadsOnly = SubscriptionManager.createStage("chunk-listener", null, null, 8, ExecutionMode.PARALLEL, 256).getMetrics();
+        assertEquals(8, threadsOnly.get("rails"));
+    }
+
+    /**
+     * Test checks that the metrics tell the documents waiting in the rails from the active ones, and that only active
+     * documents age.
+     */
+    @Test
+    public void testStageMetrics() {
+        ListenerStage stage = new ListenerStage("inline-listener", 2, 1, 0);
+        assertEquals(Long.MAX_VALUE, stage.oldestStartNanos());
+
+        stage.received();
+        stage.received();
+        stage.received();
+        long first = stage.started();
+        long second = stage.started();
+        stage.finished(first);
+
+        Map<String, Object> metrics = stage.getMetrics();
+        assertEquals(1, metrics.get("queued"));
+        assertEquals(1, metrics.get("active"));
+        assertEquals(1L, metrics.get("processed"));
+        assertTrue(stage.oldestStartNanos() <= System.nanoTime());
+
+        stage.finished(second);
+        assertEquals(0, stage.getMetrics().get("active"));
+        assertEquals(2L, stage.getMetrics().get("processed"));
+        assertEquals(0L, stage.getMetrics().get("oldestActiveSeconds"));
+        assertEquals(Long.MAX_VALUE, stage.oldestStartNanos());
+    }
+}
@@ -0,0 +1,45 @@
+package com.krickert.search.indexer.state;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import com.krickert.search.indexer.tracker.IndexingTracker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrawlCheckpointerTest {
+
+    /**
+     * Test checks that without chunk fields a checkpoint only waits for the main task, whose counts and cursor it
+     * saves, although the vector task counted nothing.
+     */
+    @Test
+    public void testCheckpointWithoutChunkFieldsOnlyDrainsTheMainTask(@TempDir Path directory) throws InterruptedException {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setStateDir(directory.toString());
+        CrawlStateStore store = new CrawlStateStore(properties);
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("crawl-1");
+        tracker.setTotalDocumentsFound(10L);
+        Instant crawlStart = Instant.parse("2024-06-02T08:00:00Z");
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(store, tracker, "source", "crawl-1", null, crawlStart, 10,
+                Duration.ofMillis(1), false, null);
+        // the first page is published after the checkpoint interval, so it saves a checkpoint
+        Thread.sleep(5);
+
+        checkpointer.publishPage("shard-shard1", 2, "AoE/ZG9jMTIz", () -> {
+            tracker.documentProcessed();
+            tracker.documentFailed();
+        });
+
+        CrawlCheckpoint checkpoint = store.getCheckpoint("source").orElseThrow();
+        assertEquals(new CrawlCheckpoint("crawl-1", null, crawlStart, 10, 1, 1, 0, 0,
+                Map.of("shard-shard1", "AoE/ZG9jMTIz")), checkpoint);
+    }
+}
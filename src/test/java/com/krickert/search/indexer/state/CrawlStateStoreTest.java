@@ -0,0 +1,53 @@
+package com.krickert.search.indexer.state;
+
+import com.krickert.search.indexer.config.IndexerConfigurationProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CrawlStateStoreTest {
+
+    /**
+     * Test checks that a saved high-water mark is read back by a new store, and that collections are kept apart.
+     */
+    @Test
+    public void testWatermarkSurvivesARestart(@TempDir Path directory) {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setStateDir(directory.toString());
+        Instant watermark = Instant.parse("2024-06-01T12:30:00.123Z");
+
+        assertEquals(Optional.empty(), new CrawlStateStore(properties).getWatermark("source"));
+        new CrawlStateStore(properties).saveWatermark("source", watermark);
+
+        assertEquals(Optional.of(watermark), new CrawlStateStore(properties).getWatermark("source"));
+        assertEquals(Optional.empty(), new CrawlStateStore(properties).getWatermark("other"));
+    }
+
+    /**
+     * Test checks that a checkpoint is read back as saved, and that clearing it keeps the high-water mark.
+     */
+    @Test
+    public void testCheckpointRoundTrip(@TempDir Path directory) {
+        IndexerConfigurationProperties properties = new IndexerConfigurationProperties();
+        properties.setStateDir(directory.toString());
+        Instant watermark = Instant.parse("2024-06-01T12:30:00.123Z");
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint("crawl-1", null, Instant.parse("2024-06-02T08:00:00Z"),
+                1000, 400, 2, 398, 4, Map.of("shard-shard1", "AoE/ZG9jMTIz", "shard-shard2", CrawlCheckpoint.DONE));
+
+        CrawlStateStore store = new CrawlStateStore(properties);
+        store.saveWatermark("source", watermark);
+        store.saveCheckpoint("source", checkpoint);
+
+        assertEquals(Optional.of(checkpoint), new CrawlStateStore(properties).getCheckpoint("source"));
+
+        store.clearCheckpoint("source");
+        assertEquals(Optional.empty(), new CrawlStateStore(properties).getCheckpoint("source"));
+        assertEquals(Optional.of(watermark), new CrawlStateStore(properties).getWatermark("source"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.krickert.search.indexer.tracker;
+
+import com.krickert.search.indexer.dto.IndexingStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures how many document events the tracker counts per second when every listener thread reports at once, next
+ * to a tracker that counts under its monitor and recomputes the progress for every event, as the tracker did before
+ * its counts became lock-free. Opt in with:
+ * <pre>
+ * mvn test -Dtest=IndexingTrackerBenchmarkTest -Dbenchmark=true
+ * </pre>
+ * The gap grows with the number of cores, as the locked tracker lets one thread count at a time however many there
+ * are.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class IndexingTrackerBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(IndexingTrackerBenchmarkTest.class);
+    private static final int DOCUMENTS_PER_THREAD = 200_000;
+    private static final int ROUNDS = 3;
+
+    /**
+     * Test checks, and reports, the events per second of both trackers with 64 threads counting both tasks.
+     */
+    @Test
+    public void testCountingThroughputWith64Threads() throws InterruptedException {
+        measure(64);
+    }
+
+    /**
+     * Test checks, and reports, the events per second of both trackers with 128 threads counting both tasks.
+     */
+    @Test
+    public void testCountingThroughputWith128Threads() throws InterruptedException {
+        measure(128);
+    }
+
+    private static void measure(int threads) throws InterruptedException {
+        // the first round warms up the JIT and is not reported
+        double tracker = 0;
+        double locked = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            double trackerRate = run(threads, newTracker(threads));
+            double lockedRate = run(threads, new LockedTracker(threads));
+            if (round > 0) {
+                tracker += trackerRate / ROUNDS;
+                locked += lockedRate / ROUNDS;
+            }
+        }
+        log.info("{} threads on {} cores: the tracker counted {} events/s, the locked tracker {} events/s, {}x",
+                threads, Runtime.getRuntime().availableProcessors(), String.format("%,.0f", tracker),
+                String.format("%,.0f", locked), String.format("%.1f", tracker / locked));
+        assertTrue(tracker > 0 && locked > 0);
+    }
+
+    private static IndexingTracker newTracker(int threads) {
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("benchmark");
+        tracker.setTotalDocumentsFound((long) threads * DOCUMENTS_PER_THREAD);
+        return tracker;
+    }
+
+    /**
+     * @return the events counted per second, with every thread reporting each document to both tasks
+     */
+    private static double run(int threads, Object counter) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int document = 0; document < DOCUMENTS_PER_THREAD; document++) {
+                    if (counter instanceof IndexingTracker tracker) {
+                        tracker.documentProcessed();
+                        tracker.vectorDocumentProcessed();
+                    } else {
+                        ((LockedTracker) counter).documentProcessed(true);
+                        ((LockedTracker) counter).documentProcessed(false);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long expected = (long) threads * DOCUMENTS_PER_THREAD;
+        if (counter instanceof IndexingTracker tracker) {
+            assertTrue(tracker.getCompletion(IndexingTracker.TaskType.MAIN).isDone());
+            assertEquals(expected, tracker.getDocumentsDone(IndexingTracker.TaskType.VECTOR));
+        } else {
+            assertEquals(expected, ((LockedTracker) counter).vectorProcessed);
+        }
+        return expected * 2 / (elapsed / 1e9);
+    }
+
+    /**
+     * Counts the way the tracker did before: every event takes the monitor, updates the status and checks whether
+     * the task is done.
+     */
+    private static class LockedTracker {
+        private final IndexingStatus mainStatus = new IndexingStatus();
+        private final IndexingStatus vectorStatus = new IndexingStatus();
+        private final long found;
+        private long mainProcessed;
+        private long vectorProcessed;
+
+        private LockedTracker(int threads) {
+            this.found = (long) threads * DOCUMENTS_PER_THREAD;
+            LocalDateTime started = LocalDateTime.now();
+            mainStatus.setTimeStarted(started);
+            vectorStatus.setTimeStarted(started);
+        }
+
+        synchronized void documentProcessed(boolean main) {
+            long processed = main ? ++mainProcessed : ++vectorProcessed;
+            IndexingStatus status = main ? mainStatus : vectorStatus;
+            status.setTotalDocumentsFound(found);
+            status.setTotalDocumentsProcessed((int) processed);
+            status.setPercentComplete(((float) processed / found) * 100);
+            long durationInSeconds = Duration.between(status.getTimeStarted(), LocalDateTime.now()).getSeconds();
+            status.setAverageDocsPerSecond(durationInSeconds > 0 ? (float) processed / durationInSeconds : 0);
+            if (mainProcessed >= found && vectorProcessed >= found) {
+                status.setCurrentStatusMessage("completed");
+            }
+        }
+    }
+}
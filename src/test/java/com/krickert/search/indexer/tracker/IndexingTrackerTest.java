@@ -0,0 +1,114 @@
+package com.krickert.search.indexer.tracker;
+
+import com.krickert.search.indexer.dto.IndexingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexingTrackerTest {
+
+    /**
+     * Test checks that a task's completion future completes with the last counted document and not before.
+     */
+    @Test
+    public void testCompletionFollowsTheCounts() throws Exception {
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("crawl-1");
+        tracker.setTotalDocumentsFound(3L);
+        CompletableFuture<IndexingStatus> mainCompletion = tracker.getCompletion(IndexingTracker.TaskType.MAIN);
+
+        tracker.documentProcessed();
+        tracker.documentFailed();
+        assertFalse(mainCompletion.isDone());
+
+        tracker.documentProcessed();
+        assertTrue(mainCompletion.isDone());
+        assertEquals(IndexingStatus.OverallStatus.COMPLETED, mainCompletion.get().getOverallStatus());
+        assertEquals(1, tracker.getHistory(10).size());
+        assertFalse(tracker.getCompletion(IndexingTracker.TaskType.VECTOR).isDone());
+    }
+
+    /**
+     * Test checks that a failed task completes its future and is not turned into a completed one afterwards.
+     */
+    @Test
+    public void testFailedTaskStaysFailed() {
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("crawl-1");
+        tracker.setTotalDocumentsFound(5L);
+
+        tracker.markIndexingAsFailed(IndexingTracker.TaskType.VECTOR);
+        tracker.finalizeTracking(IndexingTracker.TaskType.VECTOR);
+
+        assertTrue(tracker.getCompletion(IndexingTracker.TaskType.VECTOR).isDone());
+        assertEquals(IndexingStatus.OverallStatus.FAILED, tracker.getVectorTaskStatus().getOverallStatus());
+    }
+
+    /**
+     * Test checks that a crawl without documents completes right away.
+     */
+    @Test
+    public void testEmptyCrawlCompletesImmediately() {
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("crawl-1");
+        tracker.setTotalDocumentsFound(0L);
+
+        assertTrue(tracker.getCompletion(IndexingTracker.TaskType.MAIN).isDone());
+        assertTrue(tracker.getCompletion(IndexingTracker.TaskType.VECTOR).isDone());
+    }
+
+    /**
+     * Test checks that 64 threads counting at once lose no document and finish each task exactly once.
+     */
+    @Test
+    public void testCountsAreExactUnderContention() throws Exception {
+        int threads = 64;
+        int documentsPerThread = 5000;
+        IndexingTracker tracker = new IndexingTracker(10);
+        tracker.reset();
+        tracker.startTracking("crawl-1");
+        tracker.setTotalDocumentsFound((long) threads * documentsPerThread);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int document = 0; document < documentsPerThread; document++) {
+                    if (document % 100 == 0) {
+                        tracker.documentFailed();
+                        tracker.vectorDocumentFailed();
+                    } else {
+                        tracker.documentProcessed();
+                        tracker.vectorDocumentProcessed();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(tracker.getCompletion(IndexingTracker.TaskType.MAIN).isDone());
+        assertTrue(tracker.getCompletion(IndexingTracker.TaskType.VECTOR).isDone());
+        assertEquals(threads * documentsPerThread / 100, tracker.getMainTaskStatus().getTotalDocumentsFailed());
+        assertEquals(threads * documentsPerThread * 99 / 100, tracker.getVectorTaskStatus().getTotalDocumentsProcessed());
+        assertEquals(100.0f * 99 / 100, tracker.getPercentComplete(IndexingTracker.TaskType.MAIN), 0.01f);
+        // one history entry for each task, not one for every document counted after the end
+        assertEquals(2, tracker.getHistory(10).size());
+    }
+}
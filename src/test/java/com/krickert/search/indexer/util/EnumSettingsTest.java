@@ -0,0 +1,31 @@
+package com.krickert.search.indexer.util;
+
+import com.krickert.search.indexer.solr.httpclient.select.SolrExportClient.ReadMode;
+import com.krickert.search.indexer.solr.httpclient.select.SourcePartitioner.PartitionStrategy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnumSettingsTest {
+
+    /**
+     * Test checks that a setting is matched in any case and with dashes, and that an unset one gets the default.
+     */
+    @Test
+    public void testParse() {
+        assertEquals(ReadMode.SELECT, EnumSettings.parse(ReadMode.class, "read-mode", null, ReadMode.SELECT));
+        assertEquals(ReadMode.SELECT, EnumSettings.parse(ReadMode.class, "read-mode", " ", ReadMode.SELECT));
+        assertEquals(ReadMode.STREAM, EnumSettings.parse(ReadMode.class, "read-mode", " Stream ", ReadMode.SELECT));
+        assertEquals(PartitionStrategy.HASH, EnumSettings.parse(PartitionStrategy.class, "partition-strategy", "hash", PartitionStrategy.NONE));
+    }
+
+    /**
+     * Test checks that a typo fails with the name of the setting, the value and every allowed value.
+     */
+    @Test
+    public void testTypoNamesTheAllowedValues() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> EnumSettings.parse(PartitionStrategy.class, "partition-strategy", "shards", PartitionStrategy.NONE));
+        assertEquals("Unknown partition-strategy 'shards'. Allowed values are none, shard, hash and filter", e.getMessage());
+    }
+}